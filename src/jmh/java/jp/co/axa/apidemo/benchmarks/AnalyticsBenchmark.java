@@ -0,0 +1,82 @@
+package jp.co.axa.apidemo.benchmarks;
+
+import jp.co.axa.apidemo.analytics.EmployeeSnapshot;
+import jp.co.axa.apidemo.dto.EmployeeSalary;
+import jp.co.axa.apidemo.entities.Employee;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Benchmarks of the analytical queries over the columnar EmployeeSnapshot,
+ * compared with the same queries over a List of Employee entities.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AnalyticsBenchmark {
+
+    @Param({"10000", "1000000"})
+    private int employeeCount;
+
+    private List<Employee> employees;
+
+    private EmployeeSnapshot snapshot;
+
+    @Setup
+    public void setUp() {
+        employees = BenchmarkContext.employees(employeeCount);
+        EmployeeSnapshot.Builder builder = EmployeeSnapshot.builder();
+        for (int i = 0; i < employees.size(); i++) {
+            Employee employee = employees.get(i);
+            employee.setId((long) i + 1);
+            builder.add(employee.getId(), employee.getSalary(), employee.getDepartment());
+        }
+        snapshot = builder.build();
+    }
+
+    @Benchmark
+    public List<EmployeeSalary> topSalariesSnapshot() {
+        return snapshot.topSalaries(10, "IT");
+    }
+
+    @Benchmark
+    public List<Employee> topSalariesList() {
+        return employees.stream()
+                .filter(employee -> "IT".equals(employee.getDepartment()))
+                .sorted(Comparator.comparing(Employee::getSalary).reversed())
+                .limit(10)
+                .collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public Integer medianSnapshot() {
+        return snapshot.salaryPercentile(50, "IT");
+    }
+
+    @Benchmark
+    public Integer medianList() {
+        List<Integer> salaries = employees.stream()
+                .filter(employee -> "IT".equals(employee.getDepartment()))
+                .map(Employee::getSalary)
+                .sorted()
+                .collect(Collectors.toList());
+        return salaries.get((int) Math.ceil(salaries.size() * 0.5) - 1);
+    }
+}
@@ -0,0 +1,71 @@
+package jp.co.axa.apidemo.benchmarks;
+
+import jp.co.axa.apidemo.configuration.CachingAuthenticationProvider;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.provisioning.InMemoryUserDetailsManager;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the per-request authentication cost: a full BCrypt verification
+ * compared with a verification served by the CachingAuthenticationProvider.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AuthenticationBenchmark {
+
+    private static final String PASSWORD = "password##";
+
+    private BCryptPasswordEncoder passwordEncoder;
+
+    private String encodedPassword;
+
+    private DaoAuthenticationProvider daoAuthenticationProvider;
+
+    private CachingAuthenticationProvider cachingAuthenticationProvider;
+
+    @Setup
+    public void setUp() {
+        passwordEncoder = new BCryptPasswordEncoder();
+        encodedPassword = passwordEncoder.encode(PASSWORD);
+        daoAuthenticationProvider = new DaoAuthenticationProvider();
+        daoAuthenticationProvider.setUserDetailsService(new InMemoryUserDetailsManager(
+                User.withUsername("user").password(encodedPassword).roles("USER").build()));
+        daoAuthenticationProvider.setPasswordEncoder(passwordEncoder);
+        cachingAuthenticationProvider = new CachingAuthenticationProvider(daoAuthenticationProvider, 3600, 100);
+        cachingAuthenticationProvider.authenticate(new UsernamePasswordAuthenticationToken("user", PASSWORD));
+    }
+
+    @Benchmark
+    public boolean bcryptMatches() {
+        return passwordEncoder.matches(PASSWORD, encodedPassword);
+    }
+
+    @Benchmark
+    public Authentication daoProviderAuthenticate() {
+        return daoAuthenticationProvider.authenticate(new UsernamePasswordAuthenticationToken("user", PASSWORD));
+    }
+
+    @Benchmark
+    public Authentication cachingProviderAuthenticate() {
+        return cachingAuthenticationProvider.authenticate(new UsernamePasswordAuthenticationToken("user", PASSWORD));
+    }
+}
@@ -0,0 +1,56 @@
+package jp.co.axa.apidemo.benchmarks;
+
+import jp.co.axa.apidemo.ApiDemoApplication;
+import jp.co.axa.apidemo.entities.Employee;
+import jp.co.axa.apidemo.services.EmployeeService;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Helper booting the application against its embedded H2 database for the benchmarks.
+ */
+final class BenchmarkContext {
+
+    private static final String[] DEPARTMENTS = {"IT", "Sales", "HR", "Finance", "Legal"};
+
+    private BenchmarkContext() {
+    }
+
+    /**
+     * Starts the application on a random port with quiet logging.
+     *
+     * @return The running application context.
+     */
+    static ConfigurableApplicationContext start() {
+        return new SpringApplicationBuilder(ApiDemoApplication.class)
+                .properties("server.port=0", "logging.level.root=WARN", "spring.jmx.enabled=false")
+                .run();
+    }
+
+    /**
+     * Creates employees with deterministic names, salaries and departments.
+     *
+     * @param count The number of employees.
+     * @return The new, unsaved employees.
+     */
+    static List<Employee> employees(int count) {
+        List<Employee> employees = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            employees.add(new Employee("Employee " + i, 3000000 + (i * 7919) % 9000000, DEPARTMENTS[i % DEPARTMENTS.length]));
+        }
+        return employees;
+    }
+
+    /**
+     * Saves the specified number of employees through the batched bulk insert.
+     *
+     * @param context The running application context.
+     * @param count The number of employees.
+     */
+    static void seed(ConfigurableApplicationContext context, int count) {
+        context.getBean(EmployeeService.class).saveEmployees(employees(count).iterator());
+    }
+}
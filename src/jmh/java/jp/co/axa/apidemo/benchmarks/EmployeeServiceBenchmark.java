@@ -0,0 +1,92 @@
+package jp.co.axa.apidemo.benchmarks;
+
+import jp.co.axa.apidemo.entities.Employee;
+import jp.co.axa.apidemo.services.EmployeeService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the EmployeeService read paths with hot and cold caches.
+ * The cold variants evict the entry first, from the Spring cache and the Hibernate second-level cache,
+ * so they measure the database load plus the cache fill.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EmployeeServiceBenchmark {
+
+    @Param({"100", "10000"})
+    private int employeeCount;
+
+    private ConfigurableApplicationContext context;
+
+    private EmployeeService employeeService;
+
+    private Cache employeeCache;
+
+    private Cache employeesCache;
+
+    private javax.persistence.Cache entityCache;
+
+    private Long employeeId;
+
+    @Setup
+    public void setUp() {
+        context = BenchmarkContext.start();
+        BenchmarkContext.seed(context, employeeCount);
+        employeeService = context.getBean(EmployeeService.class);
+        CacheManager cacheManager = context.getBean(CacheManager.class);
+        employeeCache = cacheManager.getCache("employee");
+        employeesCache = cacheManager.getCache("employees");
+        entityCache = context.getBean(EntityManagerFactory.class).getCache();
+        employeeId = employeeService.retrieveEmployeePage(0L, 1).getEmployees().get(0).getId();
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Employee getEmployeeHot() {
+        return employeeService.getEmployee(employeeId);
+    }
+
+    @Benchmark
+    public Employee getEmployeeCold() {
+        employeeCache.evict(employeeId);
+        entityCache.evict(Employee.class, employeeId);
+        return employeeService.getEmployee(employeeId);
+    }
+
+    @Benchmark
+    public List<Employee> retrieveEmployeesHot() {
+        return employeeService.retrieveEmployees();
+    }
+
+    @Benchmark
+    public List<Employee> retrieveEmployeesCold() {
+        employeesCache.clear();
+        return employeeService.retrieveEmployees();
+    }
+}
@@ -0,0 +1,132 @@
+package jp.co.axa.apidemo.benchmarks;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.type.CollectionType;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import jp.co.axa.apidemo.entities.Employee;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Benchmarks of the encoding of employee lists, as done by /retrieveAll, in each negotiable format.
+ * The encoded and gzip-compressed sizes of each format are reported as the "encodedBytes" and
+ * "gzippedBytes" secondary results of the serialize benchmarks, for the bytes on the wire.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SerializationBenchmark {
+
+    @Param({"10", "1000", "100000"})
+    private int employeeCount;
+
+    @Param({"json", "smile", "cbor"})
+    private String format;
+
+    private ObjectWriter writer;
+
+    private ObjectReader reader;
+
+    private List<Employee> employees;
+
+    private byte[] encoded;
+
+    private byte[] gzipped;
+
+    @Setup
+    public void setUp() throws IOException {
+        employees = BenchmarkContext.employees(employeeCount);
+        for (int i = 0; i < employees.size(); i++) {
+            employees.get(i).setId((long) i + 1);
+            employees.get(i).setVersion(0L);
+        }
+        ObjectMapper mapper = new ObjectMapper(factory(format));
+        CollectionType type = mapper.getTypeFactory().constructCollectionType(List.class, Employee.class);
+        writer = mapper.writerFor(type);
+        reader = mapper.readerFor(type);
+        encoded = writer.writeValueAsBytes(employees);
+        gzipped = gzip(encoded);
+    }
+
+    @Benchmark
+    public byte[] serialize(PayloadSize size) throws IOException {
+        byte[] bytes = writer.writeValueAsBytes(employees);
+        size.encodedBytes = bytes.length;
+        return bytes;
+    }
+
+    @Benchmark
+    public byte[] serializeGzip(PayloadSize size) throws IOException {
+        byte[] bytes = writer.writeValueAsBytes(employees);
+        byte[] compressed = gzip(bytes);
+        size.encodedBytes = bytes.length;
+        size.gzippedBytes = compressed.length;
+        return compressed;
+    }
+
+    @Benchmark
+    public List<Employee> deserialize() throws IOException {
+        return reader.readValue(encoded);
+    }
+
+    @Benchmark
+    public List<Employee> deserializeGzip() throws IOException {
+        return reader.readValue(new GZIPInputStream(new ByteArrayInputStream(gzipped)));
+    }
+
+    /**
+     * The sizes of the last payload, reported with the results rather than counted per operation.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class PayloadSize {
+
+        public long encodedBytes;
+
+        public long gzippedBytes;
+    }
+
+    private static JsonFactory factory(String format) {
+        switch (format) {
+            case "smile":
+                return new SmileFactory();
+            case "cbor":
+                return new CBORFactory();
+            default:
+                return new JsonFactory();
+        }
+    }
+
+    private static byte[] gzip(byte[] bytes) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(bytes.length / 4 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+            gzip.write(bytes);
+        }
+        return compressed.toByteArray();
+    }
+}
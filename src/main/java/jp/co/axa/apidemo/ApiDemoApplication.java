@@ -1,12 +1,26 @@
 package jp.co.axa.apidemo;
 
+import com.github.benmanes.caffeine.cache.CacheLoader;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jp.co.axa.apidemo.cache.SingleFlight;
+import jp.co.axa.apidemo.configuration.CacheSpecProperties;
+import jp.co.axa.apidemo.entities.Employee;
+import jp.co.axa.apidemo.repositories.EmployeeRepository;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.cache.CacheManager;
-import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.cache.support.SimpleCacheManager;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 
 import springfox.documentation.swagger2.annotations.EnableSwagger2;
 
@@ -14,6 +28,7 @@ import springfox.documentation.swagger2.annotations.EnableSwagger2;
  * The class which serves as the starting point for the API demo application.
  */
 @EnableSwagger2
+@EnableScheduling
 @SpringBootApplication
 public class ApiDemoApplication {
 
@@ -23,19 +38,66 @@ public class ApiDemoApplication {
 
 	/**
 	 * Configuration for the Cache management.
+	 * Every cache is a bounded Caffeine cache built from its "app.cache.specs.*" property.
+	 * The caching advice wraps the transactional one, so a cache hit does not open a transaction.
 	 */
 	@Configuration
-	@EnableCaching
+	@EnableCaching(order = Ordered.LOWEST_PRECEDENCE - 1)
+	@EnableConfigurationProperties(CacheSpecProperties.class)
     public static class CacheConfig {
 
+		/** The suffix of the CacheLoader bean names used by caches configured with refreshAfterWrite. */
+		private static final String CACHE_LOADER_SUFFIX = "CacheLoader";
+
 		/**
 		 * Cache Manager Bean
 		 * 
+		 * @param properties The cache specifications.
+		 * @param cacheLoaders The CacheLoader beans keyed by bean name.
 		 * @return The cache manager instance.
 		 */
         @Bean
-        public CacheManager cacheManager() {
-            return new ConcurrentMapCacheManager("employees", "employee");
+        public CacheManager cacheManager(CacheSpecProperties properties,
+                                         Map<String, CacheLoader<Object, Object>> cacheLoaders) {
+            List<CaffeineCache> caches = new ArrayList<>();
+            properties.getSpecs().forEach((name, spec) -> {
+                Caffeine<Object, Object> builder = Caffeine.from(spec);
+                if (spec.contains("refreshAfterWrite")) {
+                    // A refreshing cache needs a loader to reload entries in the background
+                    CacheLoader<Object, Object> loader = cacheLoaders.get(name + CACHE_LOADER_SUFFIX);
+                    if (loader == null) {
+                        throw new IllegalStateException("Cache '" + name + "' uses refreshAfterWrite but no "
+                                + name + CACHE_LOADER_SUFFIX + " bean is defined");
+                    }
+                    caches.add(new CaffeineCache(name, builder.build(loader)));
+                } else {
+                    caches.add(new CaffeineCache(name, builder.build()));
+                }
+            });
+            SimpleCacheManager cacheManager = new SimpleCacheManager();
+            cacheManager.setCaches(caches);
+            return cacheManager;
+        }
+
+		/**
+		 * Loader used to refresh the "employee" cache when it is configured with refreshAfterWrite.
+		 * 
+		 * @param employeeRepository The EmployeeRepository.
+		 * @return The employee cache loader.
+		 */
+        @Bean
+        public CacheLoader<Object, Object> employeeCacheLoader(EmployeeRepository employeeRepository) {
+            return employeeId -> employeeRepository.findById((Long) employeeId).orElse(null);
+        }
+
+		/**
+		 * Coalesces concurrent "employee" cache misses for the same ID into one database load.
+		 * 
+		 * @return The employee single-flight loader.
+		 */
+        @Bean
+        public SingleFlight<Long, Employee> employeeSingleFlight() {
+            return new SingleFlight<>("employee");
         }
     }
 
@@ -0,0 +1,356 @@
+package jp.co.axa.apidemo.analytics;
+
+import jp.co.axa.apidemo.dto.EmployeeSalary;
+import jp.co.axa.apidemo.dto.SalaryHistogram;
+import jp.co.axa.apidemo.entities.Employee;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.stream.IntStream;
+
+/**
+ * The immutable, column-oriented snapshot of the employees used by the analytical queries.
+ * Each employee takes a row of primitive columns ordered by ID: the ID (long), the salary (int) and
+ * the dictionary code of the department (short), plus its position in the salary order (int),
+ * so about 18 bytes instead of a full Employee object graph. Names are not kept.
+ */
+public final class EmployeeSnapshot {
+
+    /** The number of rows from which scans are split across the common fork/join pool. */
+    static final int PARALLEL_THRESHOLD = 1 << 16;
+
+    /** The maximum number of buckets of a histogram. */
+    public static final int MAX_HISTOGRAM_BUCKETS = 10000;
+
+    /** The code returned for a department which has no rows. */
+    private static final int UNKNOWN_DEPARTMENT = -1;
+
+    private final int size;
+
+    private final long[] ids;
+
+    private final int[] salaries;
+
+    /** The rows whose salary is null; their salary column holds 0. */
+    private final BitSet missingSalaries;
+
+    private final short[] departments;
+
+    private final String[] dictionary;
+
+    private final Map<String, Integer> codes;
+
+    /** The rows with a salary, by ascending salary. */
+    private final int[] bySalary;
+
+    /** The number of rows with a salary, by department code. */
+    private final int[] salariedCounts;
+
+    /**
+     * Constructor used by the Builder.
+     */
+    private EmployeeSnapshot(int size, long[] ids, int[] salaries, BitSet missingSalaries,
+                             short[] departments, List<String> dictionary) {
+        this.size = size;
+        this.ids = ids;
+        this.salaries = salaries;
+        this.missingSalaries = missingSalaries;
+        this.departments = departments;
+        this.dictionary = dictionary.toArray(new String[0]);
+        this.codes = new HashMap<>();
+        for (int code = 0; code < this.dictionary.length; code++) {
+            codes.put(this.dictionary[code], code);
+        }
+        this.salariedCounts = new int[this.dictionary.length];
+        long[] keys = new long[size - missingSalaries.cardinality()];
+        int salaried = 0;
+        for (int row = 0; row < size; row++) {
+            if (!missingSalaries.get(row)) {
+                // Salary in the high half (signed order), row in the low half: sorting the keys sorts the rows
+                keys[salaried++] = ((long) salaries[row] << 32) | row;
+                salariedCounts[departments[row]]++;
+            }
+        }
+        if (keys.length >= PARALLEL_THRESHOLD) {
+            Arrays.parallelSort(keys);
+        } else {
+            Arrays.sort(keys);
+        }
+        this.bySalary = new int[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            bySalary[i] = (int) keys[i];
+        }
+    }
+
+    /**
+     * Creates a builder of a snapshot, to which employees must be added by ascending ID.
+     *
+     * @return The builder.
+     */
+    public static Builder builder() {
+        return new Builder(1024, Collections.emptyList());
+    }
+
+    /**
+     * Gets the number of employees of the snapshot.
+     *
+     * @return The number of employees.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Creates a new snapshot with changes applied, without querying the database.
+     *
+     * @param changes The new state of each changed employee by ID; a null state removes the employee.
+     * @return The patched snapshot.
+     */
+    public EmployeeSnapshot patch(SortedMap<Long, Employee> changes) {
+        Builder builder = new Builder(size + changes.size(), Arrays.asList(dictionary));
+        Iterator<Map.Entry<Long, Employee>> iterator = changes.entrySet().iterator();
+        Map.Entry<Long, Employee> change = iterator.hasNext() ? iterator.next() : null;
+        int row = 0;
+        while (row < size || change != null) {
+            if (change == null || (row < size && ids[row] < change.getKey())) {
+                builder.addEncoded(ids[row], salaries[row], missingSalaries.get(row), departments[row]);
+                row++;
+            } else {
+                if (row < size && ids[row] == change.getKey()) {
+                    row++;
+                }
+                builder.add(change.getKey(), change.getValue());
+                change = iterator.hasNext() ? iterator.next() : null;
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Gets the employees with the highest salaries.
+     *
+     * @param n The maximum number of employees.
+     * @param department The department to be ranked, or null for every department.
+     * @return The employees by descending salary.
+     */
+    public List<EmployeeSalary> topSalaries(int n, String department) {
+        int code = department == null ? UNKNOWN_DEPARTMENT : codeOf(department);
+        List<EmployeeSalary> top = new ArrayList<>(Math.min(n, bySalary.length));
+        if (department != null && code == UNKNOWN_DEPARTMENT) {
+            return top;
+        }
+        for (int i = bySalary.length - 1; i >= 0 && top.size() < n; i--) {
+            int row = bySalary[i];
+            if (department == null || departments[row] == code) {
+                top.add(new EmployeeSalary(ids[row], dictionary[departments[row]], salaries[row]));
+            }
+        }
+        return top;
+    }
+
+    /**
+     * Gets a salary percentile using the nearest-rank method.
+     *
+     * @param percentile The percentile, greater than 0 and at most 100.
+     * @param department The department, or null for every department.
+     * @return The salary at the percentile, or null if there is no salary.
+     */
+    public Integer salaryPercentile(double percentile, String department) {
+        if (percentile <= 0 || percentile > 100) {
+            throw new IllegalArgumentException("Percentile out of range: " + percentile);
+        }
+        int code = department == null ? UNKNOWN_DEPARTMENT : codeOf(department);
+        int count = department == null ? bySalary.length : code == UNKNOWN_DEPARTMENT ? 0 : salariedCounts[code];
+        if (count == 0) {
+            return null;
+        }
+        int rank = Math.max(1, (int) Math.ceil(percentile / 100 * count));
+        if (department == null) {
+            return salaries[bySalary[rank - 1]];
+        }
+        for (int row : bySalary) {
+            if (departments[row] == code && --rank == 0) {
+                return salaries[row];
+            }
+        }
+        throw new IllegalStateException("Inconsistent salary counts of department " + department);
+    }
+
+    /**
+     * Counts the salaries of each department in buckets of equal width.
+     * Large snapshots are scanned in parallel chunks.
+     *
+     * @param bucketWidth The salary range of each bucket, at least 1.
+     * @return The histogram of each department having at least one salary, ordered by department.
+     */
+    public SalaryHistogram salaryHistogram(int bucketWidth) {
+        if (bucketWidth < 1) {
+            throw new IllegalArgumentException("Bucket width must be positive: " + bucketWidth);
+        }
+        if (bySalary.length == 0) {
+            return new SalaryHistogram(bucketWidth, 0, Collections.emptyList());
+        }
+        long lowerBound = Math.floorDiv((long) salaries[bySalary[0]], bucketWidth) * bucketWidth;
+        long buckets = ((long) salaries[bySalary[bySalary.length - 1]] - lowerBound) / bucketWidth + 1;
+        if (buckets > MAX_HISTOGRAM_BUCKETS) {
+            throw new IllegalArgumentException("Bucket width " + bucketWidth + " needs " + buckets
+                    + " buckets, more than " + MAX_HISTOGRAM_BUCKETS);
+        }
+        int chunks = (size + PARALLEL_THRESHOLD - 1) / PARALLEL_THRESHOLD;
+        IntStream chunkStream = IntStream.range(0, chunks);
+        long[][] counts = (chunks > 1 ? chunkStream.parallel() : chunkStream)
+                .mapToObj(chunk -> countChunk(chunk, lowerBound, bucketWidth, (int) buckets))
+                .reduce(EmployeeSnapshot::sum)
+                .orElseGet(() -> new long[dictionary.length][(int) buckets]);
+        List<SalaryHistogram.Department> histograms = new ArrayList<>();
+        for (int code = 0; code < dictionary.length; code++) {
+            if (salariedCounts[code] > 0) {
+                histograms.add(new SalaryHistogram.Department(dictionary[code], counts[code]));
+            }
+        }
+        histograms.sort(Comparator.comparing(SalaryHistogram.Department::getDepartment,
+                Comparator.nullsFirst(Comparator.naturalOrder())));
+        return new SalaryHistogram(bucketWidth, lowerBound, histograms);
+    }
+
+    /**
+     * Counts the salaries of one chunk of rows.
+     */
+    private long[][] countChunk(int chunk, long lowerBound, int bucketWidth, int buckets) {
+        long[][] counts = new long[dictionary.length][buckets];
+        int end = Math.min(size, (chunk + 1) * PARALLEL_THRESHOLD);
+        for (int row = chunk * PARALLEL_THRESHOLD; row < end; row++) {
+            if (!missingSalaries.get(row)) {
+                counts[departments[row]][(int) ((salaries[row] - lowerBound) / bucketWidth)]++;
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Adds the counts of two chunks.
+     */
+    private static long[][] sum(long[][] left, long[][] right) {
+        for (int code = 0; code < left.length; code++) {
+            for (int bucket = 0; bucket < left[code].length; bucket++) {
+                left[code][bucket] += right[code][bucket];
+            }
+        }
+        return left;
+    }
+
+    /**
+     * Gets the dictionary code of a department.
+     */
+    private int codeOf(String department) {
+        Integer code = codes.get(department);
+        return code == null ? UNKNOWN_DEPARTMENT : code;
+    }
+
+    /**
+     * The class which appends rows to a new snapshot, by ascending ID.
+     */
+    public static final class Builder {
+
+        private int size;
+
+        private long[] ids;
+
+        private int[] salaries;
+
+        private short[] departments;
+
+        private final BitSet missingSalaries = new BitSet();
+
+        private final List<String> dictionary;
+
+        private final Map<String, Short> codes = new HashMap<>();
+
+        /**
+         * Constructor.
+         *
+         * @param capacity The initial number of rows.
+         * @param dictionary The departments whose codes are kept.
+         */
+        private Builder(int capacity, List<String> dictionary) {
+            ids = new long[Math.max(capacity, 16)];
+            salaries = new int[ids.length];
+            departments = new short[ids.length];
+            this.dictionary = new ArrayList<>(dictionary);
+            for (int code = 0; code < dictionary.size(); code++) {
+                codes.put(dictionary.get(code), (short) code);
+            }
+        }
+
+        /**
+         * Appends an employee.
+         *
+         * @param id The employee ID, greater than the previous one.
+         * @param salary The salary, or null.
+         * @param department The department, or null.
+         * @return This builder.
+         */
+        public Builder add(long id, Integer salary, String department) {
+            Short code = codes.get(department);
+            if (code == null) {
+                if (dictionary.size() > Short.MAX_VALUE) {
+                    throw new IllegalStateException("Too many departments for the snapshot");
+                }
+                code = (short) dictionary.size();
+                dictionary.add(department);
+                codes.put(department, code);
+            }
+            return addEncoded(id, salary == null ? 0 : salary, salary == null, code);
+        }
+
+        /**
+         * Appends an employee unless its state is null.
+         */
+        private void add(long id, Employee employee) {
+            if (employee != null) {
+                add(id, employee.getSalary(), employee.getDepartment());
+            }
+        }
+
+        /**
+         * Appends an employee whose department is already encoded.
+         */
+        private Builder addEncoded(long id, int salary, boolean missingSalary, short department) {
+            if (size > 0 && id <= ids[size - 1]) {
+                throw new IllegalArgumentException("Employee IDs must be added in ascending order: " + id);
+            }
+            if (size == ids.length) {
+                int capacity = ids.length + (ids.length >> 1);
+                ids = Arrays.copyOf(ids, capacity);
+                salaries = Arrays.copyOf(salaries, capacity);
+                departments = Arrays.copyOf(departments, capacity);
+            }
+            ids[size] = id;
+            salaries[size] = salary;
+            departments[size] = department;
+            if (missingSalary) {
+                missingSalaries.set(size);
+            }
+            size++;
+            return this;
+        }
+
+        /**
+         * Builds the snapshot.
+         *
+         * @return The snapshot of the added employees.
+         */
+        public EmployeeSnapshot build() {
+            return new EmployeeSnapshot(size, Arrays.copyOf(ids, size), Arrays.copyOf(salaries, size),
+                    (BitSet) missingSalaries.clone(), Arrays.copyOf(departments, size), dictionary);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package jp.co.axa.apidemo.cache;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The message sent to the other nodes after employees are written, telling them which cache entries are stale.
+ * Each node numbers its messages from 1, so a receiver noticing a gap knows it lost invalidations.
+ * Heartbeats repeat the number of the last message periodically, so the loss of the last messages
+ * is noticed too, without waiting for a following one.
+ */
+@JsonInclude(JsonInclude.Include.NON_DEFAULT)
+public class CacheInvalidation {
+
+    /** The ID of the sending node, new on each start. */
+    @Getter
+    @Setter
+    private String node;
+
+    /** The number of the message among those of the sending node. */
+    @Getter
+    @Setter
+    private long sequence;
+
+    /** Whether the message is a heartbeat, only carrying the number of the last message sent by the node. */
+    @Getter
+    @Setter
+    private boolean heartbeat;
+
+    /** Whether every employee may have changed, e.g. after a bulk write. */
+    @Getter
+    @Setter
+    private boolean all;
+
+    /** The changed employees. */
+    @Getter
+    @Setter
+    private List<Entry> entries = new ArrayList<>();
+
+    /**
+     * The class which identifies a changed employee and the version it was changed to.
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static class Entry {
+
+        /** The employee ID. */
+        @Getter
+        @Setter
+        private Long id;
+
+        /** The new version of the employee, or null if it was deleted. */
+        @Getter
+        @Setter
+        private Long version;
+
+        /**
+         * Default constructor required by Jackson.
+         */
+        public Entry() {
+        }
+
+        /**
+         * Constructor.
+         *
+         * @param id The employee ID.
+         * @param version The new version of the employee, or null if it was deleted.
+         */
+        public Entry(Long id, Long version) {
+            this.id = id;
+            this.version = version;
+        }
+    }
+}
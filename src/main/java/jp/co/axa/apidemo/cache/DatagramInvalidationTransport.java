@@ -0,0 +1,150 @@
+package jp.co.axa.apidemo.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.MulticastSocket;
+import java.net.SocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * The transport which sends invalidations as UDP datagrams of JSON, to a multicast group and/or to a list
+ * of peer addresses. Several nodes can run on one machine, either joining the same multicast group and port
+ * (the socket allows the port to be shared) or listening on their own loopback port and listing each other as peers.
+ * Datagrams are not acknowledged: a lost one is only noticed by the receivers from the numbers of the following
+ * messages, or of the periodic heartbeats of its sender.
+ */
+public class DatagramInvalidationTransport implements InvalidationTransport {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DatagramInvalidationTransport.class);
+
+    /** The largest datagram payload sent or received. */
+    public static final int MAX_DATAGRAM_SIZE = 65507;
+
+    private final ObjectMapper objectMapper;
+
+    private final int port;
+
+    private final InetAddress group;
+
+    private final List<SocketAddress> destinations = new ArrayList<>();
+
+    private final int timeToLive;
+
+    private volatile MulticastSocket socket;
+
+    /**
+     * Constructor.
+     *
+     * @param objectMapper The ObjectMapper used to encode the invalidations.
+     * @param port The port receiving the invalidations, also the port of the multicast group; 0 for any free port.
+     * @param group The multicast group address, or null to only send to the peers.
+     * @param peers The addresses of the peers, in addition to the multicast group.
+     * @param timeToLive The number of network hops of the multicast datagrams; 0 keeps them on this machine.
+     */
+    public DatagramInvalidationTransport(ObjectMapper objectMapper, int port, InetAddress group,
+                                         List<InetSocketAddress> peers, int timeToLive) {
+        if (group != null && !group.isMulticastAddress()) {
+            throw new IllegalArgumentException(group + " is not a multicast address");
+        }
+        this.objectMapper = objectMapper;
+        this.port = port;
+        this.group = group;
+        this.timeToLive = timeToLive;
+        if (group != null) {
+            destinations.add(new InetSocketAddress(group, port));
+        }
+        destinations.addAll(peers);
+    }
+
+    /**
+     * Opens the socket, joins the multicast group and starts the receiver thread.
+     *
+     * @param listener The listener of the received invalidations, called on the receiver thread.
+     * @throws IOException If the socket cannot be opened.
+     */
+    @Override
+    public void start(Consumer<CacheInvalidation> listener) throws IOException {
+        MulticastSocket opened = new MulticastSocket(port);
+        if (group != null) {
+            opened.setTimeToLive(timeToLive);
+            opened.joinGroup(group);
+        }
+        socket = opened;
+        Thread receiver = new Thread(() -> receive(opened, listener), "cache-invalidation-receiver");
+        receiver.setDaemon(true);
+        receiver.start();
+        LOGGER.info("Receiving cache invalidations on port {}{}.", opened.getLocalPort(),
+                group == null ? "" : " of group " + group.getHostAddress());
+    }
+
+    /**
+     * Gets the port receiving the invalidations.
+     *
+     * @return The local port, or -1 if the transport is not started.
+     */
+    public int getLocalPort() {
+        MulticastSocket current = socket;
+        return current == null ? -1 : current.getLocalPort();
+    }
+
+    /**
+     * Sends an invalidation to the multicast group and to every peer.
+     *
+     * @param invalidation The invalidation.
+     * @throws IOException If the invalidation cannot be encoded or sent.
+     */
+    @Override
+    public void send(CacheInvalidation invalidation) throws IOException {
+        MulticastSocket current = socket;
+        if (current == null) {
+            throw new IOException("The transport is not started");
+        }
+        byte[] data = objectMapper.writeValueAsBytes(invalidation);
+        if (data.length > MAX_DATAGRAM_SIZE) {
+            throw new IOException("Invalidation of " + data.length + " bytes does not fit in a datagram");
+        }
+        for (SocketAddress destination : destinations) {
+            current.send(new DatagramPacket(data, data.length, destination));
+        }
+    }
+
+    /**
+     * Closes the socket, which stops the receiver thread.
+     */
+    @Override
+    public void close() {
+        MulticastSocket current = socket;
+        if (current != null) {
+            current.close();
+        }
+    }
+
+    /**
+     * Decodes the received datagrams until the socket is closed. Runs on the receiver thread.
+     */
+    private void receive(MulticastSocket receiving, Consumer<CacheInvalidation> listener) {
+        byte[] buffer = new byte[MAX_DATAGRAM_SIZE];
+        while (!receiving.isClosed()) {
+            DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+            try {
+                receiving.receive(packet);
+                listener.accept(objectMapper.readValue(packet.getData(), packet.getOffset(), packet.getLength(),
+                        CacheInvalidation.class));
+            } catch (IOException e) {
+                if (!receiving.isClosed()) {
+                    LOGGER.error("Failed to receive a cache invalidation: {}", e.getMessage());
+                }
+            } catch (RuntimeException e) {
+                LOGGER.error("Failed to apply a cache invalidation: {}", e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,505 @@
+package jp.co.axa.apidemo.cache;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jp.co.axa.apidemo.datasource.ReadWriteRoutingDataSource;
+import jp.co.axa.apidemo.entities.Employee;
+import jp.co.axa.apidemo.events.EmployeeChangeEvent;
+import jp.co.axa.apidemo.events.EmployeeChangeTracker;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManagerFactory;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The component which keeps the employee caches of the nodes of the service coherent, when an
+ * InvalidationTransport is configured. The committed changes of this node are batched for a short interval
+ * and sent as numbered CacheInvalidation messages; the messages of the other nodes evict the stale entries
+ * of the local caches: the "employee", "employees" and "employeePages" caches, the Hibernate entity and
+ * query caches, and the version of the employee list. A cached employee at the invalidated version or
+ * newer is kept. A lost message, noticed as a gap in the numbers, clears every employee cache instead.
+ * Each node also sends a periodic heartbeat carrying the number of its last message, so the loss of its
+ * last messages, including those it failed to send, is noticed within one heartbeat interval.
+ * Each invalidation is applied again after a delay, evicting entries loaded by reads which raced with it.
+ * Aggregates derived from the changes (department statistics, analytics) only catch up with the
+ * other nodes at their periodic reconciliation.
+ */
+@Component
+public class EmployeeCacheInvalidator implements MeterBinder {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(EmployeeCacheInvalidator.class);
+
+    /** The name of the single-employee cache. */
+    static final String EMPLOYEE_CACHE = "employee";
+
+    /** The name of the employee list cache. */
+    static final String EMPLOYEES_CACHE = "employees";
+
+    @Autowired(required = false)
+    private InvalidationTransport transport;
+
+    // The caches are resolved on first use: the meters of this component are bound while
+    // the EntityManagerFactory, on which the caches depend, is being created
+
+    @Lazy
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Lazy
+    @Autowired
+    private EmployeePageCache employeePageCache;
+
+    @Autowired
+    private EmployeeChangeTracker employeeChangeTracker;
+
+    @Lazy
+    @Autowired(required = false)
+    private EntityManagerFactory entityManagerFactory;
+
+    /** The routing DataSource, present when reads go to replicas which may not have replayed a remote change. */
+    @Autowired(required = false)
+    private ReadWriteRoutingDataSource routingDataSource;
+
+    /** The time during which changes are collected into one message. */
+    @Value("${app.cache-invalidation.batch-interval-ms:10}")
+    private long batchInterval = 10;
+
+    /** The maximum number of employees of one message; larger batches are split into several messages. */
+    @Value("${app.cache-invalidation.max-batch-size:200}")
+    private int maxBatchSize = 200;
+
+    /** The delay after which a received invalidation is applied again; a negative delay disables it. */
+    @Value("${app.cache-invalidation.redelivery-delay-ms:1000}")
+    private long redeliveryDelay = 1000;
+
+    /** The interval between two heartbeats of this node; zero or a negative interval disables them. */
+    @Value("${app.cache-invalidation.heartbeat-interval-ms:1000}")
+    private long heartbeatInterval = 1000;
+
+    /** The ID of this node in the messages, new on each start. */
+    private final String node = UUID.randomUUID().toString();
+
+    private final Object lock = new Object();
+
+    /** The changed employees waiting to be sent, with their new versions, guarded by lock. */
+    private final Map<Long, Long> pending = new LinkedHashMap<>();
+
+    /** Whether a bulk write is waiting to be sent, guarded by lock. */
+    private boolean pendingAll;
+
+    /** Whether a flush of the pending changes is scheduled, guarded by lock. */
+    private boolean flushScheduled;
+
+    /** The number of the last message sent, guarded by lock. */
+    private long sequence;
+
+    /** The number of the last message received from each node, guarded by itself. */
+    private final Map<String, Long> lastSequences = new HashMap<>();
+
+    private final LongAdder sent = new LongAdder();
+
+    private final LongAdder received = new LongAdder();
+
+    private final LongAdder resets = new LongAdder();
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "cache-invalidation");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Sets the transport of the invalidations.
+     *
+     * @param transport The InvalidationTransport, or null to keep the caches local.
+     */
+    public void setTransport(InvalidationTransport transport) {
+        this.transport = transport;
+    }
+
+    /**
+     * Sets the CacheManager holding the employee caches.
+     *
+     * @param cacheManager The CacheManager instance.
+     */
+    public void setCacheManager(CacheManager cacheManager) {
+        this.cacheManager = cacheManager;
+    }
+
+    /**
+     * Sets the EmployeePageCache used to evict the affected pages.
+     *
+     * @param employeePageCache The EmployeePageCache instance.
+     */
+    public void setEmployeePageCache(EmployeePageCache employeePageCache) {
+        this.employeePageCache = employeePageCache;
+    }
+
+    /**
+     * Sets the EmployeeChangeTracker versioning the employee list.
+     *
+     * @param employeeChangeTracker The EmployeeChangeTracker instance.
+     */
+    public void setEmployeeChangeTracker(EmployeeChangeTracker employeeChangeTracker) {
+        this.employeeChangeTracker = employeeChangeTracker;
+    }
+
+    /**
+     * Sets the EntityManagerFactory whose Hibernate caches are evicted.
+     *
+     * @param entityManagerFactory The EntityManagerFactory, or null if there is no second-level cache.
+     */
+    public void setEntityManagerFactory(EntityManagerFactory entityManagerFactory) {
+        this.entityManagerFactory = entityManagerFactory;
+    }
+
+    /**
+     * Sets the routing DataSource sending the reads to the primary after a remote change.
+     *
+     * @param routingDataSource The ReadWriteRoutingDataSource, or null if there are no replicas.
+     */
+    public void setRoutingDataSource(ReadWriteRoutingDataSource routingDataSource) {
+        this.routingDataSource = routingDataSource;
+    }
+
+    /**
+     * Sets the time during which changes are collected into one message.
+     *
+     * @param batchInterval The interval in milliseconds.
+     */
+    public void setBatchInterval(long batchInterval) {
+        this.batchInterval = batchInterval;
+    }
+
+    /**
+     * Sets the maximum number of employees of one message.
+     *
+     * @param maxBatchSize The number of employees.
+     */
+    public void setMaxBatchSize(int maxBatchSize) {
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    /**
+     * Sets the delay after which a received invalidation is applied again.
+     *
+     * @param redeliveryDelay The delay in milliseconds; a negative delay disables it.
+     */
+    public void setRedeliveryDelay(long redeliveryDelay) {
+        this.redeliveryDelay = redeliveryDelay;
+    }
+
+    /**
+     * Sets the interval between two heartbeats of this node.
+     *
+     * @param heartbeatInterval The interval in milliseconds; zero or a negative interval disables them.
+     */
+    public void setHeartbeatInterval(long heartbeatInterval) {
+        this.heartbeatInterval = heartbeatInterval;
+    }
+
+    /**
+     * Starts receiving the invalidations of the other nodes, and sending the heartbeats of this node.
+     *
+     * @throws IOException If the transport cannot be opened.
+     */
+    @PostConstruct
+    public void start() throws IOException {
+        if (transport != null) {
+            transport.start(this::apply);
+            if (heartbeatInterval > 0) {
+                scheduler.scheduleWithFixedDelay(this::heartbeat, heartbeatInterval, heartbeatInterval,
+                        TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    /**
+     * Sends the pending changes, then stops the transport.
+     *
+     * @throws InterruptedException If interrupted while waiting for the last messages.
+     */
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        schedule(this::flush, 0);
+        scheduler.shutdown();
+        scheduler.awaitTermination(10, TimeUnit.SECONDS);
+        if (transport != null) {
+            transport.close();
+        }
+    }
+
+    /**
+     * Queues a committed change of this node for the other nodes.
+     *
+     * @param event The change event.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onEmployeeChange(EmployeeChangeEvent event) {
+        if (transport == null) {
+            return;
+        }
+        synchronized (lock) {
+            if (event.getType() == EmployeeChangeEvent.Type.BULK) {
+                pendingAll = true;
+            } else {
+                Employee current = event.getCurrent();
+                Employee changed = current != null ? current : event.getPrevious();
+                pending.put(changed.getId(), current == null ? null : current.getVersion());
+            }
+            if (!flushScheduled) {
+                flushScheduled = true;
+                schedule(this::flush, batchInterval);
+            }
+        }
+    }
+
+    /**
+     * Waits until the messages and invalidations scheduled so far have been processed.
+     *
+     * @throws Exception If the scheduler fails or is interrupted.
+     */
+    void awaitScheduled() throws Exception {
+        scheduler.schedule(() -> { }, batchInterval, TimeUnit.MILLISECONDS).get(10, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Sends the pending changes as numbered messages. Runs on the scheduler thread.
+     */
+    private void flush() {
+        List<CacheInvalidation> messages = new ArrayList<>();
+        synchronized (lock) {
+            flushScheduled = false;
+            if (pendingAll) {
+                CacheInvalidation message = newMessage();
+                message.setAll(true);
+                messages.add(message);
+            } else {
+                CacheInvalidation message = null;
+                for (Map.Entry<Long, Long> change : pending.entrySet()) {
+                    if (message == null || message.getEntries().size() == maxBatchSize) {
+                        message = newMessage();
+                        messages.add(message);
+                    }
+                    message.getEntries().add(new CacheInvalidation.Entry(change.getKey(), change.getValue()));
+                }
+            }
+            pending.clear();
+            pendingAll = false;
+        }
+        for (CacheInvalidation message : messages) {
+            try {
+                transport.send(message);
+                sent.increment();
+            } catch (IOException e) {
+                // The receivers notice the gap in the numbers and clear their caches
+                LOGGER.error("Failed to send cache invalidation {}: {}", message.getSequence(), e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Sends the number of the last message of this node, if any. Runs on the scheduler thread,
+     * so a flush has always sent the messages it numbered before.
+     */
+    void heartbeat() {
+        CacheInvalidation message = new CacheInvalidation();
+        message.setNode(node);
+        message.setHeartbeat(true);
+        synchronized (lock) {
+            message.setSequence(sequence);
+        }
+        if (message.getSequence() == 0) {
+            return;
+        }
+        try {
+            transport.send(message);
+        } catch (IOException e) {
+            LOGGER.warn("Failed to send cache invalidation heartbeat {}: {}", message.getSequence(), e.getMessage());
+        }
+    }
+
+    /**
+     * Creates the next message of this node. Must be called under lock.
+     */
+    private CacheInvalidation newMessage() {
+        CacheInvalidation message = new CacheInvalidation();
+        message.setNode(node);
+        message.setSequence(++sequence);
+        return message;
+    }
+
+    /**
+     * Applies an invalidation received from another node. Runs on a thread of the transport.
+     * A heartbeat is only checked against the number of the last message received from its node.
+     *
+     * @param message The invalidation or heartbeat.
+     */
+    void apply(CacheInvalidation message) {
+        if (node.equals(message.getNode())) {
+            // Multicast delivers the messages of this node to itself too
+            return;
+        }
+        boolean reset;
+        synchronized (lastSequences) {
+            Long last = lastSequences.get(message.getNode());
+            if (last != null && message.getSequence() <= last) {
+                if (!message.isHeartbeat()) {
+                    LOGGER.debug("Ignoring duplicate cache invalidation {} of node {}.", message.getSequence(),
+                            message.getNode());
+                }
+                return;
+            }
+            lastSequences.put(message.getNode(), message.getSequence());
+            long expected = last == null ? 1 : last + 1;
+            // A heartbeat above the last number means every message up to its number was lost
+            long lastLost = message.isHeartbeat() ? message.getSequence() : message.getSequence() - 1;
+            reset = lastLost >= expected;
+            if (reset) {
+                LOGGER.warn("Lost cache invalidations {} to {} of node {}, clearing the employee caches.",
+                        expected, lastLost, message.getNode());
+                resets.increment();
+            }
+        }
+        if (!message.isHeartbeat()) {
+            received.increment();
+        } else if (!reset) {
+            return;
+        }
+        Runnable invalidation = reset || message.isAll() ? this::invalidateAll : () -> invalidate(message.getEntries());
+        invalidation.run();
+        if (redeliveryDelay >= 0) {
+            schedule(invalidation, redeliveryDelay);
+        }
+    }
+
+    /**
+     * Evicts the cache entries of changed employees.
+     */
+    private void invalidate(List<CacheInvalidation.Entry> entries) {
+        Cache employees = cacheManager.getCache(EMPLOYEE_CACHE);
+        for (CacheInvalidation.Entry entry : entries) {
+            if (employees != null && isStale(employees.get(entry.getId()), entry.getVersion())) {
+                employees.evict(entry.getId());
+            }
+            employeePageCache.evictAffectedPages(entry.getId());
+            if (entityManagerFactory != null) {
+                entityManagerFactory.getCache().evict(Employee.class, entry.getId());
+            }
+        }
+        clear(EMPLOYEES_CACHE);
+        evictQueries();
+        onRemoteChange();
+    }
+
+    /**
+     * Evicts every cached employee.
+     */
+    private void invalidateAll() {
+        clear(EMPLOYEE_CACHE);
+        clear(EMPLOYEES_CACHE);
+        clear(EmployeePageCache.CACHE_NAME);
+        if (entityManagerFactory != null) {
+            entityManagerFactory.getCache().evict(Employee.class);
+        }
+        evictQueries();
+        onRemoteChange();
+    }
+
+    /**
+     * Checks whether a cached employee is older than the invalidated version.
+     */
+    private static boolean isStale(Cache.ValueWrapper cached, Long version) {
+        if (cached == null) {
+            return false;
+        }
+        if (!(cached.get() instanceof Employee) || version == null) {
+            return true;
+        }
+        Long cachedVersion = ((Employee) cached.get()).getVersion();
+        return cachedVersion == null || cachedVersion < version;
+    }
+
+    /**
+     * Clears a Spring cache, if it exists.
+     */
+    private void clear(String name) {
+        Cache cache = cacheManager.getCache(name);
+        if (cache != null) {
+            cache.clear();
+        }
+    }
+
+    /**
+     * Makes the version of the employee list outdated and, with replicas, keeps the reads on the primary
+     * until the replicas may have replayed the remote change.
+     */
+    private void onRemoteChange() {
+        employeeChangeTracker.onRemoteChange();
+        if (routingDataSource != null) {
+            routingDataSource.onRemoteWrite();
+        }
+    }
+
+    /**
+     * Evicts the Hibernate query cache, whose results are only invalidated by the writes of this node.
+     */
+    private void evictQueries() {
+        if (entityManagerFactory != null && entityManagerFactory.getCache() instanceof org.hibernate.Cache) {
+            ((org.hibernate.Cache) entityManagerFactory.getCache()).evictQueryRegions();
+        }
+    }
+
+    /**
+     * Schedules a task on the scheduler thread; tasks arriving after shutdown are dropped.
+     */
+    private void schedule(Runnable task, long delay) {
+        try {
+            scheduler.schedule(task, delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            LOGGER.debug("Cache invalidation is shut down, dropping task.");
+        }
+    }
+
+    /**
+     * Registers the message counters.
+     *
+     * @param registry The meter registry.
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("cache.invalidation.messages", sent, LongAdder::sum)
+                .tag("direction", "sent")
+                .description("The number of cache invalidation messages sent to the other nodes")
+                .register(registry);
+        FunctionCounter.builder("cache.invalidation.messages", received, LongAdder::sum)
+                .tag("direction", "received")
+                .description("The number of cache invalidation messages applied from the other nodes")
+                .register(registry);
+        FunctionCounter.builder("cache.invalidation.resets", resets, LongAdder::sum)
+                .description("The number of times the employee caches were cleared after lost invalidations")
+                .register(registry);
+    }
+}
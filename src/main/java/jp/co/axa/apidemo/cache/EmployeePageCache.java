@@ -0,0 +1,108 @@
+package jp.co.axa.apidemo.cache;
+
+import jp.co.axa.apidemo.dto.EmployeePage;
+import jp.co.axa.apidemo.entities.Employee;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The class which keeps the "employeePages" cache consistent with single-employee writes.
+ * Because pages are keyed by the last seen ID, a write only affects the page whose ID range, from its
+ * cursor to its last employee, contains the employee, plus the tail pages into which a newly created
+ * employee falls.
+ */
+@Component
+public class EmployeePageCache {
+
+    /** The name of the keyset page cache. */
+    public static final String CACHE_NAME = "employeePages";
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    /**
+     * Sets the CacheManager holding the page cache.
+     *
+     * @param cacheManager The CacheManager instance.
+     */
+    public void setCacheManager(CacheManager cacheManager) {
+        this.cacheManager = cacheManager;
+    }
+
+    /**
+     * Evicts the cached pages affected by the creation, update or deletion of an employee.
+     *
+     * @param employeeId The ID of the written employee.
+     */
+    public void evictAffectedPages(Long employeeId) {
+        Map<Object, Object> pages = nativeMap(cacheManager.getCache(CACHE_NAME));
+        if (pages == null) {
+            return;
+        }
+        pages.entrySet().removeIf(entry -> entry.getValue() instanceof EmployeePage
+                && isAffected(afterIdOf(entry.getKey()), (EmployeePage) entry.getValue(), employeeId));
+    }
+
+    /**
+     * Checks whether a page may change when the specified employee is written.
+     * A page covers the IDs after its cursor up to its last employee, so an employee created
+     * between the cursor and the first employee of the page changes it too.
+     *
+     * @param afterId The cursor the page starts after, or null if unknown.
+     * @param page The cached page.
+     * @param employeeId The ID of the written employee.
+     * @return True if the page has to be evicted.
+     */
+    static boolean isAffected(Long afterId, EmployeePage page, Long employeeId) {
+        if (afterId != null && employeeId <= afterId) {
+            return false;
+        }
+        List<Employee> employees = page.getEmployees();
+        if (page.getNextCursor() == null || employees.isEmpty()) {
+            return true;
+        }
+        return employeeId <= employees.get(employees.size() - 1).getId();
+    }
+
+    /**
+     * Reads the cursor a page starts after from its "afterId:size" cache key.
+     *
+     * @param key The cache key.
+     * @return The ID the page starts after, or null if the key is not in that form.
+     */
+    static Long afterIdOf(Object key) {
+        String text = String.valueOf(key);
+        int separator = text.indexOf(':');
+        try {
+            return Long.valueOf(separator < 0 ? text : text.substring(0, separator));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Exposes the entries of a cache as a live map, if its backend supports it.
+     *
+     * @param cache The Spring cache.
+     * @return The live map view of the native cache, or null if not available.
+     */
+    @SuppressWarnings("unchecked")
+    static Map<Object, Object> nativeMap(Cache cache) {
+        if (cache == null) {
+            return null;
+        }
+        Object nativeCache = cache.getNativeCache();
+        if (nativeCache instanceof com.github.benmanes.caffeine.cache.Cache) {
+            return ((com.github.benmanes.caffeine.cache.Cache<Object, Object>) nativeCache).asMap();
+        }
+        if (nativeCache instanceof Map) {
+            return (Map<Object, Object>) nativeCache;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,35 @@
+package jp.co.axa.apidemo.cache;
+
+import lombok.Getter;
+
+/**
+ * The class which holds the encoded bytes of a response body, as cached by EncodedResponseCache.
+ * The arrays are shared by every request and written as is, so they must never be modified.
+ */
+public class EncodedResponse {
+
+    /** The version of the data the bytes were encoded from. */
+    @Getter
+    private final long version;
+
+    /** The encoded body. */
+    @Getter
+    private final byte[] body;
+
+    /** The gzip-compressed body, or null if the body is not compressed. */
+    @Getter
+    private final byte[] gzippedBody;
+
+    /**
+     * Constructor.
+     *
+     * @param version The version of the data the bytes were encoded from.
+     * @param body The encoded body.
+     * @param gzippedBody The gzip-compressed body, or null.
+     */
+    public EncodedResponse(long version, byte[] body, byte[] gzippedBody) {
+        this.version = version;
+        this.body = body;
+        this.gzippedBody = gzippedBody;
+    }
+}
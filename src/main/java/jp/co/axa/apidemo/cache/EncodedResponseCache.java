@@ -0,0 +1,253 @@
+package jp.co.axa.apidemo.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jp.co.axa.apidemo.events.EmployeeChangeEvent;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.AbstractJackson2HttpMessageConverter;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The class which caches the encoded bytes of hot responses, so a hit is written to the client
+ * without serializing the objects again. Each response is cached under a name and media type together
+ * with the version of the data it was encoded from; an entry of another version is never served.
+ * Entries are also dropped on every committed EmployeeChangeEvent, like the object caches.
+ * Besides JSON, responses are encoded in the binary formats of the registered Jackson message converters.
+ */
+@Component
+public class EncodedResponseCache implements MeterBinder {
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    /** The Jackson message converters, whose binary media types are offered next to JSON. */
+    @Autowired(required = false)
+    private List<AbstractJackson2HttpMessageConverter> converters = Collections.emptyList();
+
+    /** Whether responses are served from the cache; when disabled, callers serialize as usual. */
+    @Value("${app.response-cache.enabled:false}")
+    private boolean enabled;
+
+    /** The body size from which a gzip-compressed copy is kept; a negative size disables compression. */
+    @Value("${app.response-cache.gzip-min-size:1024}")
+    private int gzipMinSize = 1024;
+
+    private final ConcurrentMap<String, EncodedResponse> responses = new ConcurrentHashMap<>();
+
+    private final SingleFlight<String, EncodedResponse> singleFlight = new SingleFlight<>("encodedResponses");
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Sets the ObjectMapper used to encode the responses.
+     *
+     * @param objectMapper The ObjectMapper instance.
+     */
+    public void setObjectMapper(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Sets the Jackson message converters whose binary media types are offered next to JSON.
+     *
+     * @param converters The message converters.
+     */
+    public void setConverters(List<AbstractJackson2HttpMessageConverter> converters) {
+        this.converters = converters;
+    }
+
+    /**
+     * Enables or disables the cache.
+     *
+     * @param enabled True to serve responses from the cache.
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Sets the body size from which a gzip-compressed copy is kept.
+     *
+     * @param gzipMinSize The size in bytes; a negative size disables compression.
+     */
+    public void setGzipMinSize(int gzipMinSize) {
+        this.gzipMinSize = gzipMinSize;
+    }
+
+    /**
+     * Checks whether responses are served from the cache.
+     *
+     * @return True if the cache is enabled.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Selects the media type of a response from the Accept header of the request.
+     *
+     * @param accept The Accept header, or null for any media type.
+     * @return The preferred media type the cache can encode, or null if none is acceptable.
+     */
+    public MediaType negotiate(String accept) {
+        List<MediaType> acceptable;
+        try {
+            acceptable = accept == null ? Collections.singletonList(MediaType.ALL) : MediaType.parseMediaTypes(accept);
+        } catch (InvalidMediaTypeException e) {
+            return null;
+        }
+        MediaType.sortBySpecificityAndQuality(acceptable);
+        for (MediaType requested : acceptable) {
+            if (requested.getQualityValue() > 0) {
+                for (MediaType produced : getMediaTypes()) {
+                    if (requested.isCompatibleWith(produced) && !isRefused(produced, acceptable)) {
+                        return produced;
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Checks whether a media type is excluded by a zero quality in the Accept header.
+     */
+    private static boolean isRefused(MediaType produced, List<MediaType> acceptable) {
+        for (MediaType requested : acceptable) {
+            if (requested.getQualityValue() == 0 && requested.includes(produced)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Gets the encoded response of a version of the data, encoding it on a miss.
+     * Concurrent misses of the same version share a single load and encoding.
+     *
+     * @param name The name of the response.
+     * @param version The current version of the data.
+     * @param mediaType The media type of the response, as returned by negotiate.
+     * @param loader The loader of the objects to be encoded.
+     * @return The encoded response.
+     */
+    public EncodedResponse get(String name, long version, MediaType mediaType, Supplier<?> loader) {
+        String key = name + ";" + mediaType;
+        EncodedResponse cached = responses.get(key);
+        if (cached != null && cached.getVersion() == version) {
+            hits.increment();
+            return cached;
+        }
+        misses.increment();
+        ObjectMapper mapper = mapperFor(mediaType);
+        EncodedResponse encoded = singleFlight.load(key + ":" + version, () -> encode(version, mapper, loader.get()));
+        // An encoding finishing late must not replace a newer one
+        responses.merge(key, encoded, (current, added) -> added.getVersion() >= current.getVersion() ? added : current);
+        return encoded;
+    }
+
+    /**
+     * Gets the media types the cache can encode, JSON first.
+     */
+    private List<MediaType> getMediaTypes() {
+        List<MediaType> mediaTypes = new ArrayList<>();
+        mediaTypes.add(MediaType.APPLICATION_JSON_UTF8);
+        for (AbstractJackson2HttpMessageConverter converter : converters) {
+            for (MediaType mediaType : converter.getSupportedMediaTypes()) {
+                if (mediaType.isConcrete() && !isJson(mediaType) && !mediaTypes.contains(mediaType)) {
+                    mediaTypes.add(mediaType);
+                }
+            }
+        }
+        return mediaTypes;
+    }
+
+    /**
+     * Gets the ObjectMapper encoding a media type.
+     */
+    private ObjectMapper mapperFor(MediaType mediaType) {
+        if (!isJson(mediaType)) {
+            for (AbstractJackson2HttpMessageConverter converter : converters) {
+                if (converter.getSupportedMediaTypes().contains(mediaType)) {
+                    return converter.getObjectMapper();
+                }
+            }
+        }
+        return objectMapper;
+    }
+
+    /**
+     * Checks whether a media type is JSON.
+     */
+    private static boolean isJson(MediaType mediaType) {
+        return MediaType.APPLICATION_JSON.isCompatibleWith(mediaType) || mediaType.getSubtype().endsWith("+json");
+    }
+
+    /**
+     * Drops every cached response after a committed employee change.
+     *
+     * @param event The change event.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onEmployeeChange(EmployeeChangeEvent event) {
+        responses.clear();
+    }
+
+    /**
+     * Registers the hit and miss counters.
+     *
+     * @param registry The meter registry.
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("cache.encoded.requests", hits, LongAdder::sum)
+                .tag("result", "hit")
+                .description("The number of responses served from the encoded bytes")
+                .register(registry);
+        FunctionCounter.builder("cache.encoded.requests", misses, LongAdder::sum)
+                .tag("result", "miss")
+                .description("The number of responses encoded again")
+                .register(registry);
+        singleFlight.bindTo(registry);
+    }
+
+    /**
+     * Encodes objects, plus a gzip-compressed copy if they are large enough.
+     */
+    private EncodedResponse encode(long version, ObjectMapper mapper, Object value) {
+        try {
+            byte[] body = mapper.writeValueAsBytes(value);
+            byte[] gzippedBody = null;
+            if (gzipMinSize >= 0 && body.length >= gzipMinSize) {
+                ByteArrayOutputStream compressed = new ByteArrayOutputStream(body.length / 4 + 64);
+                try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+                    gzip.write(body);
+                }
+                gzippedBody = compressed.toByteArray();
+            }
+            return new EncodedResponse(version, body, gzippedBody);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package jp.co.axa.apidemo.cache;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * The transport which delivers invalidations between nodes living in the same JVM, e.g. in tests.
+ * Invalidations are delivered synchronously, on the sending thread, to every other started member of the group.
+ */
+public class InMemoryInvalidationTransport implements InvalidationTransport {
+
+    private final List<InMemoryInvalidationTransport> group;
+
+    private volatile Consumer<CacheInvalidation> listener;
+
+    /**
+     * Constructor of the first member of a new group.
+     */
+    public InMemoryInvalidationTransport() {
+        this(new CopyOnWriteArrayList<>());
+    }
+
+    /**
+     * Constructor of a member of an existing group.
+     */
+    private InMemoryInvalidationTransport(List<InMemoryInvalidationTransport> group) {
+        this.group = group;
+    }
+
+    /**
+     * Creates another member of the group of this transport.
+     *
+     * @return The new transport.
+     */
+    public InMemoryInvalidationTransport newPeer() {
+        return new InMemoryInvalidationTransport(group);
+    }
+
+    /**
+     * Joins the group.
+     *
+     * @param listener The listener of the received invalidations.
+     */
+    @Override
+    public void start(Consumer<CacheInvalidation> listener) {
+        this.listener = listener;
+        group.add(this);
+    }
+
+    /**
+     * Delivers an invalidation to the other members of the group.
+     *
+     * @param invalidation The invalidation.
+     */
+    @Override
+    public void send(CacheInvalidation invalidation) {
+        for (InMemoryInvalidationTransport peer : group) {
+            if (peer != this) {
+                peer.listener.accept(invalidation);
+            }
+        }
+    }
+
+    /**
+     * Leaves the group.
+     */
+    @Override
+    public void close() {
+        group.remove(this);
+    }
+}
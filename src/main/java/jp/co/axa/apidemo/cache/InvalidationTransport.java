@@ -0,0 +1,32 @@
+package jp.co.axa.apidemo.cache;
+
+import java.io.IOException;
+import java.util.function.Consumer;
+
+/**
+ * The interface which carries cache invalidations between the nodes of the service.
+ * Delivery is best effort: messages may be lost, but are never altered.
+ */
+public interface InvalidationTransport {
+
+    /**
+     * Starts receiving the invalidations of the other nodes.
+     *
+     * @param listener The listener of the received invalidations, called on a thread of the transport.
+     * @throws IOException If the transport cannot be opened.
+     */
+    void start(Consumer<CacheInvalidation> listener) throws IOException;
+
+    /**
+     * Sends an invalidation to the other nodes.
+     *
+     * @param invalidation The invalidation.
+     * @throws IOException If the invalidation cannot be sent.
+     */
+    void send(CacheInvalidation invalidation) throws IOException;
+
+    /**
+     * Stops the transport.
+     */
+    void close();
+}
@@ -0,0 +1,115 @@
+package jp.co.axa.apidemo.cache;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * The class which coalesces concurrent loads of the same key into a single in-flight load.
+ * The first caller of a key runs the loader; callers arriving while it runs wait for and share its result.
+ *
+ * @param <K> The type of the keys.
+ * @param <V> The type of the loaded values.
+ */
+public class SingleFlight<K, V> implements MeterBinder {
+
+    private final String name;
+
+    private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    private final LongAdder loads = new LongAdder();
+
+    private final LongAdder coalescedLoads = new LongAdder();
+
+    /**
+     * Constructor.
+     *
+     * @param name The name used to tag the metrics, usually the name of the cache it loads for.
+     */
+    public SingleFlight(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Loads the value of a key, sharing the result of a load already in flight for the same key.
+     *
+     * @param key The key to be loaded.
+     * @param loader The loader run if no load is in flight for the key.
+     * @return The loaded value.
+     */
+    public V load(K key, Supplier<V> loader) {
+        CompletableFuture<V> future = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, future);
+        if (existing != null) {
+            coalescedLoads.increment();
+            return await(existing);
+        }
+        loads.increment();
+        try {
+            V value = loader.get();
+            future.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, future);
+        }
+    }
+
+    /**
+     * Gets the number of loads actually run.
+     *
+     * @return The number of loads.
+     */
+    public long getLoadCount() {
+        return loads.sum();
+    }
+
+    /**
+     * Gets the number of loads saved by joining a load already in flight.
+     *
+     * @return The number of coalesced loads.
+     */
+    public long getCoalescedLoadCount() {
+        return coalescedLoads.sum();
+    }
+
+    /**
+     * Registers the load counters.
+     *
+     * @param registry The meter registry.
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("cache.singleflight.loads", loads, LongAdder::sum)
+                .tag("cache", name)
+                .description("The number of loads run on a cache miss")
+                .register(registry);
+        FunctionCounter.builder("cache.singleflight.coalesced", coalescedLoads, LongAdder::sum)
+                .tag("cache", name)
+                .description("The number of cache misses which joined a load already in flight")
+                .register(registry);
+    }
+
+    private static <V> V await(CompletableFuture<V> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package jp.co.axa.apidemo.concurrency;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The limit of the requests handled at the same time, adapted to the observed latency with a gradient
+ * algorithm. Each completed request updates a short-term and a long-term average of the latency:
+ * while the short-term one stays close to the long-term one the limit grows by about its square root,
+ * and as it rises above it the limit shrinks in proportion, down to half per update. A request dropped
+ * downstream (e.g. by a saturated executor) cuts the limit multiplicatively.
+ * A caller gets a share of the limit, so low-priority callers leave headroom to the others.
+ * Its limit, requests in flight, rejections and drops are published as the "concurrency.*" metrics.
+ */
+public class AdaptiveConcurrencyLimiter implements MeterBinder {
+
+    /** The number of samples averaged by the short-term latency. */
+    private static final int SHORT_WINDOW = 10;
+
+    /** The number of samples averaged by the long-term latency. */
+    private static final int LONG_WINDOW = 600;
+
+    /** The lowest gradient, halving the limit at most per update. */
+    private static final double MIN_GRADIENT = 0.5;
+
+    /** The factor applied to the limit when a request is dropped. */
+    private static final double DROP_BACKOFF = 0.9;
+
+    private final String name;
+
+    private final int minLimit;
+
+    private final int maxLimit;
+
+    private final double smoothing;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private final LongAdder rejections = new LongAdder();
+
+    private final LongAdder drops = new LongAdder();
+
+    private volatile double limit;
+
+    private double shortRtt;
+
+    private double longRtt;
+
+    /**
+     * Constructor.
+     *
+     * @param name The name of the limiter in its metrics.
+     * @param initialLimit The limit before any latency has been observed.
+     * @param minLimit The lowest limit.
+     * @param maxLimit The highest limit.
+     * @param smoothing The weight of each new limit, between 0 (never changes) and 1 (no smoothing).
+     */
+    public AdaptiveConcurrencyLimiter(String name, int initialLimit, int minLimit, int maxLimit, double smoothing) {
+        this.name = name;
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.smoothing = smoothing;
+    }
+
+    /**
+     * Admits a request if the requests in flight are below the share of the limit of its caller.
+     *
+     * @param share The share of the limit the caller may use, between 0 and 1.
+     * @return The permit of the admitted request, or null if it is rejected.
+     */
+    public Permit tryAcquire(double share) {
+        int allowed = Math.max(1, (int) (limit * share));
+        while (true) {
+            int current = inFlight.get();
+            if (current >= allowed) {
+                rejections.increment();
+                return null;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return new Permit(current + 1);
+            }
+        }
+    }
+
+    /**
+     * Gets the current limit.
+     *
+     * @return The number of requests which may be handled at the same time.
+     */
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    /**
+     * Gets the number of admitted requests not yet completed.
+     *
+     * @return The requests in flight.
+     */
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * Registers the limit, requests in flight, rejection and drop metrics.
+     *
+     * @param registry The meter registry.
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("concurrency.limit", this, AdaptiveConcurrencyLimiter::getLimit)
+                .tag("name", name)
+                .description("The number of requests which may be handled at the same time")
+                .register(registry);
+        Gauge.builder("concurrency.inflight", this, AdaptiveConcurrencyLimiter::getInFlight)
+                .tag("name", name)
+                .description("The number of admitted requests not yet completed")
+                .register(registry);
+        FunctionCounter.builder("concurrency.rejected", rejections, LongAdder::sum)
+                .tag("name", name)
+                .description("The number of requests rejected because the limit was reached")
+                .register(registry);
+        FunctionCounter.builder("concurrency.dropped", drops, LongAdder::sum)
+                .tag("name", name)
+                .description("The number of admitted requests dropped downstream")
+                .register(registry);
+    }
+
+    /**
+     * Updates the limit with the latency of a completed request.
+     */
+    private synchronized void onSample(long rttNanos, int inFlightAtStart) {
+        if (longRtt == 0) {
+            shortRtt = rttNanos;
+            longRtt = rttNanos;
+        } else {
+            shortRtt += (rttNanos - shortRtt) / SHORT_WINDOW;
+            longRtt += (rttNanos - longRtt) / LONG_WINDOW;
+        }
+        if (longRtt / shortRtt > 2) {
+            // The latency has dropped well below its long-term average: let the average catch up
+            longRtt *= 0.95;
+        }
+        if (inFlightAtStart < limit / 2) {
+            // Too few requests to tell whether the limit is reached
+            return;
+        }
+        double gradient = Math.max(MIN_GRADIENT, Math.min(1.0, longRtt / shortRtt));
+        double newLimit = limit * gradient + Math.sqrt(limit);
+        setLimit(limit * (1 - smoothing) + newLimit * smoothing);
+    }
+
+    /**
+     * Cuts the limit after a request has been dropped downstream.
+     */
+    private synchronized void onDrop() {
+        drops.increment();
+        setLimit(limit * DROP_BACKOFF);
+    }
+
+    /**
+     * Sets the limit within its bounds.
+     */
+    private void setLimit(double newLimit) {
+        limit = Math.max(minLimit, Math.min(maxLimit, newLimit));
+    }
+
+    /**
+     * The admission of a request, to be released exactly once when the request completes.
+     */
+    public class Permit {
+
+        private final long start = System.nanoTime();
+
+        private final int inFlightAtStart;
+
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        /**
+         * Constructor.
+         *
+         * @param inFlightAtStart The requests in flight once this one was admitted.
+         */
+        Permit(int inFlightAtStart) {
+            this.inFlightAtStart = inFlightAtStart;
+        }
+
+        /**
+         * Releases the permit of a request which completed normally, sampling its latency.
+         */
+        public void release() {
+            if (released.compareAndSet(false, true)) {
+                inFlight.decrementAndGet();
+                onSample(System.nanoTime() - start, inFlightAtStart);
+            }
+        }
+
+        /**
+         * Releases the permit of a request dropped because the service was overloaded, cutting the limit.
+         */
+        public void releaseDropped() {
+            if (released.compareAndSet(false, true)) {
+                inFlight.decrementAndGet();
+                onDrop();
+            }
+        }
+
+        /**
+         * Releases the permit of a request whose latency says nothing of the load (e.g. a failure).
+         */
+        public void releaseIgnored() {
+            if (released.compareAndSet(false, true)) {
+                inFlight.decrementAndGet();
+            }
+        }
+    }
+}
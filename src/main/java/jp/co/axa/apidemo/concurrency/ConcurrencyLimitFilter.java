@@ -0,0 +1,208 @@
+package jp.co.axa.apidemo.concurrency;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The filter shedding the requests beyond the adaptive concurrency limits: reads and writes have
+ * limiters of their own, and each role may use its share of the limit, so that low-priority callers
+ * leave headroom to the others. A rejected request is answered at once with 503 Service Unavailable
+ * and a Retry-After header. The permit of an asynchronous request is released when it completes.
+ * It must run after the Spring Security filters, which establish the roles of the caller.
+ */
+public class ConcurrencyLimitFilter extends OncePerRequestFilter {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ConcurrencyLimitFilter.class);
+
+    private static final String ROLE_PREFIX = "ROLE_";
+
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+
+    private final AdaptiveConcurrencyLimiter readLimiter;
+
+    private final AdaptiveConcurrencyLimiter writeLimiter;
+
+    private final Map<String, Double> shares;
+
+    private final double defaultShare;
+
+    private final List<String> readPaths;
+
+    private final List<String> excludedPaths;
+
+    private final long retryAfterSeconds;
+
+    /**
+     * Constructor.
+     *
+     * @param readLimiter The limiter of the GET and HEAD requests and of the read paths.
+     * @param writeLimiter The limiter of the other requests.
+     * @param shares The share of the limits of each role (e.g. "ADMIN" to 1.0).
+     * @param defaultShare The share of a caller without any listed role.
+     * @param readPaths The path patterns of the reads sent with another method (e.g. a POST of IDs).
+     * @param excludedPaths The path patterns of the long-lived requests which are not limited.
+     * @param retryAfterSeconds The delay suggested to rejected callers.
+     */
+    public ConcurrencyLimitFilter(AdaptiveConcurrencyLimiter readLimiter, AdaptiveConcurrencyLimiter writeLimiter,
+                                  Map<String, Double> shares, double defaultShare, List<String> readPaths,
+                                  List<String> excludedPaths, long retryAfterSeconds) {
+        this.readLimiter = readLimiter;
+        this.writeLimiter = writeLimiter;
+        this.shares = shares;
+        this.defaultShare = defaultShare;
+        this.readPaths = readPaths;
+        this.excludedPaths = excludedPaths;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    /**
+     * Skips the long-lived requests, such as streams and uploads, whose latency says nothing of the load.
+     *
+     * @param request The request.
+     * @return True if the request is not limited.
+     */
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return matchesAny(excludedPaths, request);
+    }
+
+    /**
+     * Admits the request within the limit, or rejects it at once.
+     *
+     * @param request The request.
+     * @param response The response.
+     * @param chain The remaining filters.
+     * @throws ServletException If the handling fails.
+     * @throws IOException If the handling fails.
+     */
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        boolean read = HttpMethod.GET.matches(request.getMethod()) || HttpMethod.HEAD.matches(request.getMethod())
+                || matchesAny(readPaths, request);
+        AdaptiveConcurrencyLimiter limiter = read ? readLimiter : writeLimiter;
+        AdaptiveConcurrencyLimiter.Permit permit = limiter.tryAcquire(shareOf(SecurityContextHolder.getContext().getAuthentication()));
+        if (permit == null) {
+            LOGGER.debug("Rejected {} {}: {} requests in flight reached the limit of {}.", request.getMethod(),
+                    request.getRequestURI(), limiter.getInFlight(), limiter.getLimit());
+            response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+            response.sendError(HttpStatus.SERVICE_UNAVAILABLE.value());
+            return;
+        }
+        boolean completed = false;
+        try {
+            chain.doFilter(request, response);
+            completed = true;
+        } finally {
+            if (!completed) {
+                permit.releaseIgnored();
+            } else if (request.isAsyncStarted()) {
+                request.getAsyncContext().addListener(new PermitReleasingListener(permit, response));
+            } else {
+                release(permit, response);
+            }
+        }
+    }
+
+    /**
+     * Gets the share of the limits of a caller, the largest of its roles.
+     *
+     * @param authentication The authentication of the caller, or null.
+     * @return The share of the limits.
+     */
+    double shareOf(Authentication authentication) {
+        if (authentication == null) {
+            return defaultShare;
+        }
+        Double share = null;
+        for (GrantedAuthority authority : authentication.getAuthorities()) {
+            String role = authority.getAuthority();
+            Double roleShare = shares.get(role.startsWith(ROLE_PREFIX) ? role.substring(ROLE_PREFIX.length()) : role);
+            if (roleShare != null && (share == null || roleShare > share)) {
+                share = roleShare;
+            }
+        }
+        return share != null ? share : defaultShare;
+    }
+
+    /**
+     * Releases a permit according to the outcome of its request: a 503 Service Unavailable means
+     * the request was dropped downstream, and other server errors are not sampled.
+     */
+    private static void release(AdaptiveConcurrencyLimiter.Permit permit, HttpServletResponse response) {
+        int status = response.getStatus();
+        if (status == HttpStatus.SERVICE_UNAVAILABLE.value()) {
+            permit.releaseDropped();
+        } else if (status >= HttpStatus.INTERNAL_SERVER_ERROR.value()) {
+            permit.releaseIgnored();
+        } else {
+            permit.release();
+        }
+    }
+
+    /**
+     * Checks whether the path of a request matches one of the patterns.
+     */
+    private boolean matchesAny(List<String> patterns, HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        for (String pattern : patterns) {
+            if (pathMatcher.match(pattern, path)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Releases the permit of an asynchronous request once it completes.
+     */
+    private static class PermitReleasingListener implements AsyncListener {
+
+        private final AdaptiveConcurrencyLimiter.Permit permit;
+
+        private final HttpServletResponse response;
+
+        PermitReleasingListener(AdaptiveConcurrencyLimiter.Permit permit, HttpServletResponse response) {
+            this.permit = permit;
+            this.response = response;
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            release(permit, response);
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            // Followed by onComplete
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            permit.releaseIgnored();
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            // Not restarted
+        }
+    }
+}
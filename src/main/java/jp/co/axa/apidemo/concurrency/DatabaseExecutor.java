@@ -0,0 +1,93 @@
+package jp.co.axa.apidemo.concurrency;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.springframework.core.task.TaskDecorator;
+
+import javax.annotation.PreDestroy;
+import java.util.Collections;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The bounded executor running the database work of the asynchronous endpoints, so request threads
+ * are released while the database answers. It has a fixed number of threads and a bounded queue;
+ * when both are full, new work is rejected at once instead of waiting.
+ * Its pool, queue and rejections are published as the "executor.*" metrics named "database".
+ */
+public class DatabaseExecutor implements MeterBinder {
+
+    /** The name of the executor in its metrics and thread names. */
+    public static final String NAME = "database";
+
+    private final ThreadPoolExecutor executor;
+
+    private final TaskDecorator taskDecorator;
+
+    private final LongAdder rejections = new LongAdder();
+
+    /**
+     * Constructor.
+     *
+     * @param poolSize The number of threads.
+     * @param queueCapacity The number of tasks waiting for a thread; 0 hands tasks to idle threads only.
+     * @param taskDecorator The decorator applied to each task on the submitting thread, or null.
+     */
+    public DatabaseExecutor(int poolSize, int queueCapacity, TaskDecorator taskDecorator) {
+        BlockingQueue<Runnable> queue = queueCapacity > 0 ? new ArrayBlockingQueue<>(queueCapacity) : new SynchronousQueue<>();
+        AtomicInteger threads = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 60, TimeUnit.SECONDS, queue,
+                runnable -> new Thread(runnable, NAME + "-" + threads.incrementAndGet()),
+                (runnable, pool) -> {
+                    rejections.increment();
+                    throw new RejectedExecutionException("The " + NAME + " executor is saturated");
+                });
+        this.executor.allowCoreThreadTimeOut(true);
+        this.taskDecorator = taskDecorator;
+    }
+
+    /**
+     * Submits a task.
+     *
+     * @param task The task.
+     * @return The future of the task, whose cancellation interrupts it.
+     * @throws RejectedExecutionException If every thread is busy and the queue is full.
+     */
+    public Future<?> submit(Runnable task) {
+        return executor.submit(taskDecorator == null ? task : taskDecorator.decorate(task));
+    }
+
+    /**
+     * Stops the executor, letting the submitted tasks complete.
+     *
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Registers the pool, queue and rejection metrics.
+     *
+     * @param registry The meter registry.
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        new ExecutorServiceMetrics(executor, NAME, Collections.emptyList()).bindTo(registry);
+        FunctionCounter.builder("executor.rejected", rejections, LongAdder::sum)
+                .tag("name", NAME)
+                .description("The number of tasks rejected because the executor was saturated")
+                .register(registry);
+    }
+}
@@ -0,0 +1,268 @@
+package jp.co.axa.apidemo.concurrency;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * The bounded queue of writes committed in groups by a single writer thread. The first queued write
+ * opens a batch, which is handed to the writer once it holds the maximum number of writes or once
+ * the maximum delay has passed; writes queued meanwhile wait for the next batch. A full queue rejects
+ * new writes at once instead of waiting.
+ * Its batches, queue and rejections are published as the "writebehind.*" metrics tagged with its name.
+ *
+ * @param <T> The type of the written items.
+ * @param <R> The type of the result of a write.
+ */
+public class WriteBehindQueue<T, R> implements MeterBinder {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(WriteBehindQueue.class);
+
+    /** The time the writer thread waits for the first write of a batch before checking for shutdown. */
+    private static final long IDLE_POLL_MS = 100;
+
+    private final String name;
+
+    private final BlockingQueue<Write<T, R>> queue;
+
+    private final int maxBatchSize;
+
+    private final long maxDelayNanos;
+
+    private final LongAdder rejections = new LongAdder();
+
+    private final LongAdder batches = new LongAdder();
+
+    private DistributionSummary batchSizes;
+
+    private volatile Consumer<List<Write<T, R>>> writer;
+
+    private volatile boolean closed;
+
+    private Thread thread;
+
+    /**
+     * Constructor.
+     *
+     * @param name The name of the queue in its metrics and thread name.
+     * @param capacity The number of writes which may wait for the writer.
+     * @param maxBatchSize The maximum number of writes in one batch.
+     * @param maxDelayMs The maximum time, in milliseconds, the first write of a batch waits for others.
+     */
+    public WriteBehindQueue(String name, int capacity, int maxBatchSize, long maxDelayMs) {
+        this.name = name;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.maxBatchSize = maxBatchSize;
+        this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(maxDelayMs);
+    }
+
+    /**
+     * Starts the writer thread.
+     *
+     * @param writer The writer of a batch, which completes or fails each of its writes;
+     *               writes it leaves incomplete are failed with the exception it throws, if any.
+     */
+    public synchronized void start(Consumer<List<Write<T, R>>> writer) {
+        if (thread != null) {
+            throw new IllegalStateException("The " + name + " write-behind queue is already started");
+        }
+        this.writer = writer;
+        thread = new Thread(this::run, name + "-write-behind");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Queues a write.
+     *
+     * @param item The item to be written.
+     * @return The future of the write, completed once its batch has been committed.
+     * @throws RejectedExecutionException If the queue is full or shut down.
+     */
+    public CompletableFuture<R> submit(T item) {
+        Write<T, R> write = new Write<>(item);
+        if (closed || !queue.offer(write)) {
+            rejections.increment();
+            throw new RejectedExecutionException("The " + name + " write-behind queue is "
+                    + (closed ? "shut down" : "full"));
+        }
+        return write.future;
+    }
+
+    /**
+     * Stops accepting writes and waits for the queued ones to be written.
+     * Writes still queued once the writer thread has stopped are failed.
+     *
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        Thread writerThread;
+        synchronized (this) {
+            closed = true;
+            writerThread = thread;
+        }
+        if (writerThread != null) {
+            writerThread.join(TimeUnit.SECONDS.toMillis(10));
+        }
+        List<Write<T, R>> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        for (Write<T, R> write : remaining) {
+            write.fail(new RejectedExecutionException("The " + name + " write-behind queue is shut down"));
+        }
+    }
+
+    /**
+     * Registers the batch, queue and rejection metrics.
+     *
+     * @param registry The meter registry.
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        batchSizes = DistributionSummary.builder("writebehind.batch.size")
+                .tag("name", name)
+                .description("The number of writes committed together")
+                .register(registry);
+        FunctionCounter.builder("writebehind.batches", batches, LongAdder::sum)
+                .tag("name", name)
+                .description("The number of written batches")
+                .register(registry);
+        FunctionCounter.builder("writebehind.rejected", rejections, LongAdder::sum)
+                .tag("name", name)
+                .description("The number of writes rejected because the queue was full")
+                .register(registry);
+        Gauge.builder("writebehind.queued", queue, BlockingQueue::size)
+                .tag("name", name)
+                .description("The number of writes waiting for the writer")
+                .register(registry);
+    }
+
+    /**
+     * Collects and writes batches until the queue is shut down and empty.
+     */
+    private void run() {
+        List<Write<T, R>> batch = new ArrayList<>(maxBatchSize);
+        while (!closed || !queue.isEmpty()) {
+            try {
+                Write<T, R> first = queue.poll(IDLE_POLL_MS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + maxDelayNanos;
+                while (batch.size() < maxBatchSize) {
+                    if (queue.drainTo(batch, maxBatchSize - batch.size()) > 0) {
+                        continue;
+                    }
+                    Write<T, R> next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                LOGGER.warn("The {} write-behind writer was interrupted.", name);
+            }
+            if (!batch.isEmpty()) {
+                write(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Hands a batch to the writer, failing the writes it leaves incomplete.
+     */
+    private void write(List<Write<T, R>> batch) {
+        Throwable failure = null;
+        try {
+            writer.accept(batch);
+        } catch (RuntimeException | Error e) {
+            LOGGER.error("The {} write-behind batch of {} writes failed: {}", name, batch.size(), e.getMessage());
+            failure = e;
+        }
+        for (Write<T, R> write : batch) {
+            if (!write.isDone()) {
+                write.fail(failure != null ? failure
+                        : new IllegalStateException("The " + name + " write-behind writer left a write incomplete"));
+            }
+        }
+        batches.increment();
+        if (batchSizes != null) {
+            batchSizes.record(batch.size());
+        }
+    }
+
+    /**
+     * A queued write with the future of its result.
+     *
+     * @param <T> The type of the written item.
+     * @param <R> The type of the result.
+     */
+    public static class Write<T, R> {
+
+        private final T item;
+
+        private final CompletableFuture<R> future = new CompletableFuture<>();
+
+        /**
+         * Constructor.
+         *
+         * @param item The item to be written.
+         */
+        Write(T item) {
+            this.item = item;
+        }
+
+        /**
+         * Gets the item to be written.
+         *
+         * @return The item.
+         */
+        public T getItem() {
+            return item;
+        }
+
+        /**
+         * Completes the write once it has been committed.
+         *
+         * @param result The result of the write.
+         */
+        public void complete(R result) {
+            future.complete(result);
+        }
+
+        /**
+         * Fails the write.
+         *
+         * @param failure The cause of the failure.
+         */
+        public void fail(Throwable failure) {
+            future.completeExceptionally(failure);
+        }
+
+        /**
+         * Checks whether the write has been completed or failed.
+         *
+         * @return True if the write is done.
+         */
+        public boolean isDone() {
+            return future.isDone();
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package jp.co.axa.apidemo.configuration;
+
+import jp.co.axa.apidemo.concurrency.DatabaseExecutor;
+import jp.co.axa.apidemo.metrics.HibernateRequestStatistics;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Async config class providing the executor of the database work of the asynchronous endpoints.
+ * It is not registered as an Executor bean, so Spring Boot keeps its own task executor for
+ * the streaming responses.
+ */
+@Configuration
+@EnableConfigurationProperties(AsyncProperties.class)
+public class AsyncConfiguration {
+
+    /**
+     * Provides the bounded database executor. Its tasks count their Hibernate statistics
+     * towards the request which submitted them.
+     *
+     * @param properties The asynchronous endpoint settings.
+     * @param statistics The per-request Hibernate counters.
+     * @return The DatabaseExecutor instance.
+     */
+    @Bean
+    public DatabaseExecutor databaseExecutor(AsyncProperties properties, HibernateRequestStatistics statistics) {
+        return new DatabaseExecutor(properties.getPoolSize(), properties.getQueueCapacity(), statistics);
+    }
+}
@@ -0,0 +1,45 @@
+package jp.co.axa.apidemo.configuration;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Asynchronous endpoint settings bound from the "app.async" properties.
+ */
+@ConfigurationProperties(prefix = "app.async")
+public class AsyncProperties {
+
+    /** The number of threads running database work. */
+    @Getter
+    @Setter
+    private int poolSize = 16;
+
+    /** The number of requests waiting for a database thread before new ones are rejected. */
+    @Getter
+    @Setter
+    private int queueCapacity = 64;
+
+    /** The timeout of the endpoints without their own, in milliseconds. */
+    @Getter
+    @Setter
+    private long defaultTimeoutMs = 5000;
+
+    /** The timeout of each endpoint in milliseconds, keyed by endpoint name (e.g. "retrieveAll"). */
+    @Getter
+    @Setter
+    private Map<String, Long> timeouts = new LinkedHashMap<>();
+
+    /**
+     * Gets the timeout of an endpoint.
+     *
+     * @param endpoint The endpoint name.
+     * @return The timeout in milliseconds.
+     */
+    public long getTimeout(String endpoint) {
+        return timeouts.getOrDefault(endpoint, defaultTimeoutMs);
+    }
+}
@@ -0,0 +1,50 @@
+package jp.co.axa.apidemo.configuration;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jp.co.axa.apidemo.cache.DatagramInvalidationTransport;
+import jp.co.axa.apidemo.cache.InvalidationTransport;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Cache invalidation config class providing the transport which keeps the employee caches of the nodes coherent.
+ * Without a transport ("app.cache-invalidation.transport=none"), every node only sees its own writes.
+ */
+@Configuration
+@EnableConfigurationProperties(CacheInvalidationProperties.class)
+public class CacheInvalidationConfiguration {
+
+    /**
+     * Provides the UDP transport.
+     *
+     * @param properties The cache invalidation settings.
+     * @param objectMapper The ObjectMapper used to encode the invalidations.
+     * @return The DatagramInvalidationTransport instance.
+     * @throws UnknownHostException If the group or a peer cannot be resolved.
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "app.cache-invalidation", name = "transport", havingValue = "datagram")
+    public InvalidationTransport datagramInvalidationTransport(CacheInvalidationProperties properties,
+                                                               ObjectMapper objectMapper) throws UnknownHostException {
+        InetAddress group = properties.getGroup() == null ? null : InetAddress.getByName(properties.getGroup());
+        List<InetSocketAddress> peers = new ArrayList<>();
+        for (String peer : properties.getPeers()) {
+            int separator = peer.lastIndexOf(':');
+            if (separator < 0) {
+                throw new IllegalArgumentException("Cache invalidation peer '" + peer + "' is not host:port");
+            }
+            peers.add(new InetSocketAddress(InetAddress.getByName(peer.substring(0, separator)),
+                    Integer.parseInt(peer.substring(separator + 1))));
+        }
+        return new DatagramInvalidationTransport(objectMapper, properties.getPort(), group, peers,
+                properties.getTimeToLive());
+    }
+}
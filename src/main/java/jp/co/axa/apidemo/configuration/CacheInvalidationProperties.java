@@ -0,0 +1,40 @@
+package jp.co.axa.apidemo.configuration;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Cross-node cache invalidation settings bound from the "app.cache-invalidation" properties.
+ */
+@ConfigurationProperties(prefix = "app.cache-invalidation")
+public class CacheInvalidationProperties {
+
+    /** The transport of the invalidations: "none" keeps the caches local, "datagram" sends UDP datagrams. */
+    @Getter
+    @Setter
+    private String transport = "none";
+
+    /** The UDP port receiving the invalidations, also the port of the multicast group. */
+    @Getter
+    @Setter
+    private int port = 9100;
+
+    /** The multicast group address (e.g. "239.255.10.10"), or null to only send to the peers. */
+    @Getter
+    @Setter
+    private String group;
+
+    /** The peer addresses as "host:port", in addition to the multicast group (e.g. "127.0.0.1:9101"). */
+    @Getter
+    @Setter
+    private List<String> peers = new ArrayList<>();
+
+    /** The number of network hops of the multicast datagrams; 0 keeps them on this machine. */
+    @Getter
+    @Setter
+    private int timeToLive = 1;
+}
@@ -0,0 +1,24 @@
+package jp.co.axa.apidemo.configuration;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Cache settings bound from the "app.cache" properties.
+ */
+@ConfigurationProperties(prefix = "app.cache")
+public class CacheSpecProperties {
+
+    /**
+     * The Caffeine specification of each cache, keyed by cache name
+     * (e.g. "maximumSize=10000,expireAfterWrite=10m,recordStats").
+     * Only the caches listed here are created.
+     */
+    @Getter
+    @Setter
+    private Map<String, String> specs = new LinkedHashMap<>();
+}
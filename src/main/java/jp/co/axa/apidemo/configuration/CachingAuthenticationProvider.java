@@ -0,0 +1,140 @@
+package jp.co.axa.apidemo.configuration;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.security.authentication.AuthenticationProvider;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Authentication provider which remembers successful credential verifications for a short time,
+ * so that HTTP Basic requests do not run a full BCrypt hash each time.
+ * Entries are keyed by an HMAC of the credentials under a per-process random key,
+ * so neither the passwords nor unkeyed hashes of them are kept in memory. Failures are never cached.
+ */
+public class CachingAuthenticationProvider implements AuthenticationProvider, MeterBinder {
+
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+
+    private final AuthenticationProvider delegate;
+
+    private final SecretKeySpec key;
+
+    private final ThreadLocal<Mac> macs;
+
+    private final Cache<String, Authentication> verified;
+
+    /**
+     * Constructor.
+     *
+     * @param delegate The provider doing the actual credential verification.
+     * @param ttlSeconds How long a successful verification is remembered.
+     * @param maximumSize The maximum number of remembered verifications.
+     */
+    public CachingAuthenticationProvider(AuthenticationProvider delegate, long ttlSeconds, long maximumSize) {
+        this.delegate = delegate;
+        byte[] secret = new byte[32];
+        new SecureRandom().nextBytes(secret);
+        this.key = new SecretKeySpec(secret, HMAC_ALGORITHM);
+        this.macs = ThreadLocal.withInitial(this::newMac);
+        this.verified = Caffeine.newBuilder()
+                .expireAfterWrite(ttlSeconds, TimeUnit.SECONDS)
+                .maximumSize(maximumSize)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Authenticates the request from the remembered verification if the same credentials
+     * were verified recently, or through the delegate otherwise.
+     *
+     * @param authentication The authentication request.
+     * @return The authenticated token, or null if the delegate does not support the request.
+     * @throws AuthenticationException If the credentials are invalid.
+     */
+    @Override
+    public Authentication authenticate(Authentication authentication) throws AuthenticationException {
+        if (!(authentication instanceof UsernamePasswordAuthenticationToken) || authentication.getCredentials() == null) {
+            return delegate.authenticate(authentication);
+        }
+        String cacheKey = cacheKey(authentication.getName(), authentication.getCredentials().toString());
+        Authentication cached = verified.getIfPresent(cacheKey);
+        if (cached != null) {
+            UsernamePasswordAuthenticationToken result = new UsernamePasswordAuthenticationToken(
+                    cached.getPrincipal(), null, cached.getAuthorities());
+            result.setDetails(authentication.getDetails());
+            return result;
+        }
+        Authentication result = delegate.authenticate(authentication);
+        if (result != null && result.isAuthenticated()) {
+            verified.put(cacheKey, result);
+        }
+        return result;
+    }
+
+    /**
+     * Checks whether the delegate supports the authentication type.
+     *
+     * @param authentication The authentication type.
+     * @return True if supported.
+     */
+    @Override
+    public boolean supports(Class<?> authentication) {
+        return delegate.supports(authentication);
+    }
+
+    /**
+     * Forgets every remembered verification, e.g. after a password change.
+     */
+    public void invalidateAll() {
+        verified.invalidateAll();
+    }
+
+    /**
+     * Registers the hit, miss and eviction statistics of the verification cache.
+     *
+     * @param registry The meter registry.
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        // Same tag keys as the caches registered by Actuator, as Prometheus requires them to match per meter name
+        CaffeineCacheMetrics.monitor(registry, verified, "authentications",
+                "name", "authentications", "cacheManager", "security");
+    }
+
+    /**
+     * Computes the cache key of a pair of credentials.
+     *
+     * @param username The user name.
+     * @param password The raw password.
+     * @return The Base64 encoded HMAC of the credentials.
+     */
+    private String cacheKey(String username, String password) {
+        Mac mac = macs.get();
+        mac.update(username.getBytes(StandardCharsets.UTF_8));
+        mac.update((byte) 0);
+        return Base64.getEncoder().encodeToString(mac.doFinal(password.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private Mac newMac() {
+        try {
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(key);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HMAC is not available", e);
+        }
+    }
+}
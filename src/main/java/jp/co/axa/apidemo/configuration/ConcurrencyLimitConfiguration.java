@@ -0,0 +1,67 @@
+package jp.co.axa.apidemo.configuration;
+
+import jp.co.axa.apidemo.concurrency.AdaptiveConcurrencyLimiter;
+import jp.co.axa.apidemo.concurrency.ConcurrencyLimitFilter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.security.SecurityProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Concurrency limit config class shedding the employee requests beyond the adaptive limits,
+ * enabled unless "app.concurrency-limit.enabled=false".
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "app.concurrency-limit", name = "enabled", havingValue = "true", matchIfMissing = true)
+@EnableConfigurationProperties(ConcurrencyLimitProperties.class)
+public class ConcurrencyLimitConfiguration {
+
+    /**
+     * Provides the limiter of the read requests.
+     *
+     * @param properties The concurrency limit settings.
+     * @return The AdaptiveConcurrencyLimiter instance.
+     */
+    @Bean
+    public AdaptiveConcurrencyLimiter readConcurrencyLimiter(ConcurrencyLimitProperties properties) {
+        return limiter("read", properties.getRead());
+    }
+
+    /**
+     * Provides the limiter of the write requests.
+     *
+     * @param properties The concurrency limit settings.
+     * @return The AdaptiveConcurrencyLimiter instance.
+     */
+    @Bean
+    public AdaptiveConcurrencyLimiter writeConcurrencyLimiter(ConcurrencyLimitProperties properties) {
+        return limiter("write", properties.getWrite());
+    }
+
+    /**
+     * Registers the filter on the employee endpoints, right after the Spring Security filters.
+     *
+     * @param properties The concurrency limit settings.
+     * @return The FilterRegistrationBean of the ConcurrencyLimitFilter.
+     */
+    @Bean
+    public FilterRegistrationBean<ConcurrencyLimitFilter> concurrencyLimitFilter(ConcurrencyLimitProperties properties) {
+        ConcurrencyLimitFilter filter = new ConcurrencyLimitFilter(readConcurrencyLimiter(properties),
+                writeConcurrencyLimiter(properties), properties.getShares(), properties.getDefaultShare(),
+                properties.getReadPaths(), properties.getExcludedPaths(), properties.getRetryAfterSeconds());
+        FilterRegistrationBean<ConcurrencyLimitFilter> registration = new FilterRegistrationBean<>(filter);
+        registration.addUrlPatterns("/api/v1/employees/*");
+        registration.setOrder(SecurityProperties.DEFAULT_FILTER_ORDER + 1);
+        return registration;
+    }
+
+    /**
+     * Creates a limiter from its settings.
+     */
+    private static AdaptiveConcurrencyLimiter limiter(String name, ConcurrencyLimitProperties.Limit limit) {
+        return new AdaptiveConcurrencyLimiter(name, limit.getInitialLimit(), limit.getMinLimit(),
+                limit.getMaxLimit(), limit.getSmoothing());
+    }
+}
@@ -0,0 +1,83 @@
+package jp.co.axa.apidemo.configuration;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Adaptive concurrency limit settings of the employee endpoints bound from the "app.concurrency-limit" properties.
+ */
+@ConfigurationProperties(prefix = "app.concurrency-limit")
+public class ConcurrencyLimitProperties {
+
+    /** Whether requests beyond the limits are rejected. */
+    @Getter
+    @Setter
+    private boolean enabled = true;
+
+    /** The limit of the read requests. */
+    @Getter
+    @Setter
+    private Limit read = new Limit();
+
+    /** The limit of the write requests. */
+    @Getter
+    @Setter
+    private Limit write = new Limit();
+
+    /** The share of the limits each role may use, keyed by role (e.g. "USER" to 0.8). */
+    @Getter
+    @Setter
+    private Map<String, Double> shares = new LinkedHashMap<>();
+
+    /** The share of the limits of a caller without any listed role. */
+    @Getter
+    @Setter
+    private double defaultShare = 0.5;
+
+    /** The path patterns of the reads sent with another method than GET or HEAD. */
+    @Getter
+    @Setter
+    private List<String> readPaths = new ArrayList<>();
+
+    /** The path patterns of the long-lived requests (streams, uploads) which are not limited. */
+    @Getter
+    @Setter
+    private List<String> excludedPaths = new ArrayList<>();
+
+    /** The delay, in seconds, suggested to rejected callers by the Retry-After header. */
+    @Getter
+    @Setter
+    private long retryAfterSeconds = 1;
+
+    /**
+     * The bounds of one adaptive limit.
+     */
+    public static class Limit {
+
+        /** The limit before any latency has been observed. */
+        @Getter
+        @Setter
+        private int initialLimit = 20;
+
+        /** The lowest limit. */
+        @Getter
+        @Setter
+        private int minLimit = 4;
+
+        /** The highest limit. */
+        @Getter
+        @Setter
+        private int maxLimit = 200;
+
+        /** The weight of each new limit, between 0 (never changes) and 1 (no smoothing). */
+        @Getter
+        @Setter
+        private double smoothing = 0.2;
+    }
+}
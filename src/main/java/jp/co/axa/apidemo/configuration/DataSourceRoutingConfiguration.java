@@ -0,0 +1,59 @@
+package jp.co.axa.apidemo.configuration;
+
+import com.zaxxer.hikari.HikariDataSource;
+import jp.co.axa.apidemo.datasource.ReadWriteRoutingDataSource;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * DataSource routing config class, enabled by "app.datasource.routing.enabled=true".
+ * It replaces the DataSource of Spring Boot with one sending read-only transactions to the
+ * replicas and everything else to the primary configured by the "spring.datasource" properties.
+ * The connection pools are owned by the routing DataSource rather than being beans, as Spring Boot
+ * expects a single DataSource bean to initialize.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "app.datasource.routing", name = "enabled", havingValue = "true")
+@EnableConfigurationProperties(DataSourceRoutingProperties.class)
+public class DataSourceRoutingConfiguration {
+
+    /**
+     * Provides the routing DataSource along with the connection pools of the primary and of each replica.
+     *
+     * @param dataSourceProperties The "spring.datasource" settings of the primary.
+     * @param properties The routing settings.
+     * @return The ReadWriteRoutingDataSource instance.
+     */
+    @Bean
+    public ReadWriteRoutingDataSource dataSource(DataSourceProperties dataSourceProperties,
+                                                 DataSourceRoutingProperties properties) {
+        HikariDataSource primary = dataSourceProperties.initializeDataSourceBuilder()
+                .type(HikariDataSource.class).build();
+        primary.setPoolName("primary");
+        Map<String, DataSource> replicas = new LinkedHashMap<>();
+        List<DataSourceRoutingProperties.Replica> settings = properties.getReplicas();
+        for (int i = 0; i < settings.size(); i++) {
+            DataSourceRoutingProperties.Replica replica = settings.get(i);
+            HikariDataSource dataSource = new HikariDataSource();
+            dataSource.setPoolName("replica-" + (i + 1));
+            dataSource.setJdbcUrl(replica.getUrl() != null ? replica.getUrl() : primary.getJdbcUrl());
+            dataSource.setUsername(replica.getUsername() != null ? replica.getUsername() : primary.getUsername());
+            dataSource.setPassword(replica.getPassword() != null ? replica.getPassword() : primary.getPassword());
+            dataSource.setMaximumPoolSize(replica.getMaximumPoolSize());
+            dataSource.setReadOnly(true);
+            replicas.put(dataSource.getPoolName(), dataSource);
+        }
+        ReadWriteRoutingDataSource dataSource = new ReadWriteRoutingDataSource(primary, replicas,
+                properties.getSelection(), properties.getMaxLagMs(), properties.getLagQuery());
+        dataSource.setLagCheckIntervalMs(properties.getLagCheckIntervalMs());
+        return dataSource;
+    }
+}
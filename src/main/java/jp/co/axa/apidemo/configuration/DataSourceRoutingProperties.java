@@ -0,0 +1,74 @@
+package jp.co.axa.apidemo.configuration;
+
+import jp.co.axa.apidemo.datasource.ReadWriteRoutingDataSource;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Read/write DataSource routing settings bound from the "app.datasource.routing" properties.
+ * After any write, all the reads go to the primary for max-lag-ms plus lag-check-interval-ms, so the
+ * replicas only serve reads while no write happened within that window (see ReadWriteRoutingDataSource).
+ */
+@ConfigurationProperties(prefix = "app.datasource.routing")
+public class DataSourceRoutingProperties {
+
+    /** Whether read-only transactions go to the replicas; otherwise Spring Boot provides the only DataSource. */
+    @Getter
+    @Setter
+    private boolean enabled;
+
+    /** The choice of the replica serving a read. */
+    @Getter
+    @Setter
+    private ReadWriteRoutingDataSource.Selection selection = ReadWriteRoutingDataSource.Selection.ROUND_ROBIN;
+
+    /** The largest replication lag, in milliseconds, of a replica serving reads; part of the window after a write. */
+    @Getter
+    @Setter
+    private long maxLagMs = 1000;
+
+    /** The time between two checks of the replica lags, in milliseconds; part of the window after a write. */
+    @Getter
+    @Setter
+    private long lagCheckIntervalMs = 1000;
+
+    /** The query returning the replication lag of a replica in milliseconds, or null to only check it is reachable. */
+    @Getter
+    @Setter
+    private String lagQuery;
+
+    /** The replica databases. */
+    @Getter
+    @Setter
+    private List<Replica> replicas = new ArrayList<>();
+
+    /**
+     * The connection settings of one replica.
+     */
+    public static class Replica {
+
+        /** The JDBC URL, or null to connect to the primary database (e.g. to try the routing locally). */
+        @Getter
+        @Setter
+        private String url;
+
+        /** The database user, or null for the user of the primary. */
+        @Getter
+        @Setter
+        private String username;
+
+        /** The password of the user, or null for the password of the primary. */
+        @Getter
+        @Setter
+        private String password;
+
+        /** The largest number of connections of the replica pool. */
+        @Getter
+        @Setter
+        private int maximumPoolSize = 10;
+    }
+}
@@ -0,0 +1,47 @@
+package jp.co.axa.apidemo.configuration;
+
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+
+/**
+ * Encoding config class registering the binary encodings of the API next to JSON.
+ * Clients select CBOR or Smile with the Accept header; the converters use the same Jackson
+ * settings as the JSON one, so every encoding carries the same fields.
+ */
+@Configuration
+public class EncodingConfiguration {
+
+    /** The media type of CBOR (RFC 7049). */
+    public static final MediaType APPLICATION_CBOR = MediaType.valueOf("application/cbor");
+
+    /** The media type of Smile, the binary JSON of Jackson. */
+    public static final MediaType APPLICATION_SMILE = MediaType.valueOf("application/x-jackson-smile");
+
+    /**
+     * Provides the CBOR message converter.
+     *
+     * @param builder The ObjectMapper builder configured by Spring Boot.
+     * @return The MappingJackson2CborHttpMessageConverter instance.
+     */
+    @Bean
+    public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2CborHttpMessageConverter(builder.factory(new CBORFactory()).build());
+    }
+
+    /**
+     * Provides the Smile message converter.
+     *
+     * @param builder The ObjectMapper builder configured by Spring Boot.
+     * @return The MappingJackson2SmileHttpMessageConverter instance.
+     */
+    @Bean
+    public MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2SmileHttpMessageConverter(builder.factory(new SmileFactory()).build());
+    }
+}
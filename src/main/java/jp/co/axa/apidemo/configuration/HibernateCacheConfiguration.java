@@ -0,0 +1,66 @@
+package jp.co.axa.apidemo.configuration;
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import javax.cache.spi.CachingProvider;
+import java.net.URI;
+import java.util.OptionalLong;
+
+/**
+ * Hibernate cache config class providing the regions of the second-level entity and query caches.
+ * The regions are local Caffeine caches created through JCache, each bounded by its
+ * "app.hibernate-cache.regions.*" properties. Their hits and misses are published by Actuator
+ * as the "hibernate.second.level.cache.requests" and "hibernate.query.cache.requests" metrics.
+ */
+@Configuration
+@EnableConfigurationProperties(HibernateCacheProperties.class)
+public class HibernateCacheConfiguration {
+
+    /** The URI of the cache manager, kept apart from any other JCache user of the application. */
+    private static final URI CACHE_MANAGER_URI = URI.create("hibernate-second-level-cache");
+
+    /**
+     * Provides the JCache manager holding the Hibernate regions.
+     *
+     * @param properties The limits of each region.
+     * @return The CacheManager instance.
+     */
+    @Bean(destroyMethod = "close")
+    public CacheManager hibernateCacheManager(HibernateCacheProperties properties) {
+        CachingProvider provider = Caching.getCachingProvider(CaffeineCachingProvider.class.getName());
+        CacheManager cacheManager = provider.getCacheManager(CACHE_MANAGER_URI, getClass().getClassLoader());
+        properties.getRegions().forEach((name, region) -> {
+            CaffeineConfiguration<Object, Object> configuration = new CaffeineConfiguration<>();
+            configuration.setMaximumSize(OptionalLong.of(region.getMaximumSize()));
+            if (region.getExpireAfterWrite() != null) {
+                configuration.setExpireAfterWrite(OptionalLong.of(region.getExpireAfterWrite().toNanos()));
+            }
+            // Hibernate caches immutable disassembled state, so entries need no copy on each access
+            configuration.setStoreByValue(false);
+            configuration.setStatisticsEnabled(true);
+            if (cacheManager.getCache(name) == null) {
+                cacheManager.createCache(name, configuration);
+            }
+        });
+        return cacheManager;
+    }
+
+    /**
+     * Makes Hibernate store its regions in the cache manager.
+     *
+     * @param hibernateCacheManager The JCache manager holding the regions.
+     * @return The HibernatePropertiesCustomizer instance.
+     */
+    @Bean
+    public HibernatePropertiesCustomizer hibernateCacheCustomizer(CacheManager hibernateCacheManager) {
+        return properties -> properties.put(ConfigSettings.CACHE_MANAGER, hibernateCacheManager);
+    }
+}
@@ -0,0 +1,40 @@
+package jp.co.axa.apidemo.configuration;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Hibernate second-level cache settings bound from the "app.hibernate-cache" properties.
+ */
+@ConfigurationProperties(prefix = "app.hibernate-cache")
+public class HibernateCacheProperties {
+
+    /**
+     * The limits of each region, keyed by region name (e.g. "employee").
+     * Only the regions listed here are created; Hibernate fails to start if it needs another one.
+     */
+    @Getter
+    @Setter
+    private Map<String, Region> regions = new LinkedHashMap<>();
+
+    /**
+     * The limits of one cache region.
+     */
+    public static class Region {
+
+        /** The maximum number of entries. */
+        @Getter
+        @Setter
+        private long maximumSize = 10000;
+
+        /** The time after which an entry expires, or null to keep entries until they are evicted. */
+        @Getter
+        @Setter
+        private Duration expireAfterWrite;
+    }
+}
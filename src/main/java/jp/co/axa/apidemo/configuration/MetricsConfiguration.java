@@ -0,0 +1,58 @@
+package jp.co.axa.apidemo.configuration;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jp.co.axa.apidemo.metrics.HibernateRequestStatistics;
+import jp.co.axa.apidemo.metrics.RequestStatisticsInterceptor;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Metrics config class adding the per-request Hibernate statistics
+ * to the metrics auto-configured by Actuator (HTTP, caches, connection pool, JVM, Hibernate).
+ */
+@Configuration
+public class MetricsConfiguration implements WebMvcConfigurer {
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    /**
+     * Provides the per-thread Hibernate counters.
+     *
+     * @return The HibernateRequestStatistics instance.
+     */
+    @Bean
+    public HibernateRequestStatistics hibernateRequestStatistics() {
+        return new HibernateRequestStatistics();
+    }
+
+    /**
+     * Registers the counters as the interceptor and statement inspector of the session factory.
+     *
+     * @param statistics The per-thread Hibernate counters.
+     * @return The HibernatePropertiesCustomizer instance.
+     */
+    @Bean
+    public HibernatePropertiesCustomizer hibernateRequestStatisticsCustomizer(HibernateRequestStatistics statistics) {
+        return properties -> {
+            properties.put(AvailableSettings.INTERCEPTOR, statistics);
+            properties.put(AvailableSettings.STATEMENT_INSPECTOR, statistics);
+        };
+    }
+
+    /**
+     * Records the per-request Hibernate counters for the employee endpoints.
+     *
+     * @param registry The InterceptorRegistry.
+     */
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new RequestStatisticsInterceptor(hibernateRequestStatistics(), meterRegistry))
+                .addPathPatterns("/api/v1/employees/**");
+    }
+}
@@ -1,5 +1,8 @@
 package jp.co.axa.apidemo.configuration;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.config.annotation.authentication.builders.AuthenticationManagerBuilder;
@@ -7,8 +10,11 @@ import org.springframework.security.config.annotation.method.configuration.Enabl
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configuration.WebSecurityConfigurerAdapter;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.security.core.userdetails.User;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.provisioning.InMemoryUserDetailsManager;
 import org.springframework.beans.factory.annotation.Value;
 
 /**
@@ -38,23 +44,50 @@ public class SecurityConfiguration extends WebSecurityConfigurerAdapter {
     @Value("${security.user.roles}")
     private String normalUserRoles;
 
+    @Value("${security.auth-cache.ttl-seconds:300}")
+    private long authCacheTtlSeconds;
+
+    @Value("${security.auth-cache.max-size:10000}")
+    private long authCacheMaxSize;
+
+    @Autowired
+    private ObjectProvider<MeterRegistry> meterRegistry;
+
     /**
-     * Configures authentication using in-memory user details.
+     * Configures authentication using in-memory user details,
+     * verified through the caching authentication provider.
      * 
      * @param auth The AuthenticationManagerBuilder.
      * @throws Exception If an error occurs during configuration.
      */
     @Override
     protected void configure(AuthenticationManagerBuilder auth) throws Exception {
+        CachingAuthenticationProvider authenticationProvider = authenticationProvider();
+        meterRegistry.ifAvailable(authenticationProvider::bindTo);
+        auth.authenticationProvider(authenticationProvider);
+    }
+
+    /**
+     * Creates the authentication provider which remembers successful BCrypt verifications
+     * for "security.auth-cache.ttl-seconds", so repeated HTTP Basic requests skip the hash.
+     * 
+     * @return The caching authentication provider.
+     */
+    private CachingAuthenticationProvider authenticationProvider() {
         // Using In-Memory user details
-        auth.inMemoryAuthentication()
-                .withUser(adminUsername)
-                .password(passwordEncoder().encode(adminPassword))
-                .roles(adminUserRoles)
-                .and()
-                .withUser(normalUsername)
-                .password(passwordEncoder().encode(normalPassword))
-                .roles(normalUserRoles);    
+        InMemoryUserDetailsManager userDetailsManager = new InMemoryUserDetailsManager(
+                User.withUsername(adminUsername)
+                        .password(passwordEncoder().encode(adminPassword))
+                        .roles(adminUserRoles)
+                        .build(),
+                User.withUsername(normalUsername)
+                        .password(passwordEncoder().encode(normalPassword))
+                        .roles(normalUserRoles)
+                        .build());
+        DaoAuthenticationProvider daoAuthenticationProvider = new DaoAuthenticationProvider();
+        daoAuthenticationProvider.setUserDetailsService(userDetailsManager);
+        daoAuthenticationProvider.setPasswordEncoder(passwordEncoder());
+        return new CachingAuthenticationProvider(daoAuthenticationProvider, authCacheTtlSeconds, authCacheMaxSize);
     }
 
     /**
@@ -70,7 +103,21 @@ public class SecurityConfiguration extends WebSecurityConfigurerAdapter {
                     .access("hasRole('"+normalUserRoles+"') or hasRole('"+adminUserRoles+"')")
                 .antMatchers("/api/v1/employees/retrieve/**")
                     .access("hasRole('"+normalUserRoles+"') or hasRole('"+adminUserRoles+"')")
+                .antMatchers("/api/v1/employees/export")
+                    .access("hasRole('"+normalUserRoles+"') or hasRole('"+adminUserRoles+"')")
+                .antMatchers("/api/v1/employees/search")
+                    .access("hasRole('"+normalUserRoles+"') or hasRole('"+adminUserRoles+"')")
+                .antMatchers("/api/v1/employees/changes")
+                    .access("hasRole('"+normalUserRoles+"') or hasRole('"+adminUserRoles+"')")
+                .antMatchers("/api/v1/employees/statistics/**")
+                    .access("hasRole('"+normalUserRoles+"') or hasRole('"+adminUserRoles+"')")
+                .antMatchers("/api/v1/employees/analytics/**")
+                    .access("hasRole('"+normalUserRoles+"') or hasRole('"+adminUserRoles+"')")
+                .antMatchers("/actuator/health").permitAll()
+                .antMatchers("/actuator/**").hasRole(adminUserRoles) // Requires ADMIN Role
                 .antMatchers("/api/v1/employees/save").hasRole(adminUserRoles) // Requires ADMIN Role
+                .antMatchers("/api/v1/employees/save/**").hasRole(adminUserRoles) // Requires ADMIN Role
+                .antMatchers("/api/v1/employees/import").hasRole(adminUserRoles) // Requires ADMIN Role
                 .antMatchers("/api/v1/employees/delete/**").hasRole(adminUserRoles) // Requires ADMIN Role
                 .antMatchers("/api/v1/employees/update/**").hasRole(adminUserRoles) // Requires ADMIN Role
                 .and()
@@ -0,0 +1,31 @@
+package jp.co.axa.apidemo.configuration;
+
+import jp.co.axa.apidemo.concurrency.WriteBehindQueue;
+import jp.co.axa.apidemo.dto.EmployeeWrite;
+import jp.co.axa.apidemo.entities.Employee;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Write-behind config class providing the queue of the single-employee writes.
+ * Without it ("app.write-behind.enabled=false"), every write commits its own transaction.
+ */
+@Configuration
+@EnableConfigurationProperties(WriteBehindProperties.class)
+public class WriteBehindConfiguration {
+
+    /**
+     * Provides the employee write-behind queue, started by the EmployeeService.
+     *
+     * @param properties The write-behind settings.
+     * @return The WriteBehindQueue instance.
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "app.write-behind", name = "enabled", havingValue = "true")
+    public WriteBehindQueue<EmployeeWrite, Employee> employeeWriteBehindQueue(WriteBehindProperties properties) {
+        return new WriteBehindQueue<>("employee", properties.getQueueCapacity(), properties.getMaxBatchSize(),
+                properties.getMaxDelayMs());
+    }
+}
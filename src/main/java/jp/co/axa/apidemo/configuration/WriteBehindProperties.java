@@ -0,0 +1,32 @@
+package jp.co.axa.apidemo.configuration;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Write-behind settings of the single-employee writes bound from the "app.write-behind" properties.
+ */
+@ConfigurationProperties(prefix = "app.write-behind")
+public class WriteBehindProperties {
+
+    /** Whether /save and PUT /update go through the write-behind queue instead of committing one by one. */
+    @Getter
+    @Setter
+    private boolean enabled;
+
+    /** The number of writes which may wait for the writer before new ones are rejected. */
+    @Getter
+    @Setter
+    private int queueCapacity = 10000;
+
+    /** The maximum number of writes committed in one transaction. */
+    @Getter
+    @Setter
+    private int maxBatchSize = 500;
+
+    /** The maximum time, in milliseconds, the first write of a batch waits for others. */
+    @Getter
+    @Setter
+    private long maxDelayMs = 5;
+}
@@ -1,19 +1,70 @@
 package jp.co.axa.apidemo.controllers;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import jp.co.axa.apidemo.cache.EncodedResponse;
+import jp.co.axa.apidemo.cache.EncodedResponseCache;
+import jp.co.axa.apidemo.concurrency.DatabaseExecutor;
+import jp.co.axa.apidemo.configuration.AsyncProperties;
+import jp.co.axa.apidemo.dto.DepartmentStatistics;
+import jp.co.axa.apidemo.dto.EmployeePage;
+import jp.co.axa.apidemo.dto.EmployeePatch;
+import jp.co.axa.apidemo.dto.EmployeeSalary;
+import jp.co.axa.apidemo.dto.EmployeeSearchCriteria;
+import jp.co.axa.apidemo.dto.ImportReport;
+import jp.co.axa.apidemo.dto.SalaryHistogram;
 import jp.co.axa.apidemo.entities.Employee;
+import jp.co.axa.apidemo.events.EmployeeChangeFeed;
+import jp.co.axa.apidemo.events.EmployeeChangeTracker;
+import jp.co.axa.apidemo.services.DepartmentStatisticsService;
+import jp.co.axa.apidemo.services.EmployeeAnalyticsService;
+import jp.co.axa.apidemo.services.EmployeeImportService;
 import jp.co.axa.apidemo.services.EmployeeService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.web.PageableDefault;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.context.request.async.WebAsyncTask;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 /**
  * The Controller which handles HTTP requests on Employee operations.
+ * The single-employee, list, page, search and multi-get endpoints run their database work on the
+ * DatabaseExecutor and answer 503 Service Unavailable when it is saturated or their timeout expires.
  */
 @RestController
 @RequestMapping("/api/v1/employees")
@@ -21,9 +72,55 @@ public class EmployeeController {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(EmployeeController.class);
 
+    /** The maximum number of employees returned in one page. */
+    public static final int MAX_PAGE_SIZE = 1000;
+
+    /** The maximum number of IDs accepted by one multi-get request. */
+    public static final int MAX_RETRIEVE_IDS = 10000;
+
+    /** The media type of the newline-delimited JSON export. */
+    public static final MediaType APPLICATION_NDJSON = MediaType.valueOf("application/x-ndjson");
+
+    /** The maximum number of percentiles of one request. */
+    public static final int MAX_PERCENTILES = 100;
+
+    /** The properties the search results can be sorted by. */
+    private static final Set<String> SEARCH_SORT_PROPERTIES =
+            new HashSet<>(Arrays.asList("id", "name", "salary", "department"));
+
+    /** The number of exported employees after which the response is flushed to the client. */
+    private static final int EXPORT_FLUSH_INTERVAL = 1000;
+
     @Autowired
     private EmployeeService employeeService;
 
+    @Autowired
+    private EmployeeImportService employeeImportService;
+
+    @Autowired
+    private DepartmentStatisticsService departmentStatisticsService;
+
+    @Autowired
+    private EmployeeAnalyticsService employeeAnalyticsService;
+
+    @Autowired
+    private EmployeeChangeTracker employeeChangeTracker;
+
+    @Autowired
+    private EmployeeChangeFeed employeeChangeFeed;
+
+    @Autowired
+    private EncodedResponseCache encodedResponseCache;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private DatabaseExecutor databaseExecutor;
+
+    @Autowired
+    private AsyncProperties asyncProperties;
+
     /**
      * Sets the EmployeeService used by EmployeeController.
      * 
@@ -33,19 +130,352 @@ public class EmployeeController {
         this.employeeService = employeeService;
     }
 
+    /**
+     * Sets the EmployeeImportService used by EmployeeController.
+     * 
+     * @param employeeImportService The EmployeeImportService implementation.
+     */
+    public void setEmployeeImportService(EmployeeImportService employeeImportService) {
+        this.employeeImportService = employeeImportService;
+    }
+
+    /**
+     * Sets the DepartmentStatisticsService used by EmployeeController.
+     * 
+     * @param departmentStatisticsService The DepartmentStatisticsService implementation.
+     */
+    public void setDepartmentStatisticsService(DepartmentStatisticsService departmentStatisticsService) {
+        this.departmentStatisticsService = departmentStatisticsService;
+    }
+
+    /**
+     * Sets the EmployeeAnalyticsService used by EmployeeController.
+     * 
+     * @param employeeAnalyticsService The EmployeeAnalyticsService implementation.
+     */
+    public void setEmployeeAnalyticsService(EmployeeAnalyticsService employeeAnalyticsService) {
+        this.employeeAnalyticsService = employeeAnalyticsService;
+    }
+
+    /**
+     * Sets the EmployeeChangeTracker which versions the employee list.
+     * 
+     * @param employeeChangeTracker The EmployeeChangeTracker instance.
+     */
+    public void setEmployeeChangeTracker(EmployeeChangeTracker employeeChangeTracker) {
+        this.employeeChangeTracker = employeeChangeTracker;
+    }
+
+    /**
+     * Sets the EmployeeChangeFeed which streams the employee changes.
+     * 
+     * @param employeeChangeFeed The EmployeeChangeFeed instance.
+     */
+    public void setEmployeeChangeFeed(EmployeeChangeFeed employeeChangeFeed) {
+        this.employeeChangeFeed = employeeChangeFeed;
+    }
+
+    /**
+     * Sets the EncodedResponseCache which keeps the encoded employee list.
+     * 
+     * @param encodedResponseCache The EncodedResponseCache instance.
+     */
+    public void setEncodedResponseCache(EncodedResponseCache encodedResponseCache) {
+        this.encodedResponseCache = encodedResponseCache;
+    }
+
+    /**
+     * Sets the ObjectMapper used to read and write employees in bulk.
+     * 
+     * @param objectMapper The ObjectMapper instance.
+     */
+    public void setObjectMapper(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Sets the DatabaseExecutor which runs the database work of the asynchronous endpoints.
+     * 
+     * @param databaseExecutor The DatabaseExecutor instance.
+     */
+    public void setDatabaseExecutor(DatabaseExecutor databaseExecutor) {
+        this.databaseExecutor = databaseExecutor;
+    }
+
+    /**
+     * Sets the settings of the asynchronous endpoints.
+     * 
+     * @param asyncProperties The AsyncProperties instance.
+     */
+    public void setAsyncProperties(AsyncProperties asyncProperties) {
+        this.asyncProperties = asyncProperties;
+    }
+
     /**
      * Retrieves the list of all employees.
+     * The list is tagged with the version of the whole table, so an unchanged list is answered
+     * with 304 Not Modified without reading or serializing it. When the encoded response cache is
+     * enabled, the cached bytes of the list in the negotiated format (JSON, CBOR or Smile),
+     * gzip-compressed if the client accepts it, are written as is.
      * 
+     * @param ifNoneMatch The ETags of the list already held by the client, if any.
+     * @param accept The media types accepted by the client, if any.
+     * @param acceptEncoding The encodings accepted by the client, if any.
      * @return The list of all employees in the repository.  
      */
     @GetMapping("/retrieveAll")
-    public ResponseEntity<List<Employee>> getEmployees() {
-        LOGGER.info("Retrieving a list of all employees.");
-        try {            
-            List<Employee> employees = employeeService.retrieveEmployees();
-            return ResponseEntity.ok(employees);
+    public DeferredResult<ResponseEntity<?>> getEmployees(
+            @RequestHeader(name=HttpHeaders.IF_NONE_MATCH, required=false) String ifNoneMatch,
+            @RequestHeader(name=HttpHeaders.ACCEPT, required=false) String accept,
+            @RequestHeader(name=HttpHeaders.ACCEPT_ENCODING, required=false) String acceptEncoding) {
+        return async("retrieveAll", () -> {
+            LOGGER.info("Retrieving a list of all employees.");
+            try {
+                // Read the version before the list: a change committed meanwhile may already be in the list, and
+                // the list is read from the primary until the replicas may have replayed every counted change
+                long version = employeeChangeTracker.getChangeCount();
+                String eTag = employeeChangeTracker.getETag(version);
+                if (matches(ifNoneMatch, eTag)) {
+                    return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).build();
+                }
+                MediaType mediaType = encodedResponseCache.isEnabled() ? encodedResponseCache.negotiate(accept) : null;
+                if (mediaType != null) {
+                    EncodedResponse encoded = encodedResponseCache.get("employees", version, mediaType,
+                            employeeService::retrieveEmployees);
+                    ResponseEntity.BodyBuilder response = ResponseEntity.ok().eTag(eTag).contentType(mediaType)
+                            .varyBy(HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_ENCODING);
+                    if (encoded.getGzippedBody() != null && acceptsGzip(acceptEncoding)) {
+                        return response.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(encoded.getGzippedBody());
+                    }
+                    return response.body(encoded.getBody());
+                }
+                List<Employee> employees = employeeService.retrieveEmployees();
+                return ResponseEntity.ok().eTag(eTag).body(employees);
+            } catch (Exception e) {
+                LOGGER.error("Failed to retrieve employee list: {}", e.getMessage());
+                return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+            }
+        });
+    }
+
+    /**
+     * Streams the committed employee changes as server-sent events, replacing the polling of the list.
+     * Each event is named after the kind of change (created, updated, deleted or bulk) and its ID is the
+     * sequence of the change. A client resumes from the last sequence it saw, sent as the Last-Event-ID
+     * header on reconnection or as the "since" parameter; a "reset" event asks it to reload the list first.
+     * 
+     * @param lastEventId The Last-Event-ID header sent by reconnecting clients, if any.
+     * @param since The sequence of the last change seen by the client, if any.
+     * @return The stream of changes.
+     */
+    @GetMapping(value = "/changes", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamChanges(
+            @RequestHeader(name="Last-Event-ID", required=false) String lastEventId,
+            @RequestParam(name="since", required=false) Long since) {
+        Long lastSequence = since;
+        if (lastEventId != null) {
+            try {
+                lastSequence = Long.valueOf(lastEventId.trim());
+            } catch (NumberFormatException e) {
+                // An unknown event ID cannot be resumed, so it is answered with a reset
+                lastSequence = -1L;
+            }
+        }
+        LOGGER.info("Subscribing to employee changes after sequence {}.", lastSequence);
+        SseEmitter emitter = employeeChangeFeed.subscribe(lastSequence);
+        if (emitter == null) {
+            LOGGER.error("Too many subscriptions to employee changes.");
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+        return ResponseEntity.ok(emitter);
+    }
+
+    /**
+     * Retrieves one page of employees ordered by ID, starting after the given cursor.
+     * 
+     * @param size The maximum number of employees in the page (1 to MAX_PAGE_SIZE).
+     * @param cursor The opaque cursor returned with the previous page, or none for the first page.
+     * @return The page of employees together with the cursor of the next page.
+     */
+    @GetMapping(value = "/retrieveAll", params = "size")
+    public DeferredResult<ResponseEntity<EmployeePage>> getEmployeePage(@RequestParam(name="size") int size,
+                               @RequestParam(name="cursor", required=false) String cursor) {
+        return async("retrievePage", () -> {
+            LOGGER.info("Retrieving a page of employees.");
+            if (size < 1 || size > MAX_PAGE_SIZE) {
+                LOGGER.error("Invalid page size: {}", size);
+                return ResponseEntity.badRequest().build();
+            }
+            Long afterId;
+            try {
+                afterId = cursor == null ? 0L : EmployeePage.decodeCursor(cursor);
+            } catch (IllegalArgumentException e) {
+                LOGGER.error("Invalid cursor {}: {}", cursor, e.getMessage());
+                return ResponseEntity.badRequest().build();
+            }
+            try {
+                EmployeePage page = employeeService.retrieveEmployeePage(afterId, size);
+                return ResponseEntity.ok(page);
+            } catch (Exception e) {
+                LOGGER.error("Failed to retrieve employee page: {}", e.getMessage());
+                return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+            }
+        });
+    }
+
+    /**
+     * Exports all employees as newline-delimited JSON, one employee per line.
+     * Rows are written while the query is still being read, so memory use does not depend on the table size.
+     * The export runs under its own "export" timeout, as it may take much longer than other requests.
+     * 
+     * @param response The response the employees are written to.
+     * @return The asynchronous task writing the export.
+     */
+    @GetMapping("/export")
+    public WebAsyncTask<Void> exportEmployees(HttpServletResponse response) {
+        LOGGER.info("Exporting all employees.");
+        ObjectWriter writer = objectMapper.writerFor(Employee.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        response.setContentType(APPLICATION_NDJSON.toString());
+        return new WebAsyncTask<>(asyncProperties.getTimeout("export"), () -> {
+            JsonGenerator generator = objectMapper.getFactory().createGenerator(response.getOutputStream());
+            generator.setRootValueSeparator(null);
+            int[] count = {0};
+            try {
+                employeeService.exportEmployees(employee -> {
+                    try {
+                        writer.writeValue(generator, employee);
+                        generator.writeRaw('\n');
+                        if (++count[0] % EXPORT_FLUSH_INTERVAL == 0) {
+                            generator.flush();
+                        }
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                LOGGER.error("Export aborted after {} employees: {}", count[0], e.getMessage());
+                throw e.getCause();
+            }
+            generator.flush();
+            LOGGER.info("Exported {} employees.", count[0]);
+            return null;
+        });
+    }
+
+    /**
+     * Searches employees by department, name prefix and salary range, one page at a time.
+     * 
+     * @param criteria The filters of the search ("department", "name", "minSalary", "maxSalary"), all optional.
+     * @param pageable The "page", "size" (up to MAX_PAGE_SIZE) and "sort" (id, name, salary or department) parameters.
+     * @return The page of matching employees.
+     */
+    @GetMapping("/search")
+    public DeferredResult<ResponseEntity<Page<Employee>>> searchEmployees(EmployeeSearchCriteria criteria,
+                               @PageableDefault(size = 20, sort = "id") Pageable pageable) {
+        return async("search", () -> {
+            LOGGER.info("Searching employees.");
+            if (!criteria.hasValidSalaryRange() || pageable.getPageSize() > MAX_PAGE_SIZE) {
+                LOGGER.error("Invalid search of employees: salary {} to {}, page size {}",
+                        criteria.getMinSalary(), criteria.getMaxSalary(), pageable.getPageSize());
+                return ResponseEntity.badRequest().build();
+            }
+            for (Sort.Order order : pageable.getSort()) {
+                if (!SEARCH_SORT_PROPERTIES.contains(order.getProperty())) {
+                    LOGGER.error("Invalid sort property of employee search: {}", order.getProperty());
+                    return ResponseEntity.badRequest().build();
+                }
+            }
+            try {
+                return ResponseEntity.ok(employeeService.searchEmployees(criteria, pageable));
+            } catch (Exception e) {
+                LOGGER.error("Failed to search employees: {}", e.getMessage());
+                return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+            }
+        });
+    }
+
+    /**
+     * Retrieves the headcount and salary statistics of every department.
+     * 
+     * @return The statistics of every department, ordered by department.
+     */
+    @GetMapping("/statistics/departments")
+    public ResponseEntity<List<DepartmentStatistics>> getDepartmentStatistics() {
+        LOGGER.info("Retrieving department statistics.");
+        try {
+            return ResponseEntity.ok(departmentStatisticsService.getDepartmentStatistics());
+        } catch (Exception e) {
+            LOGGER.error("Failed to retrieve department statistics: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    /**
+     * Retrieves the employees with the highest salaries.
+     * 
+     * @param n The maximum number of employees (1 to MAX_PAGE_SIZE).
+     * @param department The department to be ranked, or none for every department.
+     * @return The employees by descending salary.
+     */
+    @GetMapping("/analytics/top-salaries")
+    public ResponseEntity<List<EmployeeSalary>> getTopSalaries(@RequestParam(name="n", defaultValue="10") int n,
+                               @RequestParam(name="department", required=false) String department) {
+        LOGGER.info("Retrieving the top {} salaries.", n);
+        if (n < 1 || n > MAX_PAGE_SIZE) {
+            LOGGER.error("Invalid number of top salaries: {}", n);
+            return ResponseEntity.badRequest().build();
+        }
+        try {
+            return ResponseEntity.ok(employeeAnalyticsService.getTopSalaries(n, department));
         } catch (Exception e) {
-            LOGGER.error("Failed to retrieve employee list: {}", e.getMessage());
+            LOGGER.error("Failed to retrieve top salaries: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    /**
+     * Retrieves salary percentiles (nearest-rank method).
+     * 
+     * @param percentiles The comma-separated percentiles, each greater than 0 and at most 100.
+     * @param department The department, or none for every department.
+     * @return The salary at each percentile.
+     */
+    @GetMapping("/analytics/salary-percentiles")
+    public ResponseEntity<Map<Double, Integer>> getSalaryPercentiles(
+                               @RequestParam(name="p", defaultValue="50,90,99") List<Double> percentiles,
+                               @RequestParam(name="department", required=false) String department) {
+        LOGGER.info("Retrieving salary percentiles.");
+        if (percentiles.isEmpty() || percentiles.size() > MAX_PERCENTILES
+                || percentiles.stream().anyMatch(p -> p == null || !(p > 0 && p <= 100))) {
+            LOGGER.error("Invalid salary percentiles: {}", percentiles);
+            return ResponseEntity.badRequest().build();
+        }
+        try {
+            return ResponseEntity.ok(employeeAnalyticsService.getSalaryPercentiles(percentiles, department));
+        } catch (Exception e) {
+            LOGGER.error("Failed to retrieve salary percentiles: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    /**
+     * Retrieves the salary histogram of each department.
+     * 
+     * @param bucketWidth The salary range of each bucket.
+     * @return The histogram of each department.
+     */
+    @GetMapping("/analytics/salary-histogram")
+    public ResponseEntity<SalaryHistogram> getSalaryHistogram(
+                               @RequestParam(name="bucketWidth", defaultValue="1000000") int bucketWidth) {
+        LOGGER.info("Retrieving the salary histogram.");
+        try {
+            return ResponseEntity.ok(employeeAnalyticsService.getSalaryHistogram(bucketWidth));
+        } catch (IllegalArgumentException e) {
+            LOGGER.error("Invalid salary histogram: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        } catch (Exception e) {
+            LOGGER.error("Failed to retrieve the salary histogram: {}", e.getMessage());
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
     }
@@ -53,83 +483,418 @@ public class EmployeeController {
     /**
      * Retrieves the specified employee by its ID.
      * 
+     * The employee is tagged with its version, so an unchanged employee is answered with
+     * 304 Not Modified without serializing it.
+     * 
      * @param employeeId The ID of the employee to be retrieved from the repository.
+     * @param ifNoneMatch The ETags of the employee already held by the client, if any.
      * @return The employee details with the specified ID.
      */
     @GetMapping("/retrieve/{employeeId}")
-    public ResponseEntity<Employee> getEmployee(@PathVariable(name="employeeId") Long employeeId) {
-        LOGGER.info("Retrieving information of the specified employee.");
-        try {
-            Employee employee = employeeService.getEmployee(employeeId);
-            if (employee != null) {
-                return ResponseEntity.ok(employee);
-            } else {
-                return ResponseEntity.notFound().build();
+    public DeferredResult<ResponseEntity<Employee>> getEmployee(@PathVariable(name="employeeId") Long employeeId,
+            @RequestHeader(name=HttpHeaders.IF_NONE_MATCH, required=false) String ifNoneMatch) {
+        return async("retrieve", () -> {
+            LOGGER.info("Retrieving information of the specified employee.");
+            try {
+                Employee employee = employeeService.getEmployee(employeeId);
+                if (employee != null) {
+                    String eTag = eTagOf(employee);
+                    if (matches(ifNoneMatch, eTag)) {
+                        return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).build();
+                    }
+                    return ResponseEntity.ok().eTag(eTag).body(employee);
+                } else {
+                    return ResponseEntity.notFound().build();
+                }
+            } catch (Exception e) {
+                LOGGER.error("Failed to retrieve employee with ID {}: {}", employeeId, e.getMessage());
+                return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
             }
-        } catch (Exception e) {
-            LOGGER.error("Failed to retrieve employee with ID {}: {}", employeeId, e.getMessage());
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
-        }
+        });
+    }
+
+    /**
+     * Retrieves several employees by their IDs in one call.
+     * 
+     * @param employeeIds The comma-separated IDs of the employees to be retrieved.
+     * @return The existing employees with the specified IDs; unknown IDs are skipped.
+     */
+    @GetMapping(value = "/retrieve", params = "ids")
+    public DeferredResult<ResponseEntity<List<Employee>>> getEmployeesByIds(@RequestParam(name="ids") List<Long> employeeIds) {
+        return retrieveEmployeesByIds(employeeIds);
+    }
+
+    /**
+     * Retrieves several employees by their IDs in one call, for ID sets too large for a query string.
+     * 
+     * @param employeeIds The IDs of the employees to be retrieved.
+     * @return The existing employees with the specified IDs; unknown IDs are skipped.
+     */
+    @PostMapping("/retrieve")
+    public DeferredResult<ResponseEntity<List<Employee>>> postEmployeesByIds(@RequestBody List<Long> employeeIds) {
+        return retrieveEmployeesByIds(employeeIds);
     }
 
     /**
      * Saves a new employee data.
+     * With write-behind enabled, the save is committed with the other writes of its batch
+     * and answered once the batch has been committed.
      * 
      * @param employee The employee to be saved into the repository.
      */
     @PostMapping("/save")
-    public ResponseEntity<?> saveEmployee(@RequestBody Employee employee){
-        LOGGER.info("Creating a new employee information.");
-        try {
-            employeeService.saveEmployee(employee);
-            LOGGER.info("New employee information has been saved successfully.");
-            return ResponseEntity.ok().build();
+    public DeferredResult<ResponseEntity<?>> saveEmployee(@RequestBody Employee employee){
+        if (employeeService.isWriteBehindEnabled()) {
+            return asyncStage("save", () -> {
+                LOGGER.info("Queueing a new employee information.");
+                return writeBehind("save", employee, () -> employeeService.saveEmployeeBehind(employee), saved -> {
+                    LOGGER.info("New employee information has been saved successfully.");
+                    return ResponseEntity.ok().build();
+                });
+            });
+        }
+        return async("save", () -> {
+            LOGGER.info("Creating a new employee information.");
+            try {
+                employeeService.saveEmployee(employee);
+                LOGGER.info("New employee information has been saved successfully.");
+                return ResponseEntity.ok().build();
+            } catch (Exception e) {
+                LOGGER.error("Failed to save employee: {}", e.getMessage());
+                return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+            }
+        });
+    }
+
+    /**
+     * Saves many new employees at once using JDBC batching.
+     * The body is either a JSON array or a sequence of JSON objects and is read incrementally.
+     * 
+     * @param body The request body containing the employees to be saved.
+     * @return The number of saved employees.
+     */
+    @PostMapping("/save/batch")
+    public ResponseEntity<?> saveEmployees(InputStream body) {
+        LOGGER.info("Creating a batch of new employee information.");
+        try (MappingIterator<Employee> employees = objectMapper.readerFor(Employee.class).readValues(body)) {
+            int saved = employeeService.saveEmployees(employees);
+            LOGGER.info("{} new employees have been saved successfully.", saved);
+            return ResponseEntity.ok(Collections.singletonMap("saved", saved));
         } catch (Exception e) {
-            LOGGER.error("Failed to save employee: {}", e.getMessage());
+            if (e instanceof JsonProcessingException || e.getCause() instanceof JsonProcessingException) {
+                LOGGER.error("Invalid employee batch: {}", e.getMessage());
+                return ResponseEntity.badRequest().build();
+            }
+            LOGGER.error("Failed to save employee batch: {}", e.getMessage());
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
     }
 
     /**
-     * Deletes an employee by its ID.
+     * Imports new employees from a CSV upload with a name, salary and department header row.
+     * The upload is parsed as a stream and written in batched transactions.
      * 
-     * @param employeeId The ID of the employee to be deleted from the repository.
+     * @param body The request body containing the CSV content.
+     * @return The report of the import, with the number of imported and failed rows.
      */
-    @DeleteMapping("/delete/{employeeId}")
-    public ResponseEntity<?> deleteEmployee(@PathVariable(name="employeeId") Long employeeId){
-        LOGGER.info("Deleting information of the specified employee.");
+    @PostMapping("/import")
+    public ResponseEntity<ImportReport> importEmployees(InputStream body) {
+        LOGGER.info("Importing employee information from CSV.");
         try {
-            employeeService.deleteEmployee(employeeId);
-            LOGGER.info("Employee with ID {} has been deleted successfully.", employeeId);
-            return ResponseEntity.ok().build();
+            ImportReport report = employeeImportService.importCsv(body);
+            return ResponseEntity.ok(report);
+        } catch (IllegalArgumentException e) {
+            LOGGER.error("Invalid employee CSV: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
         } catch (Exception e) {
-            LOGGER.error("Failed to delete employee with ID {}: {}", employeeId, e.getMessage());
+            LOGGER.error("Failed to import employees: {}", e.getMessage());
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
     }
 
+    /**
+     * Deletes an employee by its ID.
+     * 
+     * @param employeeId The ID of the employee to be deleted from the repository.
+     */
+    @DeleteMapping("/delete/{employeeId}")
+    public DeferredResult<ResponseEntity<?>> deleteEmployee(@PathVariable(name="employeeId") Long employeeId){
+        return async("delete", () -> {
+            LOGGER.info("Deleting information of the specified employee.");
+            try {
+                employeeService.deleteEmployee(employeeId);
+                LOGGER.info("Employee with ID {} has been deleted successfully.", employeeId);
+                return ResponseEntity.ok().build();
+            } catch (Exception e) {
+                LOGGER.error("Failed to delete employee with ID {}: {}", employeeId, e.getMessage());
+                return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+            }
+        });
+    }
+
     /**
      * Updates information of an existing employee.
+     * An update carrying a version fails with 409 Conflict when the employee has been changed since.
+     * With write-behind enabled, updates of the same employee in one batch are coalesced into one.
      * 
      * @param employee The updated employee information.
      * @param employeeId The ID of the employee to be updated from the repository.
      */
     @PutMapping("/update/{employeeId}")
-    public ResponseEntity<?> updateEmployee(@RequestBody Employee employee,
+    public DeferredResult<ResponseEntity<?>> updateEmployee(@RequestBody Employee employee,
                                @PathVariable(name="employeeId") Long employeeId){
+        if (employeeService.isWriteBehindEnabled()) {
+            return asyncStage("update", () -> {
+                Employee emp = employeeService.getEmployee(employeeId);
+                if (emp == null) {
+                    return CompletableFuture.completedFuture(ResponseEntity.notFound().build());
+                }
+                employee.setId(employeeId);
+                return writeBehind("update", employee, () -> employeeService.updateEmployeeBehind(employee), updated -> {
+                    if (updated == null) {
+                        // Deleted while the update was queued
+                        return ResponseEntity.notFound().build();
+                    }
+                    LOGGER.info("Employee with ID {} has been updated successfully.", employeeId);
+                    return ResponseEntity.ok().eTag(eTagOf(updated)).build();
+                });
+            });
+        }
+        return async("update", () -> {
+            try {
+                Employee emp = employeeService.getEmployee(employeeId);
+                if(emp != null){
+                    employee.setId(employeeId);
+                    Employee updated = employeeService.updateEmployee(employee);
+                    if (updated == null) {
+                        // Deleted since it was checked
+                        return ResponseEntity.notFound().build();
+                    }
+                    LOGGER.info("Employee with ID {} has been updated successfully.", employeeId);
+                    return ResponseEntity.ok().eTag(eTagOf(updated)).build();
+                } else {
+                    return ResponseEntity.notFound().build();
+                }
+            } catch (ObjectOptimisticLockingFailureException e) {
+                LOGGER.error("Employee with ID {} has been changed concurrently: {}", employeeId, e.getMessage());
+                return ResponseEntity.status(HttpStatus.CONFLICT).build();
+            } catch (Exception e) {
+                LOGGER.error("Failed to update employee with ID {}: {}", employeeId, e.getMessage());
+                return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+            }
+        });
+    }
+
+    /**
+     * Changes the supplied fields of an existing employee, without reading it first when it is cached.
+     * A patch carrying a version fails with 409 Conflict when the employee has been changed since.
+     * 
+     * @param patch The fields to be changed; fields left null are kept.
+     * @param employeeId The ID of the employee to be changed.
+     * @return The response with the new ETag of the employee.
+     */
+    @PatchMapping("/update/{employeeId}")
+    public DeferredResult<ResponseEntity<?>> patchEmployee(@RequestBody EmployeePatch patch,
+                               @PathVariable(name="employeeId") Long employeeId){
+        return async("patch", () -> {
+            if (patch.isEmpty()) {
+                LOGGER.error("Empty patch of employee with ID {}.", employeeId);
+                return ResponseEntity.badRequest().build();
+            }
+            try {
+                Employee patched = employeeService.patchEmployee(employeeId, patch);
+                if (patched == null) {
+                    return ResponseEntity.notFound().build();
+                }
+                LOGGER.info("Employee with ID {} has been patched successfully.", employeeId);
+                return ResponseEntity.ok().eTag(eTagOf(patched)).build();
+            } catch (ObjectOptimisticLockingFailureException e) {
+                LOGGER.error("Employee with ID {} has been changed concurrently: {}", employeeId, e.getMessage());
+                return ResponseEntity.status(HttpStatus.CONFLICT).build();
+            } catch (Exception e) {
+                LOGGER.error("Failed to patch employee with ID {}: {}", employeeId, e.getMessage());
+                return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+            }
+        });
+    }
+
+    /**
+     * Validates the IDs of a multi-get request and retrieves the employees.
+     *
+     * @param employeeIds The IDs of the employees to be retrieved.
+     * @return The existing employees with the specified IDs.
+     */
+    private DeferredResult<ResponseEntity<List<Employee>>> retrieveEmployeesByIds(List<Long> employeeIds) {
+        return async("retrieveByIds", () -> {
+            LOGGER.info("Retrieving information of {} employees.", employeeIds.size());
+            if (employeeIds.size() > MAX_RETRIEVE_IDS || employeeIds.contains(null)) {
+                LOGGER.error("Invalid list of {} employee IDs.", employeeIds.size());
+                return ResponseEntity.badRequest().build();
+            }
+            try {
+                List<Employee> employees = employeeService.getEmployees(employeeIds);
+                return ResponseEntity.ok(employees);
+            } catch (Exception e) {
+                LOGGER.error("Failed to retrieve employees by IDs: {}", e.getMessage());
+                return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+            }
+        });
+    }
+
+    /**
+     * Queues the write of an employee and maps its outcome to the response.
+     * A conflicting version is answered with 409 Conflict, and a full queue with 503 Service Unavailable.
+     *
+     * @param endpoint The endpoint name, for the logs.
+     * @param employee The employee to be saved.
+     * @param submit The submission of the write to the queue.
+     * @param onSaved The response once the employee has been saved.
+     * @return The stage of the response, completed once the write has been committed.
+     */
+    private CompletionStage<ResponseEntity<?>> writeBehind(String endpoint, Employee employee,
+                                                          Supplier<CompletableFuture<Employee>> submit,
+                                                          Function<Employee, ResponseEntity<?>> onSaved) {
+        CompletableFuture<Employee> saved;
         try {
-            Employee emp = employeeService.getEmployee(employeeId);
-            if(emp != null){
-                employeeService.updateEmployee(employee);
-                LOGGER.info("Employee with ID {} has been updated successfully.", employeeId);
-                return ResponseEntity.ok().build();
-            } else {
-                return ResponseEntity.notFound().build();
+            saved = submit.get();
+        } catch (RejectedExecutionException e) {
+            LOGGER.error("Rejected the {} request: {}", endpoint, e.getMessage());
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build());
+        }
+        return saved.handle((employeeSaved, failure) -> {
+            if (failure == null) {
+                return onSaved.apply(employeeSaved);
             }
-        } catch (Exception e) {
-            LOGGER.error("Failed to update employee with ID {}: {}", employeeId, e.getMessage());
+            Throwable cause = failure instanceof CompletionException && failure.getCause() != null
+                    ? failure.getCause() : failure;
+            if (cause instanceof OptimisticLockingFailureException) {
+                LOGGER.error("The {} of employee with ID {} conflicts with a concurrent change: {}",
+                        endpoint, employee.getId(), cause.getMessage());
+                return ResponseEntity.status(HttpStatus.CONFLICT).build();
+            }
+            if (cause instanceof RejectedExecutionException) {
+                LOGGER.error("Rejected the {} request: {}", endpoint, cause.getMessage());
+                return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+            }
+            LOGGER.error("Failed to {} employee: {}", endpoint, cause.getMessage());
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        });
+    }
+
+    /**
+     * Handles a request on the database executor, so the request thread is released while the database works.
+     * The request is answered with 503 Service Unavailable at once if the executor is saturated,
+     * or when the timeout of the endpoint expires, in which case the handling is interrupted.
+     *
+     * @param endpoint The endpoint name, selecting the timeout.
+     * @param handler The handling of the request.
+     * @return The deferred response.
+     */
+    private <R> DeferredResult<R> async(String endpoint, Supplier<R> handler) {
+        return asyncStage(endpoint, () -> CompletableFuture.completedFuture(handler.get()));
+    }
+
+    /**
+     * Handles a request on the database executor like async, for a handling whose response is completed
+     * later, such as a write-behind write; the database thread is released while it waits.
+     *
+     * @param endpoint The endpoint name, selecting the timeout.
+     * @param handler The handling of the request, returning the stage of the response.
+     * @return The deferred response.
+     */
+    private <R> DeferredResult<R> asyncStage(String endpoint, Supplier<? extends CompletionStage<R>> handler) {
+        long timeout = asyncProperties.getTimeout(endpoint);
+        DeferredResult<R> result = new DeferredResult<>(timeout, ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build());
+        try {
+            Future<?> task = databaseExecutor.submit(() -> {
+                try {
+                    handler.get().whenComplete((response, failure) -> {
+                        if (failure == null) {
+                            result.setResult(response);
+                        } else {
+                            result.setErrorResult(failure);
+                        }
+                    });
+                } catch (RuntimeException e) {
+                    result.setErrorResult(e);
+                }
+            });
+            result.onTimeout(() -> {
+                LOGGER.error("The {} request timed out after {} ms.", endpoint, timeout);
+                task.cancel(true);
+            });
+        } catch (RejectedExecutionException e) {
+            LOGGER.error("Rejected the {} request: {}", endpoint, e.getMessage());
+            // An error result which is not an exception is written as the response
+            result.setErrorResult(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build());
+        }
+        return result;
+    }
+
+    /**
+     * Gets the strong ETag of an employee, derived from its version.
+     *
+     * @param employee The employee.
+     * @return The quoted ETag.
+     */
+    private static String eTagOf(Employee employee) {
+        return "\"" + employee.getId() + "-" + employee.getVersion() + "\"";
+    }
+
+    /**
+     * Checks whether an Accept-Encoding header accepts gzip.
+     *
+     * @param acceptEncoding The Accept-Encoding header, or null.
+     * @return True if gzip is listed, or matched by "*", without a zero quality.
+     */
+    static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        Boolean wildcard = null;
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parameters = coding.split(";");
+            String name = parameters[0].trim();
+            boolean refused = false;
+            for (int i = 1; i < parameters.length; i++) {
+                refused |= parameters[i].replace(" ", "").matches("q=0(\\.0*)?");
+            }
+            if (name.equalsIgnoreCase("gzip")) {
+                return !refused;
+            }
+            if (name.equals("*")) {
+                wildcard = !refused;
+            }
+        }
+        return Boolean.TRUE.equals(wildcard);
+    }
+
+    /**
+     * Checks whether an If-None-Match header matches the current ETag of a resource.
+     *
+     * @param ifNoneMatch The If-None-Match header, or null.
+     * @param eTag The current ETag, strong or weak.
+     * @return True if the client already holds the current version.
+     */
+    static boolean matches(String ifNoneMatch, String eTag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            candidate = candidate.trim();
+            // If-None-Match uses the weak comparison, so weak and strong tags of the same version match
+            if (candidate.equals("*") || opaqueTag(candidate).equals(opaqueTag(eTag))) {
+                return true;
+            }
         }
+        return false;
+    }
+
+    /**
+     * Gets the quoted part of an ETag, without the weakness indicator.
+     */
+    private static String opaqueTag(String eTag) {
+        return eTag.startsWith("W/") ? eTag.substring(2) : eTag;
     }
 
 }
@@ -0,0 +1,389 @@
+package jp.co.axa.apidemo.datasource;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * The DataSource sending the connections of read-only transactions to a replica, and every other
+ * connection to the primary. A replica is chosen round-robin or by fewest connections in use, among
+ * the replicas whose last check found them reachable and within the accepted replication lag;
+ * when there is none, the primary serves the read.
+ * Reads also go to the primary while a write transaction is open and for the lag window after it
+ * (the accepted lag plus the interval of the checks), so the caches filled after a write are never
+ * filled from a replica which has not replayed it yet. Reads which must see every committed change,
+ * such as the reconciliation of aggregates, run through readFromPrimary.
+ * The window is global, not per employee or per reader: as nearly every read of the service fills the
+ * entity, query or Spring caches, any write, local or remote, sends all the reads of the node to the primary
+ * for maxLagMs + lagCheckIntervalMs (2 s by default). Under a steady write rate above one per window,
+ * the replicas therefore serve no reads at all; routing only pays off for read-mostly loads with bursts
+ * of writes, and a shorter window needs a lower accepted lag or more frequent checks.
+ * The physical connection is only fetched on the first statement, as the transaction manager asks
+ * for it before the read-only flag of the transaction is published.
+ */
+public class ReadWriteRoutingDataSource extends LazyConnectionDataSourceProxy implements MeterBinder, Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReadWriteRoutingDataSource.class);
+
+    /** Whether the reads of the current thread are pinned to the primary. */
+    private static final ThreadLocal<Boolean> PRIMARY_READS = new ThreadLocal<>();
+
+    /**
+     * The choice of the replica serving a read.
+     */
+    public enum Selection {
+
+        /** Each replica in turn. */
+        ROUND_ROBIN,
+
+        /** The replica with the fewest connections in use. */
+        LEAST_LOADED
+    }
+
+    private final DataSource primary;
+
+    private final List<Replica> replicas = new ArrayList<>();
+
+    private final Selection selection;
+
+    private final long maxLagMs;
+
+    private final String lagQuery;
+
+    private final AtomicLong next = new AtomicLong();
+
+    /** The time between two checks of the replicas, during which a replica may fall further behind. */
+    private long lagCheckIntervalMs = 1000;
+
+    /** The number of connections of write transactions in use. */
+    private final AtomicInteger openWrites = new AtomicInteger();
+
+    /** The System.nanoTime until which reads go to the primary, after the last write. */
+    private volatile long primaryUntil = System.nanoTime();
+
+    private final LongAdder writes = new LongAdder();
+
+    private final LongAdder replicaReads = new LongAdder();
+
+    private final LongAdder primaryReads = new LongAdder();
+
+    /**
+     * Constructor.
+     *
+     * @param primary The DataSource of the primary database.
+     * @param replicas The DataSources of the replicas, keyed by replica name.
+     * @param selection The choice of the replica serving a read.
+     * @param maxLagMs The largest replication lag, in milliseconds, of a replica serving reads.
+     * @param lagQuery The query returning the replication lag of a replica in milliseconds,
+     *                 or null to only check that the replica is reachable.
+     */
+    public ReadWriteRoutingDataSource(DataSource primary, Map<String, DataSource> replicas, Selection selection,
+                                      long maxLagMs, String lagQuery) {
+        this.primary = primary;
+        replicas.forEach((name, dataSource) -> this.replicas.add(new Replica(name, dataSource)));
+        this.selection = selection;
+        this.maxLagMs = maxLagMs;
+        this.lagQuery = lagQuery;
+        setTargetDataSource(new Router());
+        afterPropertiesSet();
+    }
+
+    /**
+     * Runs reads on the primary even in read-only transactions, e.g. the reads which reconcile derived
+     * data with the database and so must not see it as it was before the replication lag.
+     *
+     * @param reads The reads, opening their connections on the current thread.
+     * @param <T> The type of the result.
+     * @return The result of the reads.
+     */
+    public static <T> T readFromPrimary(Supplier<T> reads) {
+        Boolean pinned = PRIMARY_READS.get();
+        PRIMARY_READS.set(Boolean.TRUE);
+        try {
+            return reads.get();
+        } finally {
+            if (pinned == null) {
+                PRIMARY_READS.remove();
+            }
+        }
+    }
+
+    /**
+     * Sets the time between two checks of the replicas, which lengthens the window after a write
+     * during which reads go to the primary.
+     *
+     * @param lagCheckIntervalMs The interval in milliseconds.
+     */
+    public void setLagCheckIntervalMs(long lagCheckIntervalMs) {
+        this.lagCheckIntervalMs = lagCheckIntervalMs;
+    }
+
+    /**
+     * Sends the reads to the primary for the lag window, after a write committed through another node
+     * of the service which the replicas may not have replayed yet.
+     */
+    public void onRemoteWrite() {
+        openWindow();
+    }
+
+    /**
+     * Checks every "app.datasource.routing.lag-check-interval-ms" whether each replica is reachable
+     * and within the accepted lag, taking it out of the rotation or back in.
+     */
+    @Scheduled(fixedDelayString = "${app.datasource.routing.lag-check-interval-ms:1000}")
+    public void checkReplicas() {
+        for (Replica replica : replicas) {
+            long lag;
+            try (Connection connection = replica.dataSource.getConnection()) {
+                lag = lagQuery == null ? 0 : queryLag(connection);
+            } catch (SQLException e) {
+                LOGGER.debug("Replica {} check failed.", replica.name, e);
+                lag = -1;
+            }
+            boolean available = lag >= 0 && lag <= maxLagMs;
+            if (available != replica.available) {
+                if (available) {
+                    LOGGER.info("Replica {} is back in the rotation (lag {} ms).", replica.name, lag);
+                } else {
+                    LOGGER.warn("Replica {} is out of the rotation ({}).", replica.name,
+                            lag < 0 ? "unreachable" : "lag " + lag + " ms");
+                }
+            }
+            replica.lagMs = lag;
+            replica.available = available;
+        }
+    }
+
+    /**
+     * Closes the primary and replica DataSources.
+     *
+     * @throws IOException If a DataSource fails to close.
+     */
+    @Override
+    public void close() throws IOException {
+        if (primary instanceof Closeable) {
+            ((Closeable) primary).close();
+        }
+        for (Replica replica : replicas) {
+            if (replica.dataSource instanceof Closeable) {
+                ((Closeable) replica.dataSource).close();
+            }
+        }
+    }
+
+    /**
+     * Registers the routed connection counts, and the lag and connections in use of each replica.
+     *
+     * @param registry The meter registry.
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("datasource.routing.connections", writes, LongAdder::sum)
+                .tag("route", "primary")
+                .description("The number of connections routed by the kind of transaction and their target")
+                .register(registry);
+        FunctionCounter.builder("datasource.routing.connections", replicaReads, LongAdder::sum)
+                .tag("route", "read-replica")
+                .description("The number of connections routed by the kind of transaction and their target")
+                .register(registry);
+        FunctionCounter.builder("datasource.routing.connections", primaryReads, LongAdder::sum)
+                .tag("route", "read-primary")
+                .description("The number of connections routed by the kind of transaction and their target")
+                .register(registry);
+        for (Replica replica : replicas) {
+            Gauge.builder("datasource.replica.lag", replica, r -> r.lagMs < 0 ? Double.NaN : r.lagMs)
+                    .tag("replica", replica.name)
+                    .description("The replication lag found by the last check in milliseconds, NaN if unreachable")
+                    .register(registry);
+            Gauge.builder("datasource.replica.active", replica, r -> r.active.get())
+                    .tag("replica", replica.name)
+                    .description("The number of connections to the replica in use")
+                    .register(registry);
+        }
+    }
+
+    /**
+     * Opens a connection on the DataSource matching the current transaction.
+     */
+    private Connection route(ConnectionSource source) throws SQLException {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            writes.increment();
+            if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+                return source.open(primary);
+            }
+            Connection connection = source.open(primary);
+            openWrites.incrementAndGet();
+            openWindow();
+            return track(connection, () -> {
+                openWindow();
+                openWrites.decrementAndGet();
+            });
+        }
+        Replica replica = isPrimaryRequired() ? null : select();
+        if (replica != null) {
+            try {
+                Connection connection = replica.open(source);
+                replicaReads.increment();
+                return connection;
+            } catch (SQLException e) {
+                LOGGER.warn("Replica {} is out of the rotation (unreachable).", replica.name, e);
+                replica.lagMs = -1;
+                replica.available = false;
+            }
+        }
+        primaryReads.increment();
+        return source.open(primary);
+    }
+
+    /**
+     * Checks whether the reads must go to the primary: when pinned to it, while a write transaction is open,
+     * or during the lag window after the last write.
+     */
+    private boolean isPrimaryRequired() {
+        return PRIMARY_READS.get() != null || openWrites.get() > 0 || System.nanoTime() - primaryUntil < 0;
+    }
+
+    /**
+     * Sends the reads to the primary until the replicas may have replayed the last write.
+     */
+    private void openWindow() {
+        primaryUntil = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxLagMs + lagCheckIntervalMs);
+    }
+
+    /**
+     * Wraps a connection to run an action once when it is closed.
+     */
+    private static Connection track(Connection connection, Runnable onClose) {
+        AtomicBoolean closed = new AtomicBoolean();
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[] {Connection.class}, (proxy, method, args) -> {
+                    if ("close".equals(method.getName()) && closed.compareAndSet(false, true)) {
+                        onClose.run();
+                    }
+                    try {
+                        return method.invoke(connection, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getTargetException();
+                    }
+                });
+    }
+
+    /**
+     * Selects an available replica, starting from the next one in turn.
+     *
+     * @return The replica, or null if none is available.
+     */
+    private Replica select() {
+        int size = replicas.size();
+        if (size == 0) {
+            return null;
+        }
+        long start = next.getAndIncrement();
+        Replica selected = null;
+        for (int i = 0; i < size; i++) {
+            Replica replica = replicas.get((int) ((start + i) % size));
+            if (!replica.available) {
+                continue;
+            }
+            if (selection == Selection.ROUND_ROBIN) {
+                return replica;
+            }
+            if (selected == null || replica.active.get() < selected.active.get()) {
+                selected = replica;
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * Runs the lag query on a replica.
+     */
+    private long queryLag(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(lagQuery)) {
+            return resultSet.next() ? Math.max(resultSet.getLong(1), 0) : 0;
+        }
+    }
+
+    /**
+     * The target DataSource opening the physical connections.
+     */
+    private class Router extends AbstractDataSource {
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            return route(DataSource::getConnection);
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            return route(dataSource -> dataSource.getConnection(username, password));
+        }
+    }
+
+    /**
+     * Opens a connection on a DataSource, with or without explicit credentials.
+     */
+    @FunctionalInterface
+    private interface ConnectionSource {
+
+        Connection open(DataSource dataSource) throws SQLException;
+    }
+
+    /**
+     * A replica DataSource with its state.
+     */
+    private static class Replica {
+
+        private final String name;
+
+        private final DataSource dataSource;
+
+        /** The connections in use, counted down when they are closed. */
+        private final AtomicInteger active = new AtomicInteger();
+
+        private volatile boolean available = true;
+
+        private volatile long lagMs;
+
+        Replica(String name, DataSource dataSource) {
+            this.name = name;
+            this.dataSource = dataSource;
+        }
+
+        /**
+         * Opens a connection which counts itself in use until it is closed.
+         */
+        Connection open(ConnectionSource source) throws SQLException {
+            Connection connection = source.open(dataSource);
+            active.incrementAndGet();
+            return track(connection, active::decrementAndGet);
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package jp.co.axa.apidemo.dto;
+
+import lombok.Getter;
+
+/**
+ * The class which represents the salary statistics of one department.
+ * Employees without a salary count in the headcount but not in the salary figures.
+ */
+public class DepartmentStatistics {
+
+    @Getter
+    private final String department;
+
+    @Getter
+    private final long headcount;
+
+    @Getter
+    private final long totalSalary;
+
+    @Getter
+    private final Integer minSalary;
+
+    @Getter
+    private final Integer maxSalary;
+
+    @Getter
+    private final Double averageSalary;
+
+    /**
+     * Constructor.
+     *
+     * @param department The department.
+     * @param headcount The number of employees of the department.
+     * @param totalSalary The sum of the salaries.
+     * @param minSalary The lowest salary, or null if no employee has a salary.
+     * @param maxSalary The highest salary, or null if no employee has a salary.
+     * @param averageSalary The average salary, or null if no employee has a salary.
+     */
+    public DepartmentStatistics(String department, long headcount, long totalSalary,
+                                Integer minSalary, Integer maxSalary, Double averageSalary) {
+        this.department = department;
+        this.headcount = headcount;
+        this.totalSalary = totalSalary;
+        this.minSalary = minSalary;
+        this.maxSalary = maxSalary;
+        this.averageSalary = averageSalary;
+    }
+}
@@ -0,0 +1,55 @@
+package jp.co.axa.apidemo.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import jp.co.axa.apidemo.entities.Employee;
+import jp.co.axa.apidemo.events.EmployeeChangeEvent;
+import lombok.Getter;
+
+/**
+ * The class which represents one event of the employee change feed.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class EmployeeChange {
+
+    /** The position of the change in the feed, increasing by one per change. */
+    @Getter
+    private final long sequence;
+
+    @Getter
+    private final EmployeeChangeEvent.Type type;
+
+    /** The ID of the changed employee; not set for bulk writes. */
+    @Getter
+    private final Long id;
+
+    /** The new state of the employee; not set for deletions and bulk writes. */
+    @Getter
+    private final Employee employee;
+
+    /**
+     * Constructor.
+     *
+     * @param sequence The position of the change in the feed.
+     * @param type The kind of change.
+     * @param id The ID of the changed employee, or null.
+     * @param employee The new state of the employee, or null.
+     */
+    public EmployeeChange(long sequence, EmployeeChangeEvent.Type type, Long id, Employee employee) {
+        this.sequence = sequence;
+        this.type = type;
+        this.id = id;
+        this.employee = employee;
+    }
+
+    /**
+     * Creates the feed event of a committed change.
+     *
+     * @param sequence The position of the change in the feed.
+     * @param event The change event.
+     * @return The feed event.
+     */
+    public static EmployeeChange of(long sequence, EmployeeChangeEvent event) {
+        Employee state = event.getCurrent() != null ? event.getCurrent() : event.getPrevious();
+        return new EmployeeChange(sequence, event.getType(), state == null ? null : state.getId(), event.getCurrent());
+    }
+}
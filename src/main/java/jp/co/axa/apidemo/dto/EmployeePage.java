@@ -0,0 +1,58 @@
+package jp.co.axa.apidemo.dto;
+
+import jp.co.axa.apidemo.entities.Employee;
+import lombok.Getter;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * The class which represents one keyset-paginated page of employees.
+ */
+public class EmployeePage {
+
+    @Getter
+    private final List<Employee> employees;
+
+    @Getter
+    private final String nextCursor;
+
+    /**
+     * Constructor.
+     *
+     * @param employees The employees of this page, ordered by ID.
+     * @param nextCursor The opaque cursor of the next page, or null if this is the last page.
+     */
+    public EmployeePage(List<Employee> employees, String nextCursor) {
+        this.employees = employees;
+        this.nextCursor = nextCursor;
+    }
+
+    /**
+     * Encodes the last seen employee ID into an opaque cursor.
+     *
+     * @param lastId The ID of the last employee of a page.
+     * @return The opaque cursor.
+     */
+    public static String encodeCursor(Long lastId) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(String.valueOf(lastId).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decodes an opaque cursor back into the last seen employee ID.
+     *
+     * @param cursor The opaque cursor.
+     * @return The last seen employee ID.
+     * @throws IllegalArgumentException If the cursor is malformed.
+     */
+    public static Long decodeCursor(String cursor) {
+        String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        try {
+            return Long.valueOf(decoded);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Malformed cursor: " + cursor, e);
+        }
+    }
+}
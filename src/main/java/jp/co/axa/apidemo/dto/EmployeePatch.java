@@ -0,0 +1,58 @@
+package jp.co.axa.apidemo.dto;
+
+import jp.co.axa.apidemo.entities.Employee;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * The class which represents a partial update of an employee.
+ * Fields left null are not changed.
+ */
+public class EmployeePatch {
+
+    /** The new name. */
+    @Getter
+    @Setter
+    private String name;
+
+    /** The new salary. */
+    @Getter
+    @Setter
+    private Integer salary;
+
+    /** The new department. */
+    @Getter
+    @Setter
+    private String department;
+
+    /** The version the update is based on; if set, the update fails when the employee has changed since. */
+    @Getter
+    @Setter
+    private Long version;
+
+    /**
+     * Checks that the patch changes at least one field.
+     *
+     * @return true if a name, salary or department is set.
+     */
+    public boolean isEmpty() {
+        return name == null && salary == null && department == null;
+    }
+
+    /**
+     * Applies the supplied fields to an employee.
+     *
+     * @param employee The employee to be changed.
+     */
+    public void applyTo(Employee employee) {
+        if (name != null) {
+            employee.setName(name);
+        }
+        if (salary != null) {
+            employee.setSalary(salary);
+        }
+        if (department != null) {
+            employee.setDepartment(department);
+        }
+    }
+}
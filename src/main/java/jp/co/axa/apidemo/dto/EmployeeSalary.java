@@ -0,0 +1,31 @@
+package jp.co.axa.apidemo.dto;
+
+import lombok.Getter;
+
+/**
+ * The class which represents the salary of one employee in an analytical result.
+ */
+public class EmployeeSalary {
+
+    @Getter
+    private final Long id;
+
+    @Getter
+    private final String department;
+
+    @Getter
+    private final Integer salary;
+
+    /**
+     * Constructor.
+     *
+     * @param id The employee ID.
+     * @param department The employee department.
+     * @param salary The employee salary.
+     */
+    public EmployeeSalary(Long id, String department, Integer salary) {
+        this.id = id;
+        this.department = department;
+        this.salary = salary;
+    }
+}
@@ -0,0 +1,40 @@
+package jp.co.axa.apidemo.dto;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * The class which represents the optional filters of an employee search.
+ * Filters left null are not applied.
+ */
+public class EmployeeSearchCriteria {
+
+    /** The exact department. */
+    @Getter
+    @Setter
+    private String department;
+
+    /** The prefix of the employee name (case sensitive). */
+    @Getter
+    @Setter
+    private String name;
+
+    /** The lowest salary, inclusive. */
+    @Getter
+    @Setter
+    private Integer minSalary;
+
+    /** The highest salary, inclusive. */
+    @Getter
+    @Setter
+    private Integer maxSalary;
+
+    /**
+     * Checks that the salary range is not inverted.
+     *
+     * @return true if at most one bound is set, or the lowest salary does not exceed the highest one.
+     */
+    public boolean hasValidSalaryRange() {
+        return minSalary == null || maxSalary == null || minSalary <= maxSalary;
+    }
+}
@@ -0,0 +1,28 @@
+package jp.co.axa.apidemo.dto;
+
+import jp.co.axa.apidemo.entities.Employee;
+import lombok.Getter;
+
+/**
+ * The class which represents one single-employee write waiting in the write-behind queue.
+ * An update only changes an existing employee, whereas a save inserts the employee if it does not exist.
+ */
+public class EmployeeWrite {
+
+    @Getter
+    private final Employee employee;
+
+    @Getter
+    private final boolean update;
+
+    /**
+     * Constructor.
+     *
+     * @param employee The employee to be written.
+     * @param update True for an update of an existing employee, false for a save.
+     */
+    public EmployeeWrite(Employee employee, boolean update) {
+        this.employee = employee;
+        this.update = update;
+    }
+}
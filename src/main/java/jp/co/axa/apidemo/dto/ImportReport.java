@@ -0,0 +1,93 @@
+package jp.co.axa.apidemo.dto;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The class which reports the progress and outcome of a bulk employee import.
+ * Counters are updated concurrently by the parsing and the writing threads.
+ */
+public class ImportReport {
+
+    /** The maximum number of error messages kept in the report. */
+    public static final int MAX_ERRORS = 100;
+
+    private final AtomicLong rowsRead = new AtomicLong();
+
+    private final AtomicLong imported = new AtomicLong();
+
+    private final AtomicLong failed = new AtomicLong();
+
+    private final List<String> errors = Collections.synchronizedList(new ArrayList<>());
+
+    /**
+     * Records a data row read from the input.
+     */
+    public void rowRead() {
+        rowsRead.incrementAndGet();
+    }
+
+    /**
+     * Records employees written to the database.
+     *
+     * @param count The number of imported employees.
+     */
+    public void imported(int count) {
+        imported.addAndGet(count);
+    }
+
+    /**
+     * Records rows which could not be imported.
+     *
+     * @param count The number of failed rows.
+     * @param error The reason of the failure.
+     */
+    public void failed(int count, String error) {
+        failed.addAndGet(count);
+        synchronized (errors) {
+            if (errors.size() < MAX_ERRORS) {
+                errors.add(error);
+            }
+        }
+    }
+
+    /**
+     * Gets the number of data rows read from the input.
+     *
+     * @return The number of rows read.
+     */
+    public long getRowsRead() {
+        return rowsRead.get();
+    }
+
+    /**
+     * Gets the number of employees written to the database.
+     *
+     * @return The number of imported employees.
+     */
+    public long getImported() {
+        return imported.get();
+    }
+
+    /**
+     * Gets the number of rows which could not be imported.
+     *
+     * @return The number of failed rows.
+     */
+    public long getFailed() {
+        return failed.get();
+    }
+
+    /**
+     * Gets the first MAX_ERRORS error messages.
+     *
+     * @return The error messages.
+     */
+    public List<String> getErrors() {
+        synchronized (errors) {
+            return new ArrayList<>(errors);
+        }
+    }
+}
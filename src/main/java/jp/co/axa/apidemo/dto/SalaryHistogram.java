@@ -0,0 +1,58 @@
+package jp.co.axa.apidemo.dto;
+
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * The class which represents the salary histogram of each department.
+ * Bucket i of every department counts the salaries from lowerBound + i * bucketWidth (inclusive)
+ * to lowerBound + (i + 1) * bucketWidth (exclusive).
+ */
+public class SalaryHistogram {
+
+    @Getter
+    private final int bucketWidth;
+
+    @Getter
+    private final long lowerBound;
+
+    @Getter
+    private final List<Department> departments;
+
+    /**
+     * Constructor.
+     *
+     * @param bucketWidth The salary range of each bucket.
+     * @param lowerBound The lowest salary of the first bucket.
+     * @param departments The counts of each department.
+     */
+    public SalaryHistogram(int bucketWidth, long lowerBound, List<Department> departments) {
+        this.bucketWidth = bucketWidth;
+        this.lowerBound = lowerBound;
+        this.departments = departments;
+    }
+
+    /**
+     * The bucket counts of one department.
+     */
+    public static class Department {
+
+        @Getter
+        private final String department;
+
+        @Getter
+        private final long[] counts;
+
+        /**
+         * Constructor.
+         *
+         * @param department The department.
+         * @param counts The number of salaries in each bucket.
+         */
+        public Department(String department, long[] counts) {
+            this.department = department;
+            this.counts = counts;
+        }
+    }
+}
@@ -3,29 +3,42 @@ package jp.co.axa.apidemo.entities;
 import lombok.Getter;
 import lombok.Setter;
 
+import javax.persistence.Cacheable;
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.SequenceGenerator;
 import javax.persistence.Table;
+import javax.persistence.Version;
 
-import org.springframework.cache.annotation.CacheEvict;
-import org.springframework.cache.annotation.Cacheable;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 /**
  * The class which represents the Employee entity.
+ * Employees are kept in the "employee" region of the Hibernate second-level cache, so loads by ID
+ * and the SELECTs of merges are served from memory whichever layer issues them.
  */
 @Entity
-@Table(name="EMPLOYEE")
-@Cacheable("employees")
-@CacheEvict(value = "employees", allEntries = true)
+@Table(name="EMPLOYEE", indexes = {
+        @Index(name="IDX_EMPLOYEE_DEPARTMENT", columnList="DEPARTMENT"),
+        @Index(name="IDX_EMPLOYEE_NAME", columnList="EMPLOYEE_NAME"),
+        @Index(name="IDX_EMPLOYEE_SALARY", columnList="EMPLOYEE_SALARY")})
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = Employee.CACHE_REGION)
 public class Employee {
 
+    /** The second-level cache region of the employees. */
+    public static final String CACHE_REGION = "employee";
+
     @Getter
     @Setter
     @Id
-    @GeneratedValue(strategy= GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "employee_seq")
+    @SequenceGenerator(name = "employee_seq", sequenceName = "EMPLOYEE_SEQ", allocationSize = 50)
     private Long id;
 
     @Getter
@@ -43,6 +56,19 @@ public class Employee {
     @Column(name="DEPARTMENT")
     private String department;
 
+    /** The optimistic lock version, incremented on each update and used as the ETag of the employee. */
+    @Getter
+    @Setter
+    @Version
+    @Column(name="VERSION")
+    private Long version;
+
+    /**
+     * Default constructor required by JPA and Jackson.
+     */
+    public Employee() {
+    }
+
     /**
      * Constructor.
      * 
@@ -0,0 +1,80 @@
+package jp.co.axa.apidemo.events;
+
+import jp.co.axa.apidemo.entities.Employee;
+import lombok.Getter;
+
+/**
+ * The event published by the employee services after employees are written.
+ * Listeners keeping derived state (aggregates, snapshots, notifications) should use
+ * {@code @TransactionalEventListener(fallbackExecution = true)} so they only see committed changes.
+ */
+public class EmployeeChangeEvent {
+
+    /**
+     * The kinds of change.
+     */
+    public enum Type {
+        /** A new employee was saved; only the current state is set. */
+        CREATED,
+        /** An existing employee was changed; the current state is set, and the previous one when known. */
+        UPDATED,
+        /** An employee was deleted; only the previous state is set. */
+        DELETED,
+        /** Any number of employees were written in bulk; neither state is set. */
+        BULK
+    }
+
+    @Getter
+    private final Type type;
+
+    @Getter
+    private final Employee previous;
+
+    @Getter
+    private final Employee current;
+
+    /**
+     * Constructor.
+     *
+     * @param type The kind of change.
+     * @param previous The state before the change, or null.
+     * @param current The state after the change, or null.
+     */
+    public EmployeeChangeEvent(Type type, Employee previous, Employee current) {
+        this.type = type;
+        this.previous = previous;
+        this.current = current;
+    }
+
+    /**
+     * Creates the event of a single employee change, inferring its type from the states.
+     *
+     * @param previous The state before the change, or null if the employee is new.
+     * @param current The state after the change, or null if the employee was deleted.
+     * @return The change event.
+     */
+    public static EmployeeChangeEvent of(Employee previous, Employee current) {
+        Type type = previous == null ? Type.CREATED : current == null ? Type.DELETED : Type.UPDATED;
+        return new EmployeeChangeEvent(type, previous, current);
+    }
+
+    /**
+     * Creates the event of an employee change whose previous state is not known,
+     * e.g. a patch written with a single UPDATE without reading the row first.
+     *
+     * @param current The state after the change.
+     * @return The change event.
+     */
+    public static EmployeeChangeEvent updated(Employee current) {
+        return new EmployeeChangeEvent(Type.UPDATED, null, current);
+    }
+
+    /**
+     * Creates the event of a bulk write.
+     *
+     * @return The change event.
+     */
+    public static EmployeeChangeEvent bulk() {
+        return new EmployeeChangeEvent(Type.BULK, null, null);
+    }
+}
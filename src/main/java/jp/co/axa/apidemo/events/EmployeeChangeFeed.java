@@ -0,0 +1,443 @@
+package jp.co.axa.apidemo.events;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jp.co.axa.apidemo.dto.EmployeeChange;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The component which pushes the committed employee changes to the subscribers of the change feed
+ * as server-sent events. Each change gets a sequence number, sent as the event ID, and the last
+ * changes are kept in a bounded replay buffer so reconnecting clients resume where they stopped.
+ * Clients which fell behind the buffer, or sent an unknown sequence, get a reset event telling them
+ * to reload the employee list before following the feed again.
+ * The changes are ordered on a single dispatcher thread, which only queues them per subscriber: each
+ * subscriber has a bounded buffer of pending events, written to its connection by a sender thread of its own
+ * while the buffer is not empty. A slow client thus never delays the others; once its buffer is full, its
+ * pending events are replaced by a reset event and its subscription is closed after sending it.
+ */
+@Component
+public class EmployeeChangeFeed {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(EmployeeChangeFeed.class);
+
+    /** The name of the event asking a subscriber to reload the employee list. */
+    public static final String RESET_EVENT = "reset";
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    /** The number of changes kept for reconnecting subscribers. */
+    @Value("${app.changes.replay-size:1000}")
+    private int replaySize = 1000;
+
+    /** The time after which a subscription is closed; clients are expected to reconnect. */
+    @Value("${app.changes.timeout-ms:1800000}")
+    private long timeout = 1800000;
+
+    /** The maximum number of open subscriptions. */
+    @Value("${app.changes.max-subscribers:1000}")
+    private int maxSubscribers = 1000;
+
+    /** The maximum number of events waiting to be sent to one subscriber. */
+    @Value("${app.changes.subscriber-buffer-size:1000}")
+    private int subscriberBufferSize = 1000;
+
+    private final Object lock = new Object();
+
+    /**
+     * The sequence of the last change, guarded by lock. It starts from the startup time in milliseconds,
+     * so sequences of a previous run are lower than the current ones and are answered with a reset.
+     */
+    private long sequence = System.currentTimeMillis();
+
+    /** The last changes by ascending sequence, guarded by lock. */
+    private final ArrayDeque<Change> replayBuffer = new ArrayDeque<>();
+
+    /** The open subscriptions, only accessed by the dispatcher thread. */
+    private final List<Subscriber> subscribers = new ArrayList<>();
+
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+
+    private final ExecutorService dispatcher = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "employee-change-feed");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /** The threads writing the pending events of the subscribers, at most one per subscriber at a time. */
+    private final ExecutorService senders = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "employee-change-feed-sender");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /** The number of subscribers whose pending events are being written. */
+    private final AtomicInteger activeSenders = new AtomicInteger();
+
+    /**
+     * Sets the ObjectMapper used to serialize the changes.
+     *
+     * @param objectMapper The ObjectMapper instance.
+     */
+    public void setObjectMapper(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Sets the number of changes kept for reconnecting subscribers.
+     *
+     * @param replaySize The number of changes.
+     */
+    public void setReplaySize(int replaySize) {
+        this.replaySize = replaySize;
+    }
+
+    /**
+     * Sets the maximum number of events waiting to be sent to one subscriber.
+     *
+     * @param subscriberBufferSize The number of events.
+     */
+    public void setSubscriberBufferSize(int subscriberBufferSize) {
+        this.subscriberBufferSize = subscriberBufferSize;
+    }
+
+    /**
+     * Gets the sequence of the last change.
+     *
+     * @return The sequence.
+     */
+    public long getSequence() {
+        synchronized (lock) {
+            return sequence;
+        }
+    }
+
+    /**
+     * Opens a subscription to the feed.
+     *
+     * @param lastSequence The sequence of the last change seen by the client, or null to only receive new changes.
+     * @return The emitter of the subscription, or null if there are too many subscriptions.
+     */
+    public SseEmitter subscribe(Long lastSequence) {
+        if (subscriberCount.incrementAndGet() > maxSubscribers) {
+            subscriberCount.decrementAndGet();
+            return null;
+        }
+        SseEmitter emitter = newEmitter(timeout);
+        Subscriber subscriber = new Subscriber(emitter);
+        emitter.onCompletion(() -> dispatch(() -> remove(subscriber)));
+        emitter.onTimeout(emitter::complete);
+        dispatch(() -> start(subscriber, lastSequence));
+        return emitter;
+    }
+
+    /**
+     * Appends a committed change to the feed and schedules its delivery.
+     *
+     * @param event The change event.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onEmployeeChange(EmployeeChangeEvent event) {
+        synchronized (lock) {
+            long next = sequence + 1;
+            String data;
+            try {
+                data = objectMapper.writeValueAsString(EmployeeChange.of(next, event));
+            } catch (JsonProcessingException e) {
+                LOGGER.error("Failed to serialize employee change {}: {}", next, e.getMessage());
+                return;
+            }
+            // The change is serialized once here, then sent as is to every subscriber
+            Change change = new Change(next, event.getType().name().toLowerCase(), data);
+            sequence = next;
+            replayBuffer.addLast(change);
+            if (replayBuffer.size() > replaySize) {
+                replayBuffer.removeFirst();
+            }
+            // Scheduled under the lock, so deliveries run in sequence order
+            dispatch(() -> publish(change));
+        }
+    }
+
+    /**
+     * Sends a comment to every subscriber, so idle connections are kept open and closed ones are detected.
+     */
+    @Scheduled(fixedDelayString = "${app.changes.heartbeat-interval-ms:15000}",
+               initialDelayString = "${app.changes.heartbeat-interval-ms:15000}")
+    public void heartbeat() {
+        dispatch(() -> new ArrayList<>(subscribers)
+                .forEach(subscriber -> send(subscriber, SseEmitter.event().comment("heartbeat"))));
+    }
+
+    /**
+     * Closes the subscriptions, dropping their pending events, then stops the dispatcher and the senders.
+     */
+    @PreDestroy
+    public void shutdown() {
+        dispatch(() -> {
+            new ArrayList<>(subscribers).forEach(subscriber -> close(subscriber, null));
+            senders.shutdown();
+        });
+        dispatcher.shutdown();
+    }
+
+    /**
+     * Waits until the changes and subscriptions scheduled so far have been dispatched and sent.
+     *
+     * @throws Exception If the dispatcher fails, or the events are not sent in time.
+     */
+    void awaitDispatch() throws Exception {
+        dispatcher.submit(() -> { }).get(10, TimeUnit.SECONDS);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (activeSenders.get() > 0) {
+            if (System.nanoTime() > deadline) {
+                throw new TimeoutException("The change feed events were not sent in time");
+            }
+            Thread.sleep(1);
+        }
+    }
+
+    /**
+     * Schedules a task on the dispatcher thread; tasks arriving after shutdown are dropped.
+     */
+    private void dispatch(Runnable task) {
+        try {
+            dispatcher.execute(task);
+        } catch (RejectedExecutionException e) {
+            LOGGER.debug("Change feed is shut down, dropping task.");
+        }
+    }
+
+    /**
+     * Creates the emitter of a new subscription.
+     *
+     * @param timeout The time after which the subscription is closed, in milliseconds.
+     * @return The emitter.
+     */
+    SseEmitter newEmitter(long timeout) {
+        return new SseEmitter(timeout);
+    }
+
+    /**
+     * Replays the missed changes to a new subscriber, or tells it to reset, then registers it.
+     * Runs on the dispatcher thread.
+     */
+    private void start(Subscriber subscriber, Long lastSequence) {
+        List<Change> missed = new ArrayList<>();
+        long current;
+        boolean resumable;
+        synchronized (lock) {
+            current = sequence;
+            long oldest = replayBuffer.isEmpty() ? current + 1 : replayBuffer.getFirst().sequence;
+            resumable = lastSequence == null || (lastSequence <= current && lastSequence >= oldest - 1);
+            if (lastSequence != null && resumable) {
+                replayBuffer.stream().filter(change -> change.sequence > lastSequence).forEach(missed::add);
+            }
+        }
+        // Changes already scheduled for delivery up to the current sequence are skipped for this subscriber
+        subscriber.lastSent = current;
+        subscribers.add(subscriber);
+        if (!resumable) {
+            LOGGER.info("Change feed subscriber at sequence {} cannot resume, resetting to {}.", lastSequence, current);
+            send(subscriber, SseEmitter.event().id(Long.toString(current)).name(RESET_EVENT).data(""));
+        }
+        for (Change change : missed) {
+            send(subscriber, change.toEvent());
+        }
+    }
+
+    /**
+     * Sends a change to every subscriber which has not received it yet. Runs on the dispatcher thread.
+     */
+    private void publish(Change change) {
+        for (Subscriber subscriber : new ArrayList<>(subscribers)) {
+            if (change.sequence > subscriber.lastSent) {
+                subscriber.lastSent = change.sequence;
+                send(subscriber, change.toEvent());
+            }
+        }
+    }
+
+    /**
+     * Queues an event for a subscriber, resetting the subscriber if its buffer is full.
+     * Runs on the dispatcher thread, which never writes to a connection itself.
+     */
+    private void send(Subscriber subscriber, SseEmitter.SseEventBuilder event) {
+        boolean full;
+        boolean start = false;
+        synchronized (subscriber) {
+            if (subscriber.closing) {
+                return;
+            }
+            full = subscriber.pending.size() >= subscriberBufferSize;
+            if (!full) {
+                subscriber.pending.addLast(event);
+                start = !subscriber.sending;
+                subscriber.sending = true;
+            }
+        }
+        if (full) {
+            // The client reloads the list, then resumes after the last change it was meant to receive
+            LOGGER.info("Change feed subscriber fell {} events behind at sequence {}, resetting it.",
+                    subscriberBufferSize, subscriber.lastSent);
+            close(subscriber, SseEmitter.event().id(Long.toString(subscriber.lastSent)).name(RESET_EVENT).data(""));
+        } else if (start) {
+            startSending(subscriber);
+        }
+    }
+
+    /**
+     * Unregisters a subscriber and closes its subscription once the last event, if any, is sent instead of
+     * its pending ones. Runs on the dispatcher thread.
+     */
+    private void close(Subscriber subscriber, SseEmitter.SseEventBuilder lastEvent) {
+        remove(subscriber);
+        boolean start;
+        synchronized (subscriber) {
+            if (subscriber.closing) {
+                return;
+            }
+            subscriber.closing = true;
+            subscriber.pending.clear();
+            if (lastEvent != null) {
+                subscriber.pending.addLast(lastEvent);
+            }
+            start = !subscriber.sending;
+            subscriber.sending = true;
+        }
+        if (start) {
+            startSending(subscriber);
+        }
+    }
+
+    /**
+     * Hands the pending events of a subscriber to a sender thread.
+     */
+    private void startSending(Subscriber subscriber) {
+        activeSenders.incrementAndGet();
+        try {
+            senders.execute(() -> {
+                try {
+                    drain(subscriber);
+                } finally {
+                    activeSenders.decrementAndGet();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            activeSenders.decrementAndGet();
+            LOGGER.debug("Change feed is shut down, dropping the pending events.");
+        }
+    }
+
+    /**
+     * Writes the pending events of a subscriber until there are none left, then completes the subscription
+     * if it is closing. Runs on a sender thread; a lost connection closes the subscription.
+     */
+    private void drain(Subscriber subscriber) {
+        while (true) {
+            SseEmitter.SseEventBuilder event;
+            boolean complete;
+            synchronized (subscriber) {
+                event = subscriber.pending.pollFirst();
+                complete = event == null && subscriber.closing;
+                if (event == null) {
+                    subscriber.sending = false;
+                }
+            }
+            if (event == null) {
+                if (complete) {
+                    subscriber.emitter.complete();
+                }
+                return;
+            }
+            try {
+                subscriber.emitter.send(event);
+            } catch (IOException | IllegalStateException e) {
+                LOGGER.debug("Closing change feed subscription: {}", e.getMessage());
+                synchronized (subscriber) {
+                    subscriber.closing = true;
+                    subscriber.pending.clear();
+                    subscriber.sending = false;
+                }
+                dispatch(() -> remove(subscriber));
+                subscriber.emitter.completeWithError(e);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Unregisters a subscriber. Runs on the dispatcher thread.
+     */
+    private void remove(Subscriber subscriber) {
+        if (subscribers.remove(subscriber)) {
+            subscriberCount.decrementAndGet();
+        }
+    }
+
+    /**
+     * The class which holds a change serialized for the feed.
+     */
+    private static final class Change {
+
+        private final long sequence;
+
+        private final String name;
+
+        private final String data;
+
+        private Change(long sequence, String name, String data) {
+            this.sequence = sequence;
+            this.name = name;
+            this.data = data;
+        }
+
+        private SseEmitter.SseEventBuilder toEvent() {
+            return SseEmitter.event().id(Long.toString(sequence)).name(name).data(data);
+        }
+    }
+
+    /**
+     * The class which holds a subscription, the sequence of the last change queued for it and its pending events.
+     * The pending events and the flags are guarded by the subscriber itself.
+     */
+    private static final class Subscriber {
+
+        private final SseEmitter emitter;
+
+        /** The sequence of the last change queued for the subscriber, only accessed by the dispatcher thread. */
+        private long lastSent;
+
+        private final ArrayDeque<SseEmitter.SseEventBuilder> pending = new ArrayDeque<>();
+
+        /** Whether a sender thread is writing the pending events. */
+        private boolean sending;
+
+        /** Whether the subscription is completed once its pending events are sent; no event is queued anymore. */
+        private boolean closing;
+
+        private Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+    }
+}
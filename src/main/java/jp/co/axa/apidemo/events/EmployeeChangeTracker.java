@@ -0,0 +1,67 @@
+package jp.co.axa.apidemo.events;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The component which counts the committed changes to the employee table.
+ * The count identifies the version of the whole table, e.g. for the ETag of the employee list.
+ * Changes of other nodes are counted too when the cache invalidations of the nodes are shared.
+ */
+@Component
+public class EmployeeChangeTracker {
+
+    /** The start time, so versions from before a restart are never taken for current ones. */
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+
+    private final AtomicLong changeCount = new AtomicLong();
+
+    /**
+     * Counts a committed employee change.
+     *
+     * @param event The change event.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onEmployeeChange(EmployeeChangeEvent event) {
+        changeCount.incrementAndGet();
+    }
+
+    /**
+     * Counts a change committed by another node of the service, so the versions of the table
+     * known to this node are no longer current.
+     */
+    public void onRemoteChange() {
+        changeCount.incrementAndGet();
+    }
+
+    /**
+     * Gets the number of changes committed since startup.
+     *
+     * @return The number of changes.
+     */
+    public long getChangeCount() {
+        return changeCount.get();
+    }
+
+    /**
+     * Gets the weak ETag of the current version of the table.
+     *
+     * @return The weak ETag.
+     */
+    public String getETag() {
+        return getETag(changeCount.get());
+    }
+
+    /**
+     * Gets the weak ETag of a version of the table. The tag is weak because the version is sent
+     * in several representations (JSON, CBOR or Smile, identity or gzip) which are not byte-for-byte equal.
+     *
+     * @param changeCount The number of changes identifying the version, as returned by getChangeCount.
+     * @return The weak ETag.
+     */
+    public String getETag(long changeCount) {
+        return "W/\"" + epoch + "-" + changeCount + "\"";
+    }
+}
@@ -0,0 +1,108 @@
+package jp.co.axa.apidemo.metrics;
+
+import org.hibernate.EmptyInterceptor;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.hibernate.type.Type;
+import org.springframework.core.task.TaskDecorator;
+
+import java.io.Serializable;
+
+/**
+ * The Hibernate interceptor which counts the SQL statements prepared and the entities loaded by the current thread.
+ * Hibernate's own statistics are global to the session factory, so they cannot tell which request issued a query;
+ * these counters are per thread and are reset at the start of each request by the RequestStatisticsInterceptor.
+ * As a TaskDecorator, it makes tasks run on other threads count towards the counters of the submitting thread.
+ */
+public class HibernateRequestStatistics extends EmptyInterceptor implements StatementInspector, TaskDecorator {
+
+    private static final long serialVersionUID = 1L;
+
+    private final transient ThreadLocal<long[]> counts = ThreadLocal.withInitial(() -> new long[2]);
+
+    /**
+     * Counts a statement about to be prepared.
+     *
+     * @param sql The SQL of the statement.
+     * @return The SQL, unchanged.
+     */
+    @Override
+    public String inspect(String sql) {
+        counts.get()[0]++;
+        return sql;
+    }
+
+    /**
+     * Counts an entity loaded from the database.
+     *
+     * @return false, as the state is not modified.
+     */
+    @Override
+    public boolean onLoad(Object entity, Serializable id, Object[] state, String[] propertyNames, Type[] types) {
+        counts.get()[1]++;
+        return false;
+    }
+
+    /**
+     * Resets the counters of the current thread.
+     * New counters are started, so tasks still holding the previous ones do not count towards the next request.
+     */
+    public void reset() {
+        counts.set(new long[2]);
+    }
+
+    /**
+     * Makes a task count towards the counters of the current thread, wherever it runs.
+     *
+     * @param task The task.
+     * @return The decorated task.
+     */
+    @Override
+    public Runnable decorate(Runnable task) {
+        long[] submitterCounts = counts.get();
+        return () -> {
+            long[] ownCounts = counts.get();
+            counts.set(submitterCounts);
+            try {
+                task.run();
+            } finally {
+                counts.set(ownCounts);
+            }
+        };
+    }
+
+    /**
+     * Gets the counters of the current thread.
+     *
+     * @return The counters.
+     */
+    long[] getCounts() {
+        return counts.get();
+    }
+
+    /**
+     * Makes the current thread use the counters started by another one, e.g. when a request is resumed.
+     *
+     * @param requestCounts The counters.
+     */
+    void setCounts(long[] requestCounts) {
+        counts.set(requestCounts);
+    }
+
+    /**
+     * Gets the number of statements prepared by the current thread since the last reset.
+     *
+     * @return The number of statements.
+     */
+    public long getStatementCount() {
+        return counts.get()[0];
+    }
+
+    /**
+     * Gets the number of entities loaded by the current thread since the last reset.
+     *
+     * @return The number of entity loads.
+     */
+    public long getEntityLoadCount() {
+        return counts.get()[1];
+    }
+}
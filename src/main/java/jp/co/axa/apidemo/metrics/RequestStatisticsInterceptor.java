@@ -0,0 +1,84 @@
+package jp.co.axa.apidemo.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * The MVC interceptor which records, for each request, the number of SQL statements and entity loads
+ * counted by the HibernateRequestStatistics, as "hibernate.request.statements" and "hibernate.request.entity.loads"
+ * tagged with the method and the URI template of the mapping (the same tags as "http.server.requests").
+ * The counters of a request are kept as a request attribute, so an asynchronous request resumed on another
+ * thread records the work of the tasks it submitted through the HibernateRequestStatistics decorator: the
+ * database executor tasks, and the streaming export, as Spring Boot applies the decorator bean to its task executor.
+ */
+public class RequestStatisticsInterceptor implements HandlerInterceptor {
+
+    /** The request attribute holding the counters of the request. */
+    private static final String COUNTS_ATTRIBUTE = RequestStatisticsInterceptor.class.getName() + ".counts";
+
+    private final HibernateRequestStatistics statistics;
+
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * Constructor.
+     *
+     * @param statistics The per-thread Hibernate counters.
+     * @param meterRegistry The registry the summaries are recorded to.
+     */
+    public RequestStatisticsInterceptor(HibernateRequestStatistics statistics, MeterRegistry meterRegistry) {
+        this.statistics = statistics;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Resets the counters before the handler runs, or restores them when an asynchronous request is resumed.
+     *
+     * @return true, so the request proceeds.
+     */
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        Object counts = request.getAttribute(COUNTS_ATTRIBUTE);
+        if (counts instanceof long[]) {
+            statistics.setCounts((long[]) counts);
+        } else {
+            statistics.reset();
+            request.setAttribute(COUNTS_ATTRIBUTE, statistics.getCounts());
+        }
+        return true;
+    }
+
+    /**
+     * Records the counters once the request has completed.
+     */
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        String uri = pattern != null ? pattern.toString() : "UNKNOWN";
+        summary("hibernate.request.statements", "Statements prepared per request", request.getMethod(), uri)
+                .record(statistics.getStatementCount());
+        summary("hibernate.request.entity.loads", "Entities loaded per request", request.getMethod(), uri)
+                .record(statistics.getEntityLoadCount());
+    }
+
+    /**
+     * Gets the summary of a metric for a mapping.
+     *
+     * @param name The name of the metric.
+     * @param description The description of the metric.
+     * @param method The HTTP method.
+     * @param uri The URI template.
+     * @return The registered summary.
+     */
+    private DistributionSummary summary(String name, String description, String method, String uri) {
+        return DistributionSummary.builder(name)
+                .description(description)
+                .tags("method", method, "uri", uri)
+                .register(meterRegistry);
+    }
+}
@@ -1,12 +1,88 @@
 package jp.co.axa.apidemo.repositories;
 
 import jp.co.axa.apidemo.entities.Employee;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
+import java.util.List;
+import java.util.stream.Stream;
+
 /**
  * The interface which provides DAO for the Employee entity.
+ * Filtered searches are built with EmployeeSpecifications; PATCH updates are implemented in EmployeeRepositoryImpl.
  */
 @Repository
-public interface EmployeeRepository extends JpaRepository<Employee, Long> {
+public interface EmployeeRepository extends JpaRepository<Employee, Long>, JpaSpecificationExecutor<Employee>,
+        EmployeeRepositoryCustom {
+
+    /**
+     * Seeks the employees after the specified ID (WHERE id > ? ORDER BY id LIMIT ?).
+     *
+     * @param id The last seen employee ID.
+     * @param pageable The limit of the seek; its page number should always be 0.
+     * @return The employees with an ID greater than the specified one, ordered by ID.
+     */
+    List<Employee> findByIdGreaterThanOrderByIdAsc(Long id, Pageable pageable);
+
+    /**
+     * Finds a page of the employees matching a specification, with its total count.
+     * The IDs of the page are kept in the query cache until the next change of the employee table,
+     * and the employees themselves are read from the entity cache; the count query still runs.
+     *
+     * @param specification The filters of the search.
+     * @param pageable The page number, size and sort order of the results.
+     * @return The page of matching employees.
+     */
+    @Override
+    @QueryHints(@QueryHint(name = "org.hibernate.cacheable", value = "true"))
+    Page<Employee> findAll(Specification<Employee> specification, Pageable pageable);
+
+    /**
+     * Finds all employees. The rows are not put into the second-level entity cache, which is bounded
+     * and would otherwise give up its frequently read employees for the whole table.
+     *
+     * @return The list of all employees.
+     */
+    @Override
+    @QueryHints(@QueryHint(name = "org.hibernate.cacheMode", value = "IGNORE"))
+    List<Employee> findAll();
+
+    /**
+     * Streams the ID, salary and department of all employees ordered by ID, without hydrating entities.
+     * Rows are returned as plain arrays rather than projections, to keep the per-row cost low.
+     * Must be consumed inside a transaction and closed afterwards.
+     *
+     * @return The stream of rows of ID (Long), salary (Integer or null) and department (String or null).
+     */
+    @QueryHints(@QueryHint(name = "org.hibernate.fetchSize", value = "500"))
+    @Query("select e.id, e.salary, e.department from Employee e order by e.id")
+    Stream<Object[]> streamColumns();
+
+    /**
+     * Summarizes the employees of each department in a single GROUP BY department query.
+     *
+     * @return The rows of department (String), number of employees (Long), number of employees with a salary
+     *         (Long), and sum (Long), minimum and maximum (Integer) of the salaries, null if none has one.
+     */
+    @Query("select e.department, count(e), count(e.salary), sum(e.salary), min(e.salary), max(e.salary)"
+            + " from Employee e group by e.department")
+    List<Object[]> summarizeByDepartment();
+
+    /**
+     * Finds the lowest and highest salaries of one department.
+     *
+     * @param department The department, or null for the employees without one.
+     * @return The single row of minimum and maximum salary (Integer), both null if no employee has a salary.
+     */
+    @Query("select min(e.salary), max(e.salary) from Employee e"
+            + " where e.department = :department or (:department is null and e.department is null)")
+    List<Object[]> findSalaryRangeByDepartment(@Param("department") String department);
 }
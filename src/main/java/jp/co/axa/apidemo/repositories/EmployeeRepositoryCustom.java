@@ -0,0 +1,34 @@
+package jp.co.axa.apidemo.repositories;
+
+import jp.co.axa.apidemo.entities.Employee;
+
+import java.util.stream.Stream;
+
+/**
+ * The interface of the Employee DAO operations which are implemented by hand in EmployeeRepositoryImpl.
+ */
+public interface EmployeeRepositoryCustom {
+
+    /**
+     * Changes the supplied fields of an employee and increments its version in a single UPDATE,
+     * without loading it. Unlike a bulk JPQL update, only this employee is evicted from the
+     * second-level entity cache. Must be called inside a transaction.
+     *
+     * @param id The employee ID.
+     * @param version The version the patch is based on; no row is updated if the stored one differs.
+     *                Null to patch whatever version is stored.
+     * @param name The new name, or null to keep it.
+     * @param salary The new salary, or null to keep it.
+     * @param department The new department, or null to keep it.
+     * @return The number of updated rows, 0 or 1.
+     */
+    int patch(Long id, Long version, String name, Integer salary, String department);
+
+    /**
+     * Streams all employees ordered by ID through a forward-only cursor, without putting them into
+     * the second-level entity cache. Must be consumed inside a transaction and closed afterwards.
+     *
+     * @return The stream of all employees.
+     */
+    Stream<Employee> streamAll();
+}
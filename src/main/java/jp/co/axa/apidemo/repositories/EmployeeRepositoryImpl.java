@@ -0,0 +1,105 @@
+package jp.co.axa.apidemo.repositories;
+
+import jp.co.axa.apidemo.entities.Employee;
+import org.hibernate.CacheMode;
+import org.hibernate.Session;
+import org.hibernate.action.spi.AfterTransactionCompletionProcess;
+import org.hibernate.cache.spi.CacheImplementor;
+import org.hibernate.cache.spi.TimestampsCache;
+import org.hibernate.engine.spi.SessionImplementor;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.io.Serializable;
+import java.sql.PreparedStatement;
+import java.sql.Types;
+import java.util.stream.Stream;
+
+/**
+ * The implementation of the Employee DAO operations which Spring Data cannot derive.
+ * Bulk JPQL and native updates make Hibernate evict the whole "employee" region of the second-level cache,
+ * so the single-row update here runs on the JDBC connection of the session and invalidates the caches itself.
+ * The full-table stream sets the cache mode of the session itself, as a query hint only lasts until the
+ * cursor is opened, before its rows are loaded.
+ */
+public class EmployeeRepositoryImpl implements EmployeeRepositoryCustom {
+
+    private static final String PATCH = "update EMPLOYEE set EMPLOYEE_NAME = coalesce(?, EMPLOYEE_NAME),"
+            + " EMPLOYEE_SALARY = coalesce(?, EMPLOYEE_SALARY), DEPARTMENT = coalesce(?, DEPARTMENT),"
+            + " VERSION = VERSION + 1 where ID = ?";
+
+    /** The number of rows fetched at once by the full-table stream. */
+    private static final int STREAM_FETCH_SIZE = 500;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /**
+     * Changes the supplied fields of an employee and increments its version in a single UPDATE.
+     * Pending changes are flushed first and the persistence context is cleared afterwards, like a
+     * bulk update. The employee is evicted from the entity cache at once and again after the
+     * transaction completes, and the cached queries on the employee table are invalidated.
+     *
+     * @param id The employee ID.
+     * @param version The version the patch is based on, or null to patch whatever version is stored.
+     * @param name The new name, or null to keep it.
+     * @param salary The new salary, or null to keep it.
+     * @param department The new department, or null to keep it.
+     * @return The number of updated rows, 0 or 1.
+     */
+    @Override
+    public int patch(Long id, Long version, String name, Integer salary, String department) {
+        SessionImplementor session = entityManager.unwrap(SessionImplementor.class);
+        session.flush();
+        CacheImplementor cache = session.getFactory().getCache();
+        TimestampsCache timestamps = cache.getTimestampsCache();
+        Serializable[] spaces = session.getFactory().getMetamodel().entityPersister(Employee.class).getPropertySpaces();
+        timestamps.preInvalidate(spaces, session);
+
+        int updated = session.doReturningWork(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(
+                    version == null ? PATCH : PATCH + " and VERSION = ?")) {
+                statement.setString(1, name);
+                statement.setObject(2, salary, Types.INTEGER);
+                statement.setString(3, department);
+                statement.setLong(4, id);
+                if (version != null) {
+                    statement.setLong(5, version);
+                }
+                return statement.executeUpdate();
+            }
+        });
+
+        session.clear();
+        cache.evictEntityData(Employee.class, id);
+        // A concurrent load may cache the old state again until the update commits
+        session.getActionQueue().registerProcess((AfterTransactionCompletionProcess) (success, completed) -> {
+            timestamps.invalidate(spaces, completed);
+            cache.evictEntityData(Employee.class, id);
+        });
+        return updated;
+    }
+
+    /**
+     * Streams all employees ordered by ID through a forward-only cursor. The session ignores the
+     * second-level cache until the stream is closed, so the rows do not push the frequently read
+     * employees out of the bounded entity cache.
+     *
+     * @return The stream of all employees.
+     */
+    @Override
+    public Stream<Employee> streamAll() {
+        Session session = entityManager.unwrap(Session.class);
+        CacheMode cacheMode = session.getCacheMode();
+        session.setCacheMode(CacheMode.IGNORE);
+        try {
+            return entityManager.createQuery("select e from Employee e order by e.id", Employee.class)
+                    .setHint("org.hibernate.fetchSize", STREAM_FETCH_SIZE)
+                    .getResultStream()
+                    .onClose(() -> session.setCacheMode(cacheMode));
+        } catch (RuntimeException e) {
+            session.setCacheMode(cacheMode);
+            throw e;
+        }
+    }
+}
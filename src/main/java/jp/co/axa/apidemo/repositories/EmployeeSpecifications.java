@@ -0,0 +1,64 @@
+package jp.co.axa.apidemo.repositories;
+
+import jp.co.axa.apidemo.dto.EmployeeSearchCriteria;
+import jp.co.axa.apidemo.entities.Employee;
+import org.springframework.data.jpa.domain.Specification;
+
+import javax.persistence.criteria.Predicate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The class which builds the query predicates of the employee search.
+ * Only the filters that are set become predicates, so each one can be served by the index of its column
+ * (equality on DEPARTMENT, prefix LIKE on EMPLOYEE_NAME, range on EMPLOYEE_SALARY).
+ */
+public final class EmployeeSpecifications {
+
+    private static final char LIKE_ESCAPE = '\\';
+
+    private EmployeeSpecifications() {
+    }
+
+    /**
+     * Builds the specification matching all the filters of the criteria.
+     *
+     * @param criteria The search criteria.
+     * @return The specification of the search.
+     */
+    public static Specification<Employee> matching(EmployeeSearchCriteria criteria) {
+        return (root, query, builder) -> {
+            List<Predicate> predicates = new ArrayList<>();
+            if (criteria.getDepartment() != null) {
+                predicates.add(builder.equal(root.get("department"), criteria.getDepartment()));
+            }
+            if (criteria.getName() != null) {
+                predicates.add(builder.like(root.get("name"), escapeLike(criteria.getName()) + "%", LIKE_ESCAPE));
+            }
+            if (criteria.getMinSalary() != null) {
+                predicates.add(builder.greaterThanOrEqualTo(root.get("salary"), criteria.getMinSalary()));
+            }
+            if (criteria.getMaxSalary() != null) {
+                predicates.add(builder.lessThanOrEqualTo(root.get("salary"), criteria.getMaxSalary()));
+            }
+            return builder.and(predicates.toArray(new Predicate[0]));
+        };
+    }
+
+    /**
+     * Escapes the LIKE wildcards of a value, so it is matched literally.
+     *
+     * @param value The value to be escaped.
+     * @return The escaped value.
+     */
+    static String escapeLike(String value) {
+        StringBuilder escaped = new StringBuilder(value.length());
+        for (char c : value.toCharArray()) {
+            if (c == '%' || c == '_' || c == LIKE_ESCAPE) {
+                escaped.append(LIKE_ESCAPE);
+            }
+            escaped.append(c);
+        }
+        return escaped.toString();
+    }
+}
@@ -0,0 +1,25 @@
+package jp.co.axa.apidemo.services;
+
+import jp.co.axa.apidemo.dto.DepartmentStatistics;
+
+import java.util.List;
+
+/**
+ * The interface which defines the per-department salary statistics.
+ */
+public interface DepartmentStatisticsService {
+
+    /**
+     * The getDepartmentStatistics service method interface.
+     *
+     * @return The statistics of every department, ordered by department.
+     */
+    public List<DepartmentStatistics> getDepartmentStatistics();
+
+    /**
+     * The rebuild service method interface.
+     *
+     * @return true if the rebuilt statistics differ from the ones kept before.
+     */
+    public boolean rebuild();
+}
@@ -0,0 +1,366 @@
+package jp.co.axa.apidemo.services;
+
+import jp.co.axa.apidemo.dto.DepartmentStatistics;
+import jp.co.axa.apidemo.datasource.ReadWriteRoutingDataSource;
+import jp.co.axa.apidemo.entities.Employee;
+import jp.co.axa.apidemo.events.EmployeeChangeEvent;
+import jp.co.axa.apidemo.repositories.EmployeeRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * The class which provides the Implementation of the DepartmentStatisticsService Interface.
+ * The statistics are kept in memory and updated from the committed EmployeeChangeEvents, so reads cost
+ * O(departments). They are rebuilt from one GROUP BY department query at startup, and periodically
+ * reconciled with the database to repair any drift. Bulk writes and updates whose previous state is unknown
+ * only mark them stale: the next read rebuilds them once, however many such changes were committed meanwhile.
+ * When a removed employee held the minimum or maximum salary of its department, only that department's
+ * range is queried again.
+ */
+@Service
+public class DepartmentStatisticsServiceImpl implements DepartmentStatisticsService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DepartmentStatisticsServiceImpl.class);
+
+    /** The number of times a rebuild is retried when employees change while it queries. */
+    private static final int MAX_REBUILD_ATTEMPTS = 3;
+
+    @Autowired
+    private EmployeeRepository employeeRepository;
+
+    private final Object lock = new Object();
+
+    /** The aggregates keyed by department, guarded by lock. */
+    private Map<String, Aggregate> aggregates = new HashMap<>();
+
+    /** The number of changes applied to the aggregates, guarded by lock. */
+    private long modifications;
+
+    /** Serializes the rebuilds of stale aggregates, so concurrent reads share one. */
+    private final Object rebuildLock = new Object();
+
+    /** Whether changes the aggregates cannot take into account were committed since the last rebuild. */
+    private volatile boolean stale;
+
+    /**
+     * Sets the EmployeeRepository used by the service.
+     *
+     * @param employeeRepository The EmployeeRepository implementation.
+     */
+    public void setEmployeeRepository(EmployeeRepository employeeRepository) {
+        this.employeeRepository = employeeRepository;
+    }
+
+    /**
+     * The getDepartmentStatistics service method implementation.
+     *
+     * @return The statistics of every department, ordered by department.
+     */
+    public List<DepartmentStatistics> getDepartmentStatistics() {
+        if (stale) {
+            synchronized (rebuildLock) {
+                if (stale) {
+                    // Cleared before querying: a change committed meanwhile marks the statistics stale again
+                    stale = false;
+                    rebuild();
+                }
+            }
+        }
+        List<DepartmentStatistics> statistics;
+        synchronized (lock) {
+            statistics = new ArrayList<>(aggregates.size());
+            aggregates.forEach((department, aggregate) -> statistics.add(aggregate.toStatistics(department)));
+        }
+        statistics.sort(Comparator.comparing(DepartmentStatistics::getDepartment,
+                Comparator.nullsFirst(Comparator.naturalOrder())));
+        return statistics;
+    }
+
+    /**
+     * The rebuild service method implementation.
+     * The query runs without holding the lock; if employees change meanwhile it is retried,
+     * so that the changes are not lost when the rebuilt aggregates are swapped in.
+     * It always reads the primary, as a lagging replica would undo the changes already applied.
+     *
+     * @return true if the rebuilt statistics differ from the ones kept before.
+     */
+    public boolean rebuild() {
+        for (int attempt = 1; ; attempt++) {
+            long seenModifications;
+            synchronized (lock) {
+                seenModifications = modifications;
+            }
+            Map<String, Aggregate> rebuilt = new HashMap<>();
+            List<Object[]> summaries =
+                    ReadWriteRoutingDataSource.readFromPrimary(employeeRepository::summarizeByDepartment);
+            for (Object[] summary : summaries) {
+                rebuilt.put((String) summary[0], new Aggregate((Long) summary[1], (Long) summary[2],
+                        summary[3] == null ? 0 : ((Number) summary[3]).longValue(),
+                        (Integer) summary[4], (Integer) summary[5]));
+            }
+            synchronized (lock) {
+                if (modifications == seenModifications || attempt >= MAX_REBUILD_ATTEMPTS) {
+                    boolean changed = !rebuilt.equals(aggregates);
+                    aggregates = rebuilt;
+                    return changed;
+                }
+            }
+        }
+    }
+
+    /**
+     * Builds the statistics once the application has started.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void initialize() {
+        rebuild();
+        LOGGER.info("Department statistics built for {} departments.", getDepartmentStatistics().size());
+    }
+
+    /**
+     * Reconciles the statistics with the database every "app.statistics.reconcile-interval-ms".
+     */
+    @Scheduled(fixedDelayString = "${app.statistics.reconcile-interval-ms:60000}",
+               initialDelayString = "${app.statistics.reconcile-interval-ms:60000}")
+    public void reconcile() {
+        if (rebuild()) {
+            LOGGER.warn("Department statistics drifted from the database and have been rebuilt.");
+        }
+    }
+
+    /**
+     * Applies a committed employee change to the statistics.
+     *
+     * @param event The change event.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onEmployeeChange(EmployeeChangeEvent event) {
+        if (event.getType() == EmployeeChangeEvent.Type.BULK
+                || (event.getType() == EmployeeChangeEvent.Type.UPDATED && event.getPrevious() == null)) {
+            // The counted state of the changed employees is not known, so it cannot be taken out
+            stale = true;
+            return;
+        }
+        Aggregate stale = null;
+        long generation = 0;
+        synchronized (lock) {
+            if (event.getPrevious() != null) {
+                stale = remove(event.getPrevious());
+                generation = stale == null ? 0 : stale.generation;
+            }
+            if (event.getCurrent() != null) {
+                Employee current = event.getCurrent();
+                aggregates.computeIfAbsent(current.getDepartment(), department -> new Aggregate())
+                        .add(current.getSalary());
+            }
+            modifications++;
+        }
+        if (stale != null) {
+            refreshRange(event.getPrevious().getDepartment(), stale, generation);
+        }
+    }
+
+    /**
+     * Removes one employee from the aggregates; must be called while holding the lock.
+     *
+     * @param employee The removed state of the employee.
+     * @return The aggregate whose salary range has to be queried again, or null.
+     */
+    private Aggregate remove(Employee employee) {
+        Aggregate aggregate = aggregates.get(employee.getDepartment());
+        if (aggregate == null || !aggregate.remove(employee.getSalary())) {
+            return null;
+        }
+        if (aggregate.headcount == 0) {
+            aggregates.remove(employee.getDepartment());
+            return null;
+        }
+        return aggregate.rangeStale ? aggregate : null;
+    }
+
+    /**
+     * Queries the salary range of a department whose minimum or maximum has been removed.
+     * The range is read from the primary, so that it reflects the removal. It is only applied if no later
+     * removal has invalidated it again, in which case the refresh following that removal applies its own.
+     *
+     * @param department The department.
+     * @param aggregate The aggregate of the department when the range was invalidated.
+     * @param generation The generation of the aggregate when the range was invalidated.
+     */
+    private void refreshRange(String department, Aggregate aggregate, long generation) {
+        List<Object[]> range = ReadWriteRoutingDataSource.readFromPrimary(
+                () -> employeeRepository.findSalaryRangeByDepartment(department));
+        Object[] row = range.isEmpty() ? new Object[2] : range.get(0);
+        synchronized (lock) {
+            if (aggregates.get(department) == aggregate && aggregate.generation == generation) {
+                aggregate.applyRange((Integer) row[0], (Integer) row[1]);
+            }
+        }
+    }
+
+    /**
+     * The running aggregate of one department: its headcount and the count, sum and range of its salaries.
+     * Removing the minimum or maximum salary leaves the range stale until it is queried again; the last
+     * known range is reported meanwhile, and salaries added meanwhile are merged into the queried range.
+     */
+    static final class Aggregate {
+
+        private long headcount;
+
+        private long salaried;
+
+        private long totalSalary;
+
+        private Integer minSalary;
+
+        private Integer maxSalary;
+
+        /** Whether the range has to be queried again after the removal of its minimum or maximum. */
+        private boolean rangeStale;
+
+        /** The lowest salary added since the range was invalidated, or null. */
+        private Integer addedMin;
+
+        /** The highest salary added since the range was invalidated, or null. */
+        private Integer addedMax;
+
+        /** The number of times the range has been invalidated, so that outdated queries are discarded. */
+        private long generation;
+
+        /**
+         * Constructor of an empty aggregate.
+         */
+        Aggregate() {
+        }
+
+        /**
+         * Constructor of an aggregate summarized by the database.
+         *
+         * @param headcount The number of employees.
+         * @param salaried The number of employees with a salary.
+         * @param totalSalary The sum of the salaries.
+         * @param minSalary The lowest salary, or null.
+         * @param maxSalary The highest salary, or null.
+         */
+        Aggregate(long headcount, long salaried, long totalSalary, Integer minSalary, Integer maxSalary) {
+            this.headcount = headcount;
+            this.salaried = salaried;
+            this.totalSalary = totalSalary;
+            this.minSalary = minSalary;
+            this.maxSalary = maxSalary;
+        }
+
+        /**
+         * Adds one employee.
+         *
+         * @param salary The salary, or null.
+         */
+        void add(Integer salary) {
+            headcount++;
+            if (salary != null) {
+                totalSalary += salary;
+                salaried++;
+                minSalary = min(minSalary, salary);
+                maxSalary = max(maxSalary, salary);
+                if (rangeStale) {
+                    addedMin = min(addedMin, salary);
+                    addedMax = max(addedMax, salary);
+                }
+            }
+        }
+
+        /**
+         * Removes one employee, invalidating the range if the salary was its minimum or maximum.
+         *
+         * @param salary The salary, or null.
+         * @return false if no such employee was counted.
+         */
+        boolean remove(Integer salary) {
+            if (salary != null) {
+                if (salaried == 0) {
+                    return false;
+                }
+                totalSalary -= salary;
+                salaried--;
+                if (salaried == 0) {
+                    minSalary = null;
+                    maxSalary = null;
+                    rangeStale = false;
+                } else if (rangeStale || salary.equals(minSalary) || salary.equals(maxSalary)) {
+                    // A query started before this removal may still count the salary, so a new one is needed
+                    rangeStale = true;
+                    addedMin = null;
+                    addedMax = null;
+                    generation++;
+                }
+            } else if (headcount == salaried) {
+                return false;
+            }
+            headcount--;
+            return true;
+        }
+
+        /**
+         * Merges the queried range with the salaries added since it was invalidated.
+         *
+         * @param queriedMin The lowest salary found by the query, or null.
+         * @param queriedMax The highest salary found by the query, or null.
+         */
+        void applyRange(Integer queriedMin, Integer queriedMax) {
+            minSalary = min(queriedMin, addedMin);
+            maxSalary = max(queriedMax, addedMax);
+            rangeStale = false;
+            addedMin = null;
+            addedMax = null;
+        }
+
+        private static Integer min(Integer a, Integer b) {
+            return a == null ? b : b == null ? a : Integer.valueOf(Math.min(a, b));
+        }
+
+        private static Integer max(Integer a, Integer b) {
+            return a == null ? b : b == null ? a : Integer.valueOf(Math.max(a, b));
+        }
+
+        /**
+         * Creates the statistics of the aggregate.
+         *
+         * @param department The department of the aggregate.
+         * @return The statistics.
+         */
+        DepartmentStatistics toStatistics(String department) {
+            return new DepartmentStatistics(department, headcount, totalSalary,
+                    salaried == 0 ? null : minSalary,
+                    salaried == 0 ? null : maxSalary,
+                    salaried == 0 ? null : (double) totalSalary / salaried);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Aggregate)) {
+                return false;
+            }
+            Aggregate other = (Aggregate) o;
+            return headcount == other.headcount && salaried == other.salaried && totalSalary == other.totalSalary
+                    && Objects.equals(minSalary, other.minSalary) && Objects.equals(maxSalary, other.maxSalary);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(headcount, salaried, totalSalary, minSalary, maxSalary);
+        }
+    }
+}
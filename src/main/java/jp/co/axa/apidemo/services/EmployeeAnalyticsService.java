@@ -0,0 +1,47 @@
+package jp.co.axa.apidemo.services;
+
+import jp.co.axa.apidemo.analytics.EmployeeSnapshot;
+import jp.co.axa.apidemo.dto.EmployeeSalary;
+import jp.co.axa.apidemo.dto.SalaryHistogram;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The interface which defines the analytical queries over the whole workforce.
+ */
+public interface EmployeeAnalyticsService {
+
+    /**
+     * The getSnapshot service method interface.
+     *
+     * @return The up-to-date columnar snapshot of the employees.
+     */
+    public EmployeeSnapshot getSnapshot();
+
+    /**
+     * The getTopSalaries service method interface.
+     *
+     * @param n The maximum number of employees.
+     * @param department The department to be ranked, or null for every department.
+     * @return The employees with the highest salaries, by descending salary.
+     */
+    public List<EmployeeSalary> getTopSalaries(int n, String department);
+
+    /**
+     * The getSalaryPercentiles service method interface.
+     *
+     * @param percentiles The percentiles, each greater than 0 and at most 100.
+     * @param department The department, or null for every department.
+     * @return The salary at each percentile (null if there is no salary), in the order of the percentiles.
+     */
+    public Map<Double, Integer> getSalaryPercentiles(List<Double> percentiles, String department);
+
+    /**
+     * The getSalaryHistogram service method interface.
+     *
+     * @param bucketWidth The salary range of each bucket.
+     * @return The salary histogram of each department.
+     */
+    public SalaryHistogram getSalaryHistogram(int bucketWidth);
+}
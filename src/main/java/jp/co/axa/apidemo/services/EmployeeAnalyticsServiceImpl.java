@@ -0,0 +1,204 @@
+package jp.co.axa.apidemo.services;
+
+import jp.co.axa.apidemo.analytics.EmployeeSnapshot;
+import jp.co.axa.apidemo.datasource.ReadWriteRoutingDataSource;
+import jp.co.axa.apidemo.dto.EmployeeSalary;
+import jp.co.axa.apidemo.dto.SalaryHistogram;
+import jp.co.axa.apidemo.entities.Employee;
+import jp.co.axa.apidemo.events.EmployeeChangeEvent;
+import jp.co.axa.apidemo.repositories.EmployeeRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * The class which provides the Implementation of the EmployeeAnalyticsService Interface.
+ * Queries run over an EmployeeSnapshot. Committed single-employee changes are collected and patched into
+ * the snapshot on the next read; bulk writes, and every "app.analytics.rebuild-interval-ms",
+ * make the next read rebuild it from the database instead.
+ */
+@Service
+public class EmployeeAnalyticsServiceImpl implements EmployeeAnalyticsService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(EmployeeAnalyticsServiceImpl.class);
+
+    @Autowired
+    private EmployeeRepository employeeRepository;
+
+    private TransactionTemplate transactionTemplate;
+
+    /** Serializes the rebuilds and patches of the snapshot. */
+    private final Object refreshLock = new Object();
+
+    /** Guards the pending changes. */
+    private final Object pendingLock = new Object();
+
+    private volatile EmployeeSnapshot snapshot;
+
+    /** Whether the snapshot must be rebuilt from the database. */
+    private volatile boolean stale = true;
+
+    /** Whether changes are waiting to be patched into the snapshot. */
+    private volatile boolean dirty;
+
+    /** The new state of each changed employee by ID (null once deleted), guarded by pendingLock. */
+    private TreeMap<Long, Employee> pending = new TreeMap<>();
+
+    /**
+     * Sets the EmployeeRepository used by the service.
+     *
+     * @param employeeRepository The EmployeeRepository implementation.
+     */
+    public void setEmployeeRepository(EmployeeRepository employeeRepository) {
+        this.employeeRepository = employeeRepository;
+    }
+
+    /**
+     * Sets the transaction manager used to stream the employees when rebuilding.
+     *
+     * @param transactionManager The PlatformTransactionManager instance.
+     */
+    @Autowired
+    public void setTransactionManager(PlatformTransactionManager transactionManager) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+    }
+
+    /**
+     * The getSnapshot service method implementation.
+     *
+     * @return The up-to-date columnar snapshot of the employees.
+     */
+    public EmployeeSnapshot getSnapshot() {
+        EmployeeSnapshot current = snapshot;
+        if (current != null && !stale && !dirty) {
+            return current;
+        }
+        synchronized (refreshLock) {
+            current = snapshot;
+            if (current == null || stale) {
+                // Cleared before loading: changes committed meanwhile are kept pending and patched below
+                stale = false;
+                current = load();
+            }
+            TreeMap<Long, Employee> changes;
+            synchronized (pendingLock) {
+                changes = pending;
+                pending = new TreeMap<>();
+                dirty = false;
+            }
+            if (!changes.isEmpty()) {
+                current = current.patch(changes);
+            }
+            snapshot = current;
+            return current;
+        }
+    }
+
+    /**
+     * The getTopSalaries service method implementation.
+     *
+     * @param n The maximum number of employees.
+     * @param department The department to be ranked, or null for every department.
+     * @return The employees with the highest salaries, by descending salary.
+     */
+    public List<EmployeeSalary> getTopSalaries(int n, String department) {
+        return getSnapshot().topSalaries(n, department);
+    }
+
+    /**
+     * The getSalaryPercentiles service method implementation.
+     *
+     * @param percentiles The percentiles, each greater than 0 and at most 100.
+     * @param department The department, or null for every department.
+     * @return The salary at each percentile (null if there is no salary), in the order of the percentiles.
+     */
+    public Map<Double, Integer> getSalaryPercentiles(List<Double> percentiles, String department) {
+        EmployeeSnapshot current = getSnapshot();
+        Map<Double, Integer> values = new LinkedHashMap<>();
+        for (Double percentile : percentiles) {
+            values.put(percentile, current.salaryPercentile(percentile, department));
+        }
+        return values;
+    }
+
+    /**
+     * The getSalaryHistogram service method implementation.
+     *
+     * @param bucketWidth The salary range of each bucket.
+     * @return The salary histogram of each department.
+     */
+    public SalaryHistogram getSalaryHistogram(int bucketWidth) {
+        return getSnapshot().salaryHistogram(bucketWidth);
+    }
+
+    /**
+     * Builds the snapshot once the application has started, so the first query does not wait for it.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void initialize() {
+        getSnapshot();
+    }
+
+    /**
+     * Makes the next read rebuild the snapshot every "app.analytics.rebuild-interval-ms",
+     * to repair any change missed by the patches.
+     */
+    @Scheduled(fixedDelayString = "${app.analytics.rebuild-interval-ms:600000}",
+               initialDelayString = "${app.analytics.rebuild-interval-ms:600000}")
+    public void expire() {
+        stale = true;
+    }
+
+    /**
+     * Records a committed employee change, to be applied on the next read.
+     *
+     * @param event The change event.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onEmployeeChange(EmployeeChangeEvent event) {
+        if (event.getType() == EmployeeChangeEvent.Type.BULK) {
+            stale = true;
+            return;
+        }
+        Employee changed = event.getCurrent() != null ? event.getCurrent() : event.getPrevious();
+        synchronized (pendingLock) {
+            pending.put(changed.getId(), event.getCurrent());
+            dirty = true;
+        }
+    }
+
+    /**
+     * Loads a new snapshot from the primary database, as the changes applied to the previous snapshot
+     * may not have reached the replicas yet.
+     *
+     * @return The snapshot of all employees.
+     */
+    private EmployeeSnapshot load() {
+        long start = System.nanoTime();
+        EmployeeSnapshot loaded = ReadWriteRoutingDataSource.readFromPrimary(() -> transactionTemplate.execute(status -> {
+            EmployeeSnapshot.Builder builder = EmployeeSnapshot.builder();
+            try (Stream<Object[]> rows = employeeRepository.streamColumns()) {
+                rows.forEach(row -> builder.add((Long) row[0], (Integer) row[1], (String) row[2]));
+            }
+            return builder.build();
+        }));
+        LOGGER.info("Employee snapshot of {} employees built in {} ms.", loaded.size(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        return loaded;
+    }
+}
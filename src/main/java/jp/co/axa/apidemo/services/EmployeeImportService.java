@@ -0,0 +1,21 @@
+package jp.co.axa.apidemo.services;
+
+import jp.co.axa.apidemo.dto.ImportReport;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * The interface which defines the bulk import of Employee entities.
+ */
+public interface EmployeeImportService {
+
+    /**
+     * The importCsv service method interface.
+     *
+     * @param input The CSV content, starting with a header row naming the name, salary and department columns.
+     * @return The report of the import.
+     * @throws IOException If the input cannot be read.
+     */
+    public ImportReport importCsv(InputStream input) throws IOException;
+}
@@ -0,0 +1,349 @@
+package jp.co.axa.apidemo.services;
+
+import jp.co.axa.apidemo.dto.ImportReport;
+import jp.co.axa.apidemo.entities.Employee;
+import jp.co.axa.apidemo.events.EmployeeChangeEvent;
+import jp.co.axa.apidemo.repositories.EmployeeRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The class which provides the Implementation of the EmployeeImportService Interface.
+ * The request thread parses the CSV and hands fixed-size batches to a writer thread through a bounded queue,
+ * so a slow database blocks the parser instead of letting parsed rows pile up in memory.
+ * Each committed batch invalidates the employee caches and is published as a bulk change, so the imported
+ * rows are visible as soon as they are committed instead of at the end of the import.
+ */
+@Service
+public class EmployeeImportServiceImpl implements EmployeeImportService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(EmployeeImportServiceImpl.class);
+
+    /** The marker put into the queue once the whole input has been parsed. */
+    private static final List<Employee> END_OF_INPUT = Collections.emptyList();
+
+    /** The number of written batches between two progress log lines. */
+    private static final int PROGRESS_INTERVAL = 10;
+
+    @Autowired
+    private EmployeeRepository employeeRepository;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    private TransactionTemplate transactionTemplate;
+
+    /** The number of employees written in one transaction. */
+    @Value("${app.import.batch-size:1000}")
+    private int batchSize = 1000;
+
+    /** The number of parsed batches which may wait for the writer. */
+    @Value("${app.import.queue-capacity:4}")
+    private int queueCapacity = 4;
+
+    private final ExecutorService writerExecutor =
+            Executors.newCachedThreadPool(new CustomizableThreadFactory("employee-import-"));
+
+    /**
+     * Sets the EmployeeRepository used by the service.
+     *
+     * @param employeeRepository The EmployeeRepository implementation.
+     */
+    public void setEmployeeRepository(EmployeeRepository employeeRepository) {
+        this.employeeRepository = employeeRepository;
+    }
+
+    /**
+     * Sets the CacheManager whose employee caches are invalidated after each imported batch.
+     *
+     * @param cacheManager The CacheManager instance.
+     */
+    public void setCacheManager(CacheManager cacheManager) {
+        this.cacheManager = cacheManager;
+    }
+
+    /**
+     * Sets the publisher of the change event sent after each imported batch.
+     *
+     * @param eventPublisher The ApplicationEventPublisher instance.
+     */
+    public void setEventPublisher(ApplicationEventPublisher eventPublisher) {
+        this.eventPublisher = eventPublisher;
+    }
+
+    /**
+     * Sets the transaction manager used to commit each batch.
+     *
+     * @param transactionManager The PlatformTransactionManager instance.
+     */
+    @Autowired
+    public void setTransactionManager(PlatformTransactionManager transactionManager) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Sets the number of employees written in one transaction.
+     *
+     * @param batchSize The batch size.
+     */
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * The importCsv service method implementation.
+     *
+     * @param input The CSV content, starting with a header row naming the name, salary and department columns.
+     * @return The report of the import.
+     * @throws IOException If the input cannot be read.
+     */
+    public ImportReport importCsv(InputStream input) throws IOException {
+        ImportReport report = new ImportReport();
+        BlockingQueue<List<Employee>> queue = new ArrayBlockingQueue<>(queueCapacity);
+        Future<?> writer = writerExecutor.submit(() -> {
+            writeBatches(queue, report);
+            return null;
+        });
+        long start = System.nanoTime();
+        try {
+            readBatches(input, queue, writer, report);
+            enqueue(queue, END_OF_INPUT, writer);
+            writer.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Employee import interrupted");
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Employee import writer failed", e.getCause());
+        } finally {
+            writer.cancel(true);
+        }
+        LOGGER.info("Employee import finished in {} ms: {} rows read, {} imported, {} failed.",
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start),
+                report.getRowsRead(), report.getImported(), report.getFailed());
+        return report;
+    }
+
+    /**
+     * Stops the writer threads on shutdown.
+     */
+    @PreDestroy
+    public void shutdown() {
+        writerExecutor.shutdownNow();
+    }
+
+    /**
+     * Parses the CSV input into batches of employees and hands them to the writer.
+     *
+     * @param input The CSV content.
+     * @param queue The queue read by the writer.
+     * @param writer The writer task, checked while the queue is full.
+     * @param report The report of the import.
+     * @throws IOException If the input cannot be read.
+     * @throws InterruptedException If interrupted while waiting for the writer.
+     */
+    private void readBatches(InputStream input, BlockingQueue<List<Employee>> queue, Future<?> writer,
+                             ImportReport report) throws IOException, InterruptedException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+        String header = reader.readLine();
+        if (header == null) {
+            return;
+        }
+        int[] columns = headerColumns(parseCsvLine(header.replace("\uFEFF", "")));
+        List<Employee> batch = new ArrayList<>(batchSize);
+        long lineNumber = 1;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.trim().isEmpty()) {
+                continue;
+            }
+            report.rowRead();
+            try {
+                batch.add(toEmployee(parseCsvLine(line), columns));
+            } catch (IllegalArgumentException e) {
+                report.failed(1, "Line " + lineNumber + ": " + e.getMessage());
+            }
+            if (batch.size() == batchSize) {
+                enqueue(queue, batch, writer);
+                batch = new ArrayList<>(batchSize);
+            }
+        }
+        if (!batch.isEmpty()) {
+            enqueue(queue, batch, writer);
+        }
+    }
+
+    /**
+     * Writes the queued batches, each in its own transaction, until the end of the input.
+     * The caches are invalidated and the bulk change published after each committed batch.
+     *
+     * @param queue The queue filled by the parser.
+     * @param report The report of the import.
+     * @throws InterruptedException If interrupted while waiting for a batch.
+     */
+    private void writeBatches(BlockingQueue<List<Employee>> queue, ImportReport report) throws InterruptedException {
+        int batches = 0;
+        while (true) {
+            List<Employee> batch = queue.take();
+            if (batch == END_OF_INPUT) {
+                return;
+            }
+            boolean committed = false;
+            try {
+                transactionTemplate.execute(status -> employeeRepository.saveAll(batch));
+                report.imported(batch.size());
+                committed = true;
+            } catch (RuntimeException e) {
+                LOGGER.error("Failed to import a batch of {} employees: {}", batch.size(), e.getMessage());
+                report.failed(batch.size(), "Batch of " + batch.size() + " rows: " + e.getMessage());
+            }
+            if (committed) {
+                evictCaches();
+                eventPublisher.publishEvent(EmployeeChangeEvent.bulk());
+            }
+            if (++batches % PROGRESS_INTERVAL == 0) {
+                LOGGER.info("Employee import in progress: {} rows read, {} imported, {} failed.",
+                        report.getRowsRead(), report.getImported(), report.getFailed());
+            }
+        }
+    }
+
+    /**
+     * Puts a batch into the queue, waiting while it is full unless the writer has stopped.
+     *
+     * @param queue The queue read by the writer.
+     * @param batch The batch to be written.
+     * @param writer The writer task.
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    private static void enqueue(BlockingQueue<List<Employee>> queue, List<Employee> batch, Future<?> writer)
+            throws InterruptedException {
+        while (!queue.offer(batch, 100, TimeUnit.MILLISECONDS)) {
+            if (writer.isDone()) {
+                throw new IllegalStateException("Employee import writer stopped unexpectedly");
+            }
+        }
+    }
+
+    /**
+     * Invalidates the employee caches after a batch is committed.
+     */
+    private void evictCaches() {
+        for (String name : new String[] {"employees", "employeePages", "employee"}) {
+            Cache cache = cacheManager.getCache(name);
+            if (cache != null) {
+                cache.clear();
+            }
+        }
+    }
+
+    /**
+     * Finds the positions of the name, salary and department columns in the header row.
+     *
+     * @param header The fields of the header row.
+     * @return The positions of the name, salary and department columns.
+     */
+    static int[] headerColumns(List<String> header) {
+        int[] columns = {-1, -1, -1};
+        for (int i = 0; i < header.size(); i++) {
+            String column = header.get(i);
+            if (columns[0] < 0 && column.equalsIgnoreCase("name")) {
+                columns[0] = i;
+            } else if (columns[1] < 0 && column.equalsIgnoreCase("salary")) {
+                columns[1] = i;
+            } else if (columns[2] < 0 && column.equalsIgnoreCase("department")) {
+                columns[2] = i;
+            }
+        }
+        if (columns[0] < 0 || columns[1] < 0 || columns[2] < 0) {
+            throw new IllegalArgumentException("CSV header must contain the name, salary and department columns");
+        }
+        return columns;
+    }
+
+    /**
+     * Converts the fields of a CSV row into a new employee.
+     *
+     * @param fields The fields of the row.
+     * @param columns The positions of the name, salary and department columns.
+     * @return The new employee.
+     */
+    static Employee toEmployee(List<String> fields, int[] columns) {
+        for (int column : columns) {
+            if (column >= fields.size()) {
+                throw new IllegalArgumentException("Expected at least " + (column + 1) + " fields but got "
+                        + fields.size());
+            }
+        }
+        String salary = fields.get(columns[1]);
+        return new Employee(fields.get(columns[0]), salary.isEmpty() ? null : Integer.valueOf(salary),
+                fields.get(columns[2]));
+    }
+
+    /**
+     * Splits one CSV line into its fields (RFC 4180 quoting, without line breaks inside quoted fields).
+     *
+     * @param line The CSV line.
+     * @return The trimmed fields of the line.
+     */
+    static List<String> parseCsvLine(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c != '"') {
+                    field.append(c);
+                } else if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString().trim());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("Unterminated quoted field");
+        }
+        fields.add(field.toString().trim());
+        return fields;
+    }
+}
@@ -1,10 +1,21 @@
 package jp.co.axa.apidemo.services;
 
+import jp.co.axa.apidemo.dto.EmployeePage;
+import jp.co.axa.apidemo.dto.EmployeePatch;
+import jp.co.axa.apidemo.dto.EmployeeSearchCriteria;
 import jp.co.axa.apidemo.entities.Employee;
 import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.CachePut;
 import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.annotation.Caching;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 /**
  * The interface which defines the operations on Employee entities.
@@ -19,36 +30,128 @@ public interface EmployeeService {
     @Cacheable(value = "employees")
     public List<Employee> retrieveEmployees();
 
+    /**
+     * The retrieveEmployeePage service method interface.
+     *
+     * @param afterId The last seen employee ID, or 0 for the first page.
+     * @param size The maximum number of employees in the page.
+     * @return The page of employees following the specified ID.
+     */
+    @Cacheable(value = "employeePages", key = "#afterId + ':' + #size")
+    public EmployeePage retrieveEmployeePage(Long afterId, int size);
+
+    /**
+     * The exportEmployees service method interface.
+     *
+     * @param consumer The consumer receiving every employee, one at a time, in ID order.
+     */
+    public void exportEmployees(Consumer<Employee> consumer);
+
     /**
      * The getEmployee service method interface.
      * 
      * @param employeeId The ID of the employee to be retrieved.
      * @return The employee information with the specified ID.
      */
-    @Cacheable(value = "employee", key = "#employeeId")
+    @Cacheable(value = "employee", key = "#employeeId", unless = "#result == null")
     public Employee getEmployee(Long employeeId);
 
+    /**
+     * The getEmployees service method interface.
+     * 
+     * @param employeeIds The IDs of the employees to be retrieved.
+     * @return The existing employees with the specified IDs, in the order of the IDs.
+     */
+    public List<Employee> getEmployees(Collection<Long> employeeIds);
+
+    /**
+     * The searchEmployees service method interface.
+     *
+     * @param criteria The filters of the search; filters left null are not applied.
+     * @param pageable The page number, size and sort order of the results.
+     * @return The page of matching employees.
+     */
+    public Page<Employee> searchEmployees(EmployeeSearchCriteria criteria, Pageable pageable);
+
     /**
      * The saveEmployee service method interface.
      * 
      * @param employee The employee to be saved.
+     * @return The saved employee, including its generated ID.
+     */
+    @Caching(put = @CachePut(value = "employee", key = "#result.id"),
+             evict = @CacheEvict(value = "employees", allEntries = true))
+    public Employee saveEmployee(Employee employee);
+
+    /**
+     * The saveEmployees service method interface.
+     * 
+     * @param employees The new employees to be saved, consumed one at a time.
+     * @return The number of saved employees.
      */
-    @CacheEvict(value = {"employees", "employee"}, allEntries = true)
-    public void saveEmployee(Employee employee);
+    @CacheEvict(value = {"employees", "employeePages"}, allEntries = true)
+    public int saveEmployees(Iterator<Employee> employees);
+
+    /**
+     * The saveEmployeeBehind service method interface.
+     * The write is queued and committed with the other writes of its batch; the caches are
+     * updated once per batch.
+     * 
+     * @param employee The employee to be saved, new or existing.
+     * @return The future of the saved employee, completed once its batch has been committed.
+     * @throws java.util.concurrent.RejectedExecutionException If the write-behind queue is full.
+     * @throws IllegalStateException If write-behind is not enabled.
+     */
+    public CompletableFuture<Employee> saveEmployeeBehind(Employee employee);
+
+    /**
+     * The updateEmployeeBehind service method interface.
+     * Like saveEmployeeBehind, but the write never inserts: an update of an employee deleted meanwhile
+     * completes with null, or fails with an optimistic locking error if it carries a version.
+     * 
+     * @param employee The updated employee information, including its ID.
+     * @return The future of the updated employee, completed once its batch has been committed.
+     * @throws java.util.concurrent.RejectedExecutionException If the write-behind queue is full.
+     * @throws IllegalStateException If write-behind is not enabled.
+     */
+    public CompletableFuture<Employee> updateEmployeeBehind(Employee employee);
+
+    /**
+     * Checks whether single-employee writes may go through the write-behind queue.
+     * 
+     * @return True if "app.write-behind.enabled" is set.
+     */
+    public boolean isWriteBehindEnabled();
 
     /**
      * The deleteEmployee service method interface.
      * 
      * @param employeeId The ID of the employee to be deleted.
      */
-    @CacheEvict(value = {"employees", "employee"}, allEntries = true)
+    @Caching(evict = {@CacheEvict(value = "employee", key = "#employeeId"),
+                      @CacheEvict(value = "employees", allEntries = true)})
     public void deleteEmployee(Long employeeId);
 
     /**
      * The updateEmployee service method interface.
      * 
      * @param employee The updated employee information.
+     * @return The updated employee, or null if there is no employee with the ID.
+     * @throws org.springframework.orm.ObjectOptimisticLockingFailureException If the update carries a version
+     *         and the employee has been changed or deleted since.
+     */
+    @Caching(put = @CachePut(value = "employee", key = "#result.id", unless = "#result == null"),
+             evict = @CacheEvict(value = "employees", allEntries = true))
+    public Employee updateEmployee(Employee employee);
+
+    /**
+     * The patchEmployee service method interface.
+     * 
+     * @param employeeId The ID of the employee to be changed.
+     * @param patch The fields to be changed.
+     * @return The changed employee, or null if there is no employee with the ID.
      */
-    @CacheEvict(value = {"employees", "employee"}, allEntries = true)
-    public void updateEmployee(Employee employee);
+    @Caching(put = @CachePut(value = "employee", key = "#employeeId", unless = "#result == null"),
+             evict = @CacheEvict(value = "employees", allEntries = true))
+    public Employee patchEmployee(Long employeeId, EmployeePatch patch);
 }
\ No newline at end of file
@@ -1,24 +1,99 @@
 package jp.co.axa.apidemo.services;
 
+import jp.co.axa.apidemo.cache.EmployeePageCache;
+import jp.co.axa.apidemo.cache.SingleFlight;
+import jp.co.axa.apidemo.concurrency.WriteBehindQueue;
+import jp.co.axa.apidemo.dto.EmployeePage;
+import jp.co.axa.apidemo.dto.EmployeePatch;
+import jp.co.axa.apidemo.dto.EmployeeSearchCriteria;
+import jp.co.axa.apidemo.dto.EmployeeWrite;
 import jp.co.axa.apidemo.entities.Employee;
+import jp.co.axa.apidemo.events.EmployeeChangeEvent;
 import jp.co.axa.apidemo.repositories.EmployeeRepository;
+import jp.co.axa.apidemo.repositories.EmployeeSpecifications;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.CachePut;
 import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.annotation.Caching;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 /**
  * The class which provides the Implementation of the EmployeeService Interface.
+ * The read methods run in read-only transactions: Hibernate skips dirty checking and flushes for them,
+ * and with "app.datasource.routing.enabled" they are served by a replica. The caches they fill after a write
+ * never hold the state of a lagging replica, as reads go to the primary during the lag window of each write.
  */
 @Service
 public class EmployeeServiceImpl implements EmployeeService{
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(EmployeeServiceImpl.class);
+
+    /** The maximum number of IDs bound to one IN query, to stay within database parameter limits. */
+    public static final int FIND_BY_IDS_CHUNK_SIZE = 500;
+
     @Autowired
     private EmployeeRepository employeeRepository;
 
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    private EmployeePageCache employeePageCache;
+
+    @Autowired
+    private SingleFlight<Long, Employee> employeeSingleFlight;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    /** The queue of the write-behind writes, only defined when write-behind is enabled. */
+    @Autowired(required = false)
+    private WriteBehindQueue<EmployeeWrite, Employee> employeeWriteBehindQueue;
+
+    private TransactionTemplate transactionTemplate;
+
+    /** The number of rows after which a bulk save flushes and clears the persistence context. */
+    @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:50}")
+    private int batchSize = 50;
+
     /**
      * Sets the EmployeeRepository used by the service.
      * 
@@ -28,37 +103,286 @@ public class EmployeeServiceImpl implements EmployeeService{
         this.employeeRepository = employeeRepository;
     }
 
+    /**
+     * Sets the EmployeePageCache used by the service.
+     * 
+     * @param employeePageCache The EmployeePageCache instance.
+     */
+    public void setEmployeePageCache(EmployeePageCache employeePageCache) {
+        this.employeePageCache = employeePageCache;
+    }
+
+    /**
+     * Sets the SingleFlight loader used on "employee" cache misses.
+     * 
+     * @param employeeSingleFlight The SingleFlight instance.
+     */
+    public void setEmployeeSingleFlight(SingleFlight<Long, Employee> employeeSingleFlight) {
+        this.employeeSingleFlight = employeeSingleFlight;
+    }
+
+    /**
+     * Sets the CacheManager used for multi-key cache lookups.
+     * 
+     * @param cacheManager The CacheManager instance.
+     */
+    public void setCacheManager(CacheManager cacheManager) {
+        this.cacheManager = cacheManager;
+    }
+
+    /**
+     * Sets the publisher of the EmployeeChangeEvents sent after each write.
+     * 
+     * @param eventPublisher The ApplicationEventPublisher instance.
+     */
+    public void setEventPublisher(ApplicationEventPublisher eventPublisher) {
+        this.eventPublisher = eventPublisher;
+    }
+
+    /**
+     * Sets the queue of the write-behind writes.
+     * 
+     * @param employeeWriteBehindQueue The WriteBehindQueue instance, or null to disable write-behind.
+     */
+    public void setEmployeeWriteBehindQueue(WriteBehindQueue<EmployeeWrite, Employee> employeeWriteBehindQueue) {
+        this.employeeWriteBehindQueue = employeeWriteBehindQueue;
+    }
+
+    /**
+     * Sets the transaction manager used to commit each write-behind batch.
+     * 
+     * @param transactionManager The PlatformTransactionManager instance.
+     */
+    @Autowired
+    public void setTransactionManager(PlatformTransactionManager transactionManager) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Starts writing the write-behind batches, if write-behind is enabled.
+     */
+    @PostConstruct
+    public void startWriteBehind() {
+        if (employeeWriteBehindQueue != null) {
+            employeeWriteBehindQueue.start(this::writeBehind);
+        }
+    }
+
+    /**
+     * Writes the queued write-behind writes on shutdown, while the database is still available.
+     * 
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    @PreDestroy
+    public void stopWriteBehind() throws InterruptedException {
+        if (employeeWriteBehindQueue != null) {
+            employeeWriteBehindQueue.shutdown();
+        }
+    }
+
    /**
     * The retrieveEmployees service method implementation. 
     *
     * @return The list of all employees. 
     */
     @Cacheable("employees")
+    @Transactional(readOnly = true)
     public List<Employee> retrieveEmployees() {
         List<Employee> employees = employeeRepository.findAll();
         return employees;
     }
 
+    /**
+     * The retrieveEmployeePage service method implementation.
+     * One extra row is fetched to find out whether a next page exists.
+     *
+     * @param afterId The last seen employee ID, or 0 for the first page.
+     * @param size The maximum number of employees in the page.
+     * @return The page of employees following the specified ID.
+     */
+    @Cacheable(value = "employeePages", key = "#afterId + ':' + #size")
+    @Transactional(readOnly = true)
+    public EmployeePage retrieveEmployeePage(Long afterId, int size) {
+        List<Employee> employees =
+                employeeRepository.findByIdGreaterThanOrderByIdAsc(afterId, PageRequest.of(0, size + 1));
+        if (employees.size() <= size) {
+            return new EmployeePage(employees, null);
+        }
+        List<Employee> page = new ArrayList<>(employees.subList(0, size));
+        return new EmployeePage(page, EmployeePage.encodeCursor(page.get(size - 1).getId()));
+    }
+
+    /**
+     * The exportEmployees service method implementation.
+     * Each employee is detached once consumed so the persistence context stays empty.
+     *
+     * @param consumer The consumer receiving every employee, one at a time, in ID order.
+     */
+    @Transactional(readOnly = true)
+    public void exportEmployees(Consumer<Employee> consumer) {
+        try (Stream<Employee> employees = employeeRepository.streamAll()) {
+            employees.forEach(employee -> {
+                consumer.accept(employee);
+                entityManager.detach(employee);
+            });
+        }
+    }
+
     /**
      * The getEmployee service method implementation.
+     * Concurrent misses for the same ID share a single database load. The shared result is a detached
+     * copy, so the entity managed by the loading session is never handed to other threads or cached.
      * 
      * @param employeeId The ID of the employee to be retrieved.
-     * @return The employee information with the specified ID.
+     * @return The employee information with the specified ID, or null if it does not exist.
      */
-    @Cacheable("employee")
+    @Cacheable(value = "employee", unless = "#result == null")
+    @Transactional(readOnly = true)
     public Employee getEmployee(Long employeeId) {
-        Optional<Employee> optEmp = employeeRepository.findById(employeeId);
-        return optEmp.get();
+        return employeeSingleFlight.load(employeeId, () -> {
+            Optional<Employee> optEmp = employeeRepository.findById(employeeId);
+            return optEmp.map(EmployeeServiceImpl::copyOf).orElse(null);
+        });
+    }
+
+    /**
+     * The getEmployees service method implementation.
+     * The "employee" cache is checked for every ID first, then the missing ones are fetched
+     * with chunked IN queries and detached copies of them are put into the cache.
+     * 
+     * @param employeeIds The IDs of the employees to be retrieved.
+     * @return The existing employees with the specified IDs, in the order of the IDs.
+     */
+    @Transactional(readOnly = true)
+    public List<Employee> getEmployees(Collection<Long> employeeIds) {
+        Cache cache = cacheManager.getCache("employee");
+        Map<Long, Employee> found = new HashMap<>();
+        List<Long> missingIds = new ArrayList<>();
+        for (Long employeeId : new LinkedHashSet<>(employeeIds)) {
+            Cache.ValueWrapper cached = cache.get(employeeId);
+            if (cached == null) {
+                missingIds.add(employeeId);
+            } else if (cached.get() != null) {
+                found.put(employeeId, (Employee) cached.get());
+            }
+        }
+        for (int from = 0; from < missingIds.size(); from += FIND_BY_IDS_CHUNK_SIZE) {
+            List<Long> chunk = missingIds.subList(from, Math.min(from + FIND_BY_IDS_CHUNK_SIZE, missingIds.size()));
+            for (Employee employee : employeeRepository.findAllById(chunk)) {
+                // The cache is shared between threads, so it never holds the entity managed by this session
+                Employee copy = copyOf(employee);
+                cache.put(copy.getId(), copy);
+                found.put(copy.getId(), copy);
+            }
+        }
+        List<Employee> employees = new ArrayList<>(found.size());
+        for (Long employeeId : new LinkedHashSet<>(employeeIds)) {
+            Employee employee = found.get(employeeId);
+            if (employee != null) {
+                employees.add(employee);
+            }
+        }
+        return employees;
+    }
+
+    /**
+     * The searchEmployees service method implementation.
+     * Results are not kept in the Spring caches, as the filter combinations are unbounded;
+     * the bounded Hibernate query cache keeps the recent ones instead.
+     *
+     * @param criteria The filters of the search; filters left null are not applied.
+     * @param pageable The page number, size and sort order of the results.
+     * @return The page of matching employees.
+     */
+    @Transactional(readOnly = true)
+    public Page<Employee> searchEmployees(EmployeeSearchCriteria criteria, Pageable pageable) {
+        return employeeRepository.findAll(EmployeeSpecifications.matching(criteria), pageable);
     }
 
     /**
      * The saveEmployee service method implementation.
      * 
      * @param employee The employee to be saved.
+     * @return The saved employee, including its generated ID.
+     */
+    @Caching(put = @CachePut(value = "employee", key = "#result.id"),
+             evict = @CacheEvict(value = "employees", allEntries = true))
+    @Transactional
+    public Employee saveEmployee(Employee employee){
+        Employee previous = findPrevious(employee.getId());
+        Employee saved = employeeRepository.saveAndFlush(versioned(employee, previous));
+        employeePageCache.evictAffectedPages(saved.getId());
+        eventPublisher.publishEvent(EmployeeChangeEvent.of(previous, saved));
+        return saved;
+    }
+
+    /**
+     * The saveEmployees service method implementation.
+     * Employees are persisted in one transaction and flushed as JDBC batches of batchSize rows,
+     * clearing the persistence context after each batch so memory use stays flat.
+     * 
+     * @param employees The new employees to be saved, consumed one at a time.
+     * @return The number of saved employees.
+     */
+    @Transactional
+    @CacheEvict(value = {"employees", "employeePages"}, allEntries = true)
+    public int saveEmployees(Iterator<Employee> employees) {
+        int count = 0;
+        while (employees.hasNext()) {
+            Employee employee = employees.next();
+            employee.setId(null);
+            entityManager.persist(employee);
+            if (++count % batchSize == 0) {
+                entityManager.flush();
+                entityManager.clear();
+            }
+        }
+        entityManager.flush();
+        entityManager.clear();
+        eventPublisher.publishEvent(EmployeeChangeEvent.bulk());
+        return count;
+    }
+
+    /**
+     * The saveEmployeeBehind service method implementation.
+     * 
+     * @param employee The employee to be saved, new or existing.
+     * @return The future of the saved employee, completed once its batch has been committed.
+     */
+    public CompletableFuture<Employee> saveEmployeeBehind(Employee employee) {
+        return submit(new EmployeeWrite(employee, false));
+    }
+
+    /**
+     * The updateEmployeeBehind service method implementation.
+     * 
+     * @param employee The updated employee information, including its ID.
+     * @return The future of the updated employee, completed with null if the employee no longer exists.
      */
-    @CacheEvict(value = {"employees", "employee"}, allEntries = true)
-    public void saveEmployee(Employee employee){
-        employeeRepository.save(employee);
+    public CompletableFuture<Employee> updateEmployeeBehind(Employee employee) {
+        return submit(new EmployeeWrite(employee, true));
+    }
+
+    /**
+     * Queues a write-behind write.
+     *
+     * @param write The write.
+     * @return The future of the written employee.
+     */
+    private CompletableFuture<Employee> submit(EmployeeWrite write) {
+        if (employeeWriteBehindQueue == null) {
+            throw new IllegalStateException("Write-behind is not enabled");
+        }
+        return employeeWriteBehindQueue.submit(write);
+    }
+
+    /**
+     * The isWriteBehindEnabled service method implementation.
+     * 
+     * @return True if the write-behind queue is defined.
+     */
+    public boolean isWriteBehindEnabled() {
+        return employeeWriteBehindQueue != null;
     }
 
     /**
@@ -66,18 +390,303 @@ public class EmployeeServiceImpl implements EmployeeService{
      * 
      * @param employeeId The ID of the employee to be deleted.
      */
-    @CacheEvict(value = {"employees", "employee"}, allEntries = true)
+    @Caching(evict = {@CacheEvict(value = "employee", key = "#employeeId"),
+                      @CacheEvict(value = "employees", allEntries = true)})
+    @Transactional
     public void deleteEmployee(Long employeeId){
-        employeeRepository.deleteById(employeeId);
+        Employee existing = employeeRepository.findById(employeeId).orElseThrow(() ->
+                new EmptyResultDataAccessException("No employee with ID " + employeeId + " exists", 1));
+        Employee previous = copyOf(existing);
+        employeeRepository.delete(existing);
+        employeePageCache.evictAffectedPages(employeeId);
+        eventPublisher.publishEvent(EmployeeChangeEvent.of(previous, null));
     }
 
     /**
      * The updateEmployee service method implementation.
+     * An update never inserts: if the employee has been deleted since it was checked, the deletion is
+     * a concurrent change, and the update fails as such when it carries a version.
      * 
      * @param employee The updated employee information.
+     * @return The updated employee, or null if there is no employee with the ID.
+     */
+    @Caching(put = @CachePut(value = "employee", key = "#result.id", unless = "#result == null"),
+             evict = @CacheEvict(value = "employees", allEntries = true))
+    @Transactional
+    public Employee updateEmployee(Employee employee) {
+        Employee previous = findPrevious(employee.getId());
+        if (previous == null) {
+            if (employee.getVersion() != null) {
+                throw new ObjectOptimisticLockingFailureException(Employee.class, employee.getId());
+            }
+            return null;
+        }
+        Employee updated = employeeRepository.saveAndFlush(versioned(employee, previous));
+        employeePageCache.evictAffectedPages(updated.getId());
+        eventPublisher.publishEvent(EmployeeChangeEvent.of(previous, updated));
+        return updated;
+    }
+
+    /**
+     * The patchEmployee service method implementation.
+     * The patch is written with a single conditional UPDATE, whose row count decides the outcome.
+     * When the employee is cached, the UPDATE is first conditioned on the cached version, so the new state
+     * is derived from the cached one without any read. Otherwise the row is updated as stored and read
+     * back once; its previous state is then unknown, and the change event says so.
+     * 
+     * @param employeeId The ID of the employee to be changed.
+     * @param patch The fields to be changed.
+     * @return The changed employee, or null if there is no employee with the ID.
+     */
+    @Caching(put = @CachePut(value = "employee", key = "#employeeId", unless = "#result == null"),
+             evict = @CacheEvict(value = "employees", allEntries = true))
+    @Transactional
+    public Employee patchEmployee(Long employeeId, EmployeePatch patch) {
+        Employee previous = findCached(employeeId);
+        if (previous != null && patch.getVersion() != null && !patch.getVersion().equals(previous.getVersion())) {
+            previous = null;
+        }
+        Employee patched;
+        if (previous != null && patchIfVersion(employeeId, previous.getVersion(), patch) == 1) {
+            patched = copyOf(previous);
+            patch.applyTo(patched);
+            patched.setVersion(previous.getVersion() + 1);
+        } else {
+            // The cached state is missing or outdated: a versioned patch was already tried against it
+            if ((previous == null || patch.getVersion() == null)
+                    && patchIfVersion(employeeId, patch.getVersion(), patch) == 1) {
+                patched = employeeRepository.findById(employeeId).map(EmployeeServiceImpl::copyOf)
+                        .orElseThrow(IllegalStateException::new);
+                previous = null;
+            } else if (patch.getVersion() != null && employeeRepository.existsById(employeeId)) {
+                throw new ObjectOptimisticLockingFailureException(Employee.class, employeeId);
+            } else {
+                return null;
+            }
+        }
+        employeePageCache.evictAffectedPages(employeeId);
+        eventPublisher.publishEvent(previous == null ? EmployeeChangeEvent.updated(patched)
+                : EmployeeChangeEvent.of(previous, patched));
+        return patched;
+    }
+
+    /**
+     * Writes a batch of the write-behind queue in one transaction, then updates the caches once.
+     * If the transaction fails, its writes are retried one transaction each, so only the failing ones fail.
+     *
+     * @param writes The queued writes, in arrival order.
+     */
+    private void writeBehind(List<WriteBehindQueue.Write<EmployeeWrite, Employee>> writes) {
+        Map<WriteBehindQueue.Write<EmployeeWrite, Employee>, Employee> written;
+        List<WriteBehindQueue.Write<EmployeeWrite, Employee>> conflicts = new ArrayList<>();
+        List<WriteBehindQueue.Write<EmployeeWrite, Employee>> deferred = new ArrayList<>();
+        List<WriteBehindQueue.Write<EmployeeWrite, Employee>> missing = new ArrayList<>();
+        try {
+            written = transactionTemplate.execute(status -> {
+                conflicts.clear();
+                deferred.clear();
+                missing.clear();
+                return applyWrites(writes, conflicts, deferred, missing);
+            });
+        } catch (RuntimeException e) {
+            if (writes.size() == 1) {
+                throw e;
+            }
+            LOGGER.warn("Write-behind batch of {} writes failed, retrying them one by one: {}",
+                    writes.size(), e.getMessage());
+            writeOneByOne(writes);
+            return;
+        }
+        Cache cache = cacheManager.getCache("employee");
+        for (Employee employee : new LinkedHashSet<>(written.values())) {
+            cache.put(employee.getId(), employee);
+            employeePageCache.evictAffectedPages(employee.getId());
+        }
+        cacheManager.getCache("employees").clear();
+        written.forEach(WriteBehindQueue.Write::complete);
+        for (WriteBehindQueue.Write<EmployeeWrite, Employee> conflict : conflicts) {
+            conflict.fail(new ObjectOptimisticLockingFailureException(Employee.class,
+                    conflict.getItem().getEmployee().getId()));
+        }
+        for (WriteBehindQueue.Write<EmployeeWrite, Employee> write : missing) {
+            write.complete(null);
+        }
+        writeOneByOne(deferred);
+    }
+
+    /**
+     * Writes each pending write in its own transaction, in order, failing only the writes which fail.
+     *
+     * @param writes The writes, some of which may already be done.
+     */
+    private void writeOneByOne(List<WriteBehindQueue.Write<EmployeeWrite, Employee>> writes) {
+        for (WriteBehindQueue.Write<EmployeeWrite, Employee> write : writes) {
+            if (!write.isDone()) {
+                try {
+                    writeBehind(Collections.singletonList(write));
+                } catch (RuntimeException failure) {
+                    write.fail(failure);
+                }
+            }
+        }
+    }
+
+    /**
+     * Applies a batch of writes in the current transaction. The stored employees are read with chunked
+     * IN queries, and repeated writes of an employee are coalesced into one UPDATE, the last one winning.
+     * No write is failed here, as the transaction may still roll back: a write carrying a version which
+     * is not the stored one is only returned as a conflict. A write carrying a version of an employee
+     * already changed by an earlier write of the batch is deferred, with the later writes of that employee,
+     * until the batch commits; whether the batch changed its version is then known. A save of an employee
+     * which does not exist inserts it, while an update of one is returned as missing, or as a conflict
+     * when it carries a version.
+     *
+     * @param writes The queued writes, in arrival order.
+     * @param conflicts The list receiving the writes to fail once the transaction commits.
+     * @param deferred The list receiving the writes to retry one by one once the transaction commits.
+     * @param missing The list receiving the updates of missing employees, completed without a result.
+     * @return The detached saved employee of each applied write.
+     */
+    private Map<WriteBehindQueue.Write<EmployeeWrite, Employee>, Employee> applyWrites(
+            List<WriteBehindQueue.Write<EmployeeWrite, Employee>> writes,
+            List<WriteBehindQueue.Write<EmployeeWrite, Employee>> conflicts,
+            List<WriteBehindQueue.Write<EmployeeWrite, Employee>> deferred,
+            List<WriteBehindQueue.Write<EmployeeWrite, Employee>> missing) {
+        Set<Long> ids = new LinkedHashSet<>();
+        for (WriteBehindQueue.Write<EmployeeWrite, Employee> write : writes) {
+            if (write.getItem().getEmployee().getId() != null) {
+                ids.add(write.getItem().getEmployee().getId());
+            }
+        }
+        List<Long> employeeIds = new ArrayList<>(ids);
+        Map<Long, Employee> stored = new HashMap<>();
+        for (int from = 0; from < employeeIds.size(); from += FIND_BY_IDS_CHUNK_SIZE) {
+            List<Long> chunk = employeeIds.subList(from, Math.min(from + FIND_BY_IDS_CHUNK_SIZE, employeeIds.size()));
+            for (Employee employee : employeeRepository.findAllById(chunk)) {
+                stored.put(employee.getId(), employee);
+            }
+        }
+        Map<Long, Employee> previous = new LinkedHashMap<>();
+        Set<Long> deferredIds = new HashSet<>();
+        List<Employee> inserted = new ArrayList<>();
+        Map<WriteBehindQueue.Write<EmployeeWrite, Employee>, Employee> written = new LinkedHashMap<>();
+        for (WriteBehindQueue.Write<EmployeeWrite, Employee> write : writes) {
+            if (write.isDone()) {
+                continue;
+            }
+            Employee employee = write.getItem().getEmployee();
+            if (deferredIds.contains(employee.getId())) {
+                deferred.add(write);
+                continue;
+            }
+            Employee managed = employee.getId() == null ? null : stored.get(employee.getId());
+            if (managed == null && write.getItem().isUpdate()) {
+                // Deleted since it was checked: a concurrent change, which an update must not undo
+                (employee.getVersion() != null ? conflicts : missing).add(write);
+                continue;
+            }
+            if (managed == null) {
+                Employee saved = employeeRepository.save(versioned(employee, null));
+                inserted.add(saved);
+                written.put(write, saved);
+                continue;
+            }
+            boolean rewritten = previous.containsKey(managed.getId());
+            if (employee.getVersion() != null && rewritten) {
+                deferredIds.add(managed.getId());
+                deferred.add(write);
+                continue;
+            }
+            if (employee.getVersion() != null && !employee.getVersion().equals(managed.getVersion())) {
+                conflicts.add(write);
+                continue;
+            }
+            if (!rewritten) {
+                previous.put(managed.getId(), copyOf(managed));
+            }
+            managed.setName(employee.getName());
+            managed.setSalary(employee.getSalary());
+            managed.setDepartment(employee.getDepartment());
+            written.put(write, managed);
+        }
+        employeeRepository.flush();
+        Map<Long, Employee> copies = new HashMap<>();
+        written.replaceAll((write, employee) -> copies.computeIfAbsent(employee.getId(), id -> copyOf(employee)));
+        for (Employee employee : inserted) {
+            eventPublisher.publishEvent(EmployeeChangeEvent.of(null, copies.get(employee.getId())));
+        }
+        previous.forEach((employeeId, before) ->
+                eventPublisher.publishEvent(EmployeeChangeEvent.of(before, copies.get(employeeId))));
+        return written;
+    }
+
+    /**
+     * Writes a patch with a single UPDATE conditioned on the version.
+     *
+     * @param employeeId The ID of the employee.
+     * @param version The version the patch is based on, or null for any.
+     * @param patch The fields to be changed.
+     * @return The number of updated rows, 0 or 1.
+     */
+    private int patchIfVersion(Long employeeId, Long version, EmployeePatch patch) {
+        return employeeRepository.patch(employeeId, version, patch.getName(), patch.getSalary(), patch.getDepartment());
+    }
+
+    /**
+     * Gets a copy of an employee from the "employee" cache, without reading the database.
+     *
+     * @param employeeId The ID of the employee.
+     * @return The copy of the cached employee, or null if it is not cached.
+     */
+    private Employee findCached(Long employeeId) {
+        Cache.ValueWrapper cached = cacheManager.getCache("employee").get(employeeId);
+        return cached == null || cached.get() == null ? null : copyOf((Employee) cached.get());
+    }
+
+    /**
+     * Reads the stored state of an employee before it is overwritten.
+     * The read happens in the writing transaction, so the following merge does not query it again.
+     *
+     * @param employeeId The ID of the employee, or null for a new one.
+     * @return A detached copy of the stored employee, or null if there is none.
+     */
+    private Employee findPrevious(Long employeeId) {
+        if (employeeId == null) {
+            return null;
+        }
+        return employeeRepository.findById(employeeId).map(EmployeeServiceImpl::copyOf).orElse(null);
+    }
+
+    /**
+     * Prepares the version of an employee before it is saved.
+     * An employee without stored state is inserted as a new one; an employee sent without a version
+     * overwrites the stored state, while a stale version fails the save with an optimistic locking error.
+     * The save is flushed by the caller, so the returned and cached employee carries its new version.
+     *
+     * @param employee The employee to be saved.
+     * @param previous The stored state of the employee, or null if there is none.
+     * @return The employee to be saved.
+     */
+    private static Employee versioned(Employee employee, Employee previous) {
+        if (previous == null) {
+            employee.setId(null);
+            employee.setVersion(null);
+        } else if (employee.getVersion() == null) {
+            employee.setVersion(previous.getVersion());
+        }
+        return employee;
+    }
+
+    /**
+     * Copies an employee, so the copy is not changed when the managed entity is.
+     *
+     * @param employee The employee to be copied.
+     * @return The copy.
      */
-    @CacheEvict(value = {"employees", "employee"}, allEntries = true)
-    public void updateEmployee(Employee employee) {
-        employeeRepository.save(employee);
+    private static Employee copyOf(Employee employee) {
+        Employee copy = new Employee(employee.getName(), employee.getSalary(), employee.getDepartment());
+        copy.setId(employee.getId());
+        copy.setVersion(employee.getVersion());
+        return copy;
     }
 }
\ No newline at end of file
@@ -0,0 +1,120 @@
+package jp.co.axa.apidemo.analytics;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import jp.co.axa.apidemo.dto.EmployeeSalary;
+import jp.co.axa.apidemo.dto.SalaryHistogram;
+import jp.co.axa.apidemo.entities.Employee;
+
+/**
+ * Unit Test Class for EmployeeSnapshot.
+ */
+public class EmployeeSnapshotTest {
+
+    private EmployeeSnapshot snapshot;
+
+    /**
+     * Sets up a snapshot of five employees, one of them without a salary.
+     */
+    @Before
+    public void setUp() {
+        snapshot = EmployeeSnapshot.builder()
+                .add(1L, 300, "IT")
+                .add(2L, 100, "Sales")
+                .add(3L, 500, "IT")
+                .add(4L, null, "IT")
+                .add(5L, 200, "Sales")
+                .build();
+    }
+
+    /**
+     * Tests topSalaries method for every department and for one department.
+     */
+    @Test
+    public void topSalaries() {
+        assertEquals(Arrays.asList(3L, 1L, 5L), ids(snapshot.topSalaries(3, null)));
+        assertEquals(Arrays.asList(5L, 2L), ids(snapshot.topSalaries(10, "Sales")));
+        assertTrue(snapshot.topSalaries(10, "HR").isEmpty());
+    }
+
+    /**
+     * Tests salaryPercentile method (nearest-rank).
+     */
+    @Test
+    public void salaryPercentile() {
+        assertEquals(Integer.valueOf(100), snapshot.salaryPercentile(1, null));
+        assertEquals(Integer.valueOf(200), snapshot.salaryPercentile(50, null));
+        assertEquals(Integer.valueOf(500), snapshot.salaryPercentile(100, null));
+        assertEquals(Integer.valueOf(300), snapshot.salaryPercentile(50, "IT"));
+        assertNull(snapshot.salaryPercentile(50, "HR"));
+    }
+
+    /**
+     * Tests salaryHistogram method.
+     */
+    @Test
+    public void salaryHistogram() {
+        // 1.Invoke the method with buckets of 200
+        SalaryHistogram histogram = snapshot.salaryHistogram(200);
+
+        // 2.Verify the buckets [0,200), [200,400), [400,600)
+        assertEquals(0, histogram.getLowerBound());
+        assertEquals(2, histogram.getDepartments().size());
+        assertEquals("IT", histogram.getDepartments().get(0).getDepartment());
+        assertArrayEquals(new long[] {0, 1, 1}, histogram.getDepartments().get(0).getCounts());
+        assertArrayEquals(new long[] {1, 1, 0}, histogram.getDepartments().get(1).getCounts());
+    }
+
+    /**
+     * Tests salaryHistogram method with too many buckets.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void salaryHistogram_TooManyBuckets() {
+        EmployeeSnapshot.builder().add(1L, 0, "IT").add(2L, Integer.MAX_VALUE, "IT").build().salaryHistogram(1);
+    }
+
+    /**
+     * Tests patch method with an insertion, an update, and a deletion.
+     */
+    @Test
+    public void patch() {
+        // 1.Mock the changes
+        TreeMap<Long, Employee> changes = new TreeMap<>();
+        changes.put(2L, null);
+        changes.put(3L, new Employee("Moved", 50, "HR"));
+        changes.put(6L, new Employee("New", 1000, "Sales"));
+
+        // 2.Invoke the method
+        EmployeeSnapshot patched = snapshot.patch(changes);
+
+        // 3.Verify the patched snapshot, and that the original one is unchanged
+        assertEquals(5, patched.size());
+        assertEquals(Arrays.asList(6L, 1L, 5L, 3L), ids(patched.topSalaries(10, null)));
+        assertEquals(Arrays.asList(3L), ids(patched.topSalaries(10, "HR")));
+        assertEquals(Arrays.asList(1L), ids(patched.topSalaries(10, "IT")));
+        assertEquals(Arrays.asList(3L, 1L, 5L, 2L), ids(snapshot.topSalaries(10, null)));
+    }
+
+    /**
+     * Tests that the builder rejects IDs out of order.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void builder_UnorderedIds() {
+        EmployeeSnapshot.builder().add(2L, 1, "IT").add(1L, 1, "IT");
+    }
+
+    private static List<Long> ids(List<EmployeeSalary> salaries) {
+        return salaries.stream().map(EmployeeSalary::getId).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,106 @@
+package jp.co.axa.apidemo.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Collections;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Unit Test Class for DatagramInvalidationTransport.
+ */
+public class DatagramInvalidationTransportTest {
+
+    private DatagramInvalidationTransport receiver;
+
+    private DatagramInvalidationTransport sender;
+
+    /**
+     * Closes both transports.
+     */
+    @After
+    public void tearDown() {
+        if (sender != null) {
+            sender.close();
+        }
+        if (receiver != null) {
+            receiver.close();
+        }
+    }
+
+    /**
+     * Tests that an invalidation sent to a peer on the loopback interface is received intact.
+     */
+    @Test
+    public void send_DeliversToPeers() throws Exception {
+        // 1.Start a receiver on a free port and a sender listing it as its peer
+        ObjectMapper objectMapper = new ObjectMapper();
+        BlockingQueue<CacheInvalidation> received = new ArrayBlockingQueue<>(1);
+        receiver = new DatagramInvalidationTransport(objectMapper, 0, null, Collections.emptyList(), 0);
+        receiver.start(received::add);
+        InetSocketAddress peer = new InetSocketAddress(InetAddress.getLoopbackAddress(), receiver.getLocalPort());
+        sender = new DatagramInvalidationTransport(objectMapper, 0, null, Collections.singletonList(peer), 0);
+        sender.start(invalidation -> { });
+
+        // 2.Send an invalidation of an update and a deletion
+        CacheInvalidation invalidation = new CacheInvalidation();
+        invalidation.setNode("node");
+        invalidation.setSequence(7);
+        invalidation.getEntries().add(new CacheInvalidation.Entry(1L, 2L));
+        invalidation.getEntries().add(new CacheInvalidation.Entry(3L, null));
+        sender.send(invalidation);
+
+        // 3.Verify the received invalidation
+        CacheInvalidation message = received.poll(5, TimeUnit.SECONDS);
+        assertNotNull(message);
+        assertEquals("node", message.getNode());
+        assertEquals(7, message.getSequence());
+        assertEquals(2, message.getEntries().size());
+        assertEquals(Long.valueOf(2L), message.getEntries().get(0).getVersion());
+        assertEquals(Long.valueOf(3L), message.getEntries().get(1).getId());
+        assertNull(message.getEntries().get(1).getVersion());
+        assertTrue(!message.isAll());
+        assertTrue(!message.isHeartbeat());
+    }
+
+    /**
+     * Tests that a heartbeat sent to a peer is received as such, with the number it repeats.
+     */
+    @Test
+    public void send_DeliversHeartbeats() throws Exception {
+        // 1.Start a receiver on a free port and a sender listing it as its peer
+        ObjectMapper objectMapper = new ObjectMapper();
+        BlockingQueue<CacheInvalidation> received = new ArrayBlockingQueue<>(1);
+        receiver = new DatagramInvalidationTransport(objectMapper, 0, null, Collections.emptyList(), 0);
+        receiver.start(received::add);
+        InetSocketAddress peer = new InetSocketAddress(InetAddress.getLoopbackAddress(), receiver.getLocalPort());
+        sender = new DatagramInvalidationTransport(objectMapper, 0, null, Collections.singletonList(peer), 0);
+        sender.start(invalidation -> { });
+
+        // 2.Send a heartbeat
+        CacheInvalidation heartbeat = new CacheInvalidation();
+        heartbeat.setNode("node");
+        heartbeat.setSequence(7);
+        heartbeat.setHeartbeat(true);
+        sender.send(heartbeat);
+
+        // 3.Verify the received heartbeat
+        CacheInvalidation message = received.poll(5, TimeUnit.SECONDS);
+        assertNotNull(message);
+        assertEquals("node", message.getNode());
+        assertEquals(7, message.getSequence());
+        assertTrue(message.isHeartbeat());
+        assertTrue(message.getEntries().isEmpty());
+    }
+}
@@ -0,0 +1,247 @@
+package jp.co.axa.apidemo.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.cache.Cache;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+
+import jp.co.axa.apidemo.entities.Employee;
+import jp.co.axa.apidemo.events.EmployeeChangeEvent;
+import jp.co.axa.apidemo.events.EmployeeChangeTracker;
+
+/**
+ * Unit Test Class for EmployeeCacheInvalidator, with two nodes connected by an InMemoryInvalidationTransport.
+ */
+public class EmployeeCacheInvalidatorTest {
+
+    private InMemoryInvalidationTransport transport;
+
+    private EmployeeCacheInvalidator sender;
+
+    private EmployeeCacheInvalidator receiver;
+
+    private ConcurrentMapCacheManager receiverCaches;
+
+    private EmployeeChangeTracker receiverTracker;
+
+    private org.hibernate.Cache receiverHibernateCache;
+
+    /**
+     * Sets up the sending and the receiving node.
+     */
+    @Before
+    public void setUp() throws Exception {
+        transport = new InMemoryInvalidationTransport();
+        sender = invalidator(transport, new ConcurrentMapCacheManager(), new EmployeeChangeTracker(), null);
+        receiverCaches = new ConcurrentMapCacheManager();
+        receiverTracker = new EmployeeChangeTracker();
+        receiverHibernateCache = mock(org.hibernate.Cache.class);
+        EntityManagerFactory entityManagerFactory = mock(EntityManagerFactory.class);
+        when(entityManagerFactory.getCache()).thenReturn(receiverHibernateCache);
+        receiver = invalidator(transport.newPeer(), receiverCaches, receiverTracker, entityManagerFactory);
+    }
+
+    /**
+     * Stops both nodes.
+     */
+    @After
+    public void tearDown() throws Exception {
+        sender.shutdown();
+        receiver.shutdown();
+    }
+
+    /**
+     * Tests that the changes of a node are batched into one message evicting the stale entries of the other node.
+     */
+    @Test
+    public void onEmployeeChange_EvictsStaleEntriesOfPeers() throws Exception {
+        // 1.Cache an outdated employee, an employee already at its new version and the employee list
+        Cache employees = receiverCaches.getCache(EmployeeCacheInvalidator.EMPLOYEE_CACHE);
+        employees.put(1L, employee(1L, 1L));
+        employees.put(2L, employee(2L, 2L));
+        receiverCaches.getCache(EmployeeCacheInvalidator.EMPLOYEES_CACHE).put("all", "list");
+        long version = receiverTracker.getChangeCount();
+
+        // 2.Commit an update of each employee on the sending node
+        sender.onEmployeeChange(EmployeeChangeEvent.of(employee(1L, 1L), employee(1L, 2L)));
+        sender.onEmployeeChange(EmployeeChangeEvent.of(employee(2L, 1L), employee(2L, 2L)));
+        sender.awaitScheduled();
+
+        // 3.Verify only the outdated employee is evicted, along with the list and the Hibernate caches
+        assertNull(employees.get(1L));
+        assertNotNull(employees.get(2L));
+        assertNull(receiverCaches.getCache(EmployeeCacheInvalidator.EMPLOYEES_CACHE).get("all"));
+        assertEquals(version + 1, receiverTracker.getChangeCount());
+        verify(receiverHibernateCache, times(1)).evict(Employee.class, 1L);
+        verify(receiverHibernateCache, times(1)).evict(Employee.class, 2L);
+        verify(receiverHibernateCache, times(1)).evictQueryRegions();
+    }
+
+    /**
+     * Tests that a gap in the message numbers clears every employee cache of the receiver.
+     */
+    @Test
+    public void apply_ClearsCachesAfterLostMessages() {
+        // 1.Cache two employees
+        Cache employees = receiverCaches.getCache(EmployeeCacheInvalidator.EMPLOYEE_CACHE);
+        employees.put(1L, employee(1L, 1L));
+        employees.put(2L, employee(2L, 1L));
+
+        // 2.Receive the first message of a node, then its third one
+        receiver.apply(message("node", 1, 1L));
+        receiver.apply(message("node", 3, 1L));
+
+        // 3.Verify the unrelated employee is evicted too, and a repeated message is ignored
+        assertNull(employees.get(1L));
+        assertNull(employees.get(2L));
+        verify(receiverHibernateCache, times(1)).evict(Employee.class);
+        employees.put(2L, employee(2L, 1L));
+        receiver.apply(message("node", 3, 2L));
+        assertNotNull(employees.get(2L));
+        verify(receiverHibernateCache, never()).evict(Employee.class, 2L);
+    }
+
+    /**
+     * Tests that a heartbeat only clears the caches of the receiver when it reveals lost messages.
+     */
+    @Test
+    public void apply_ClearsCachesAfterHeartbeatOfLostMessage() {
+        // 1.Cache an employee and receive the first message of a node, then a heartbeat repeating its number
+        Cache employees = receiverCaches.getCache(EmployeeCacheInvalidator.EMPLOYEE_CACHE);
+        employees.put(2L, employee(2L, 1L));
+        receiver.apply(message("node", 1, 1L));
+        receiver.apply(heartbeat("node", 1));
+
+        // 2.Verify the heartbeat changed nothing
+        assertNotNull(employees.get(2L));
+        verify(receiverHibernateCache, never()).evict(Employee.class);
+
+        // 3.Receive a heartbeat of a number never received, then the late message of that number
+        receiver.apply(heartbeat("node", 2));
+        employees.put(2L, employee(2L, 1L));
+        receiver.apply(message("node", 2, 2L));
+
+        // 4.Verify the caches were cleared once, and the late message ignored
+        assertNotNull(employees.get(2L));
+        verify(receiverHibernateCache, times(1)).evict(Employee.class);
+        verify(receiverHibernateCache, never()).evict(Employee.class, 2L);
+    }
+
+    /**
+     * Tests that the heartbeat of a node which failed to send its last message makes the other nodes clear their caches.
+     */
+    @Test
+    public void heartbeat_RevealsFailedSend() throws Exception {
+        // 1.Start a node whose next send fails, and cache an employee on the receiver
+        AtomicBoolean failing = new AtomicBoolean(true);
+        InMemoryInvalidationTransport member = transport.newPeer();
+        InvalidationTransport lossy = new InvalidationTransport() {
+            @Override
+            public void start(Consumer<CacheInvalidation> listener) {
+                member.start(listener);
+            }
+
+            @Override
+            public void send(CacheInvalidation invalidation) throws IOException {
+                if (failing.getAndSet(false)) {
+                    throw new IOException("Network unreachable");
+                }
+                member.send(invalidation);
+            }
+
+            @Override
+            public void close() {
+                member.close();
+            }
+        };
+        EmployeeCacheInvalidator node = invalidator(lossy, new ConcurrentMapCacheManager(),
+                new EmployeeChangeTracker(), null);
+        Cache employees = receiverCaches.getCache(EmployeeCacheInvalidator.EMPLOYEE_CACHE);
+        employees.put(2L, employee(2L, 1L));
+
+        try {
+            // 2.Commit a change of another employee, whose message is lost
+            node.onEmployeeChange(EmployeeChangeEvent.of(employee(1L, 1L), employee(1L, 2L)));
+            node.awaitScheduled();
+            assertNotNull(employees.get(2L));
+
+            // 3.Send the heartbeat of the node
+            node.heartbeat();
+
+            // 4.Verify the receiver cleared its caches
+            assertNull(employees.get(2L));
+            verify(receiverHibernateCache, times(1)).evict(Employee.class);
+        } finally {
+            node.shutdown();
+        }
+    }
+
+    /**
+     * Creates an invalidator of a node without redelivery nor scheduled heartbeats.
+     */
+    private static EmployeeCacheInvalidator invalidator(InvalidationTransport transport,
+                                                        ConcurrentMapCacheManager cacheManager,
+                                                        EmployeeChangeTracker tracker,
+                                                        EntityManagerFactory entityManagerFactory) throws Exception {
+        EmployeePageCache employeePageCache = new EmployeePageCache();
+        employeePageCache.setCacheManager(cacheManager);
+        EmployeeCacheInvalidator invalidator = new EmployeeCacheInvalidator();
+        invalidator.setTransport(transport);
+        invalidator.setCacheManager(cacheManager);
+        invalidator.setEmployeePageCache(employeePageCache);
+        invalidator.setEmployeeChangeTracker(tracker);
+        invalidator.setEntityManagerFactory(entityManagerFactory);
+        invalidator.setRedeliveryDelay(-1);
+        invalidator.setHeartbeatInterval(0);
+        invalidator.start();
+        return invalidator;
+    }
+
+    /**
+     * Creates an invalidation message of one employee.
+     */
+    private static CacheInvalidation message(String node, long sequence, Long employeeId) {
+        CacheInvalidation message = new CacheInvalidation();
+        message.setNode(node);
+        message.setSequence(sequence);
+        message.getEntries().add(new CacheInvalidation.Entry(employeeId, 5L));
+        return message;
+    }
+
+    /**
+     * Creates a heartbeat message.
+     */
+    private static CacheInvalidation heartbeat(String node, long sequence) {
+        CacheInvalidation message = new CacheInvalidation();
+        message.setNode(node);
+        message.setSequence(sequence);
+        message.setHeartbeat(true);
+        return message;
+    }
+
+    /**
+     * Creates an employee with an ID and a version.
+     */
+    private static Employee employee(Long id, Long version) {
+        Employee employee = new Employee("Mark Perez", 10000000, "IT");
+        employee.setId(id);
+        employee.setVersion(version);
+        return employee;
+    }
+}
@@ -0,0 +1,110 @@
+package jp.co.axa.apidemo.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.cache.Cache;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+
+import jp.co.axa.apidemo.dto.EmployeePage;
+import jp.co.axa.apidemo.entities.Employee;
+
+/**
+ * Unit Test Class for EmployeePageCache.
+ */
+public class EmployeePageCacheTest {
+
+    private Cache pages;
+
+    private EmployeePageCache employeePageCache;
+
+    /**
+     * Sets up the test environment with two full pages and a tail page.
+     */
+    @Before
+    public void setUp() {
+        ConcurrentMapCacheManager cacheManager = new ConcurrentMapCacheManager(EmployeePageCache.CACHE_NAME);
+        pages = cacheManager.getCache(EmployeePageCache.CACHE_NAME);
+        pages.put("0:2", page(EmployeePage.encodeCursor(2L), 1L, 2L));
+        pages.put("2:2", page(EmployeePage.encodeCursor(4L), 3L, 4L));
+        pages.put("4:2", page(null, 5L));
+        employeePageCache = new EmployeePageCache();
+        employeePageCache.setCacheManager(cacheManager);
+    }
+
+    /**
+     * Tests that an update only evicts the page containing the employee.
+     */
+    @Test
+    public void evictAffectedPages_Update() {
+        // 1.Invoke the method for an employee of the second page
+        employeePageCache.evictAffectedPages(3L);
+
+        // 2.Verify only the second page is evicted
+        assertNotNull(pages.get("0:2"));
+        assertNull(pages.get("2:2"));
+        assertNotNull(pages.get("4:2"));
+    }
+
+    /**
+     * Tests that a newly created employee only evicts the tail page.
+     */
+    @Test
+    public void evictAffectedPages_Insert() {
+        // 1.Invoke the method for an employee beyond the last cached ID
+        employeePageCache.evictAffectedPages(6L);
+
+        // 2.Verify only the tail page is evicted
+        assertNotNull(pages.get("0:2"));
+        assertNotNull(pages.get("2:2"));
+        assertNull(pages.get("4:2"));
+    }
+
+    /**
+     * Tests that an employee created between a page cursor and its first employee evicts that page.
+     */
+    @Test
+    public void evictAffectedPages_InsertInGap() {
+        // 1.Cache a page after ID 10 whose first employee is 20, as with IDs from pooled sequence blocks
+        pages.put("10:2", page(EmployeePage.encodeCursor(21L), 20L, 21L));
+
+        // 2.Invoke the method for an employee created with ID 15
+        employeePageCache.evictAffectedPages(15L);
+
+        // 3.Verify the page is evicted while the other full pages are kept
+        assertNull(pages.get("10:2"));
+        assertNotNull(pages.get("0:2"));
+        assertNotNull(pages.get("2:2"));
+    }
+
+    /**
+     * Tests the page range check directly.
+     */
+    @Test
+    public void isAffected() {
+        EmployeePage middle = page(EmployeePage.encodeCursor(4L), 3L, 4L);
+        assertEquals(false, EmployeePageCache.isAffected(2L, middle, 2L));
+        assertEquals(true, EmployeePageCache.isAffected(2L, middle, 4L));
+        assertEquals(false, EmployeePageCache.isAffected(2L, middle, 5L));
+        assertEquals(true, EmployeePageCache.isAffected(0L, page(null), 1L));
+        assertEquals(true, EmployeePageCache.isAffected(10L, page(EmployeePage.encodeCursor(21L), 20L, 21L), 11L));
+        assertEquals(Long.valueOf(10L), EmployeePageCache.afterIdOf("10:2"));
+    }
+
+    private static EmployeePage page(String nextCursor, Long... ids) {
+        List<Employee> employees = new ArrayList<>();
+        for (Long id : Arrays.asList(ids)) {
+            Employee employee = new Employee("Employee " + id, 1000, "IT");
+            employee.setId(id);
+            employees.add(employee);
+        }
+        return new EmployeePage(employees, nextCursor);
+    }
+}
@@ -0,0 +1,131 @@
+package jp.co.axa.apidemo.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+import jp.co.axa.apidemo.events.EmployeeChangeEvent;
+
+/**
+ * Unit Test Class for EncodedResponseCache.
+ */
+public class EncodedResponseCacheTest {
+
+    private EncodedResponseCache encodedResponseCache;
+
+    private final AtomicInteger loads = new AtomicInteger();
+
+    /**
+     * Sets up the test environment.
+     */
+    @Before
+    public void setUp() {
+        encodedResponseCache = new EncodedResponseCache();
+        encodedResponseCache.setObjectMapper(new ObjectMapper());
+        encodedResponseCache.setConverters(Arrays.asList(new MappingJackson2SmileHttpMessageConverter()));
+        encodedResponseCache.setEnabled(true);
+    }
+
+    /**
+     * Tests that a response is encoded once per version of the data.
+     */
+    @Test
+    public void get_EncodesOncePerVersion() {
+        // 1.Get the response twice at the same version
+        EncodedResponse first = encodedResponseCache.get("list", 1, MediaType.APPLICATION_JSON_UTF8, this::load);
+        EncodedResponse second = encodedResponseCache.get("list", 1, MediaType.APPLICATION_JSON_UTF8, this::load);
+
+        // 2.Get the response at a newer version
+        EncodedResponse newer = encodedResponseCache.get("list", 2, MediaType.APPLICATION_JSON_UTF8, this::load);
+
+        // 3.Verify the encodings
+        assertSame(first, second);
+        assertNotSame(first, newer);
+        assertEquals("[1,2,3]", new String(first.getBody(), StandardCharsets.UTF_8));
+        assertEquals(2, loads.get());
+    }
+
+    /**
+     * Tests that committed employee changes drop the cached responses.
+     */
+    @Test
+    public void onEmployeeChange_DropsResponses() {
+        // 1.Cache a response
+        encodedResponseCache.get("list", 1, MediaType.APPLICATION_JSON_UTF8, this::load);
+
+        // 2.Publish a change
+        encodedResponseCache.onEmployeeChange(EmployeeChangeEvent.bulk());
+
+        // 3.Verify the response is encoded again
+        encodedResponseCache.get("list", 1, MediaType.APPLICATION_JSON_UTF8, this::load);
+        assertEquals(2, loads.get());
+    }
+
+    /**
+     * Tests that only bodies from the minimum size are compressed.
+     */
+    @Test
+    public void get_CompressesLargeBodies() {
+        // 1.Get a small and a large response
+        encodedResponseCache.setGzipMinSize(100);
+        EncodedResponse small = encodedResponseCache.get("small", 1, MediaType.APPLICATION_JSON_UTF8, this::load);
+        EncodedResponse large = encodedResponseCache.get("large", 1, MediaType.APPLICATION_JSON_UTF8, () -> new int[1000]);
+
+        // 2.Verify the compressed copies
+        assertNull(small.getGzippedBody());
+        assertEquals(0x1f, large.getGzippedBody()[0]);
+        assertEquals((byte) 0x8b, large.getGzippedBody()[1]);
+    }
+
+    /**
+     * Tests that the media type is selected from the Accept header, JSON first.
+     */
+    @Test
+    public void negotiate() {
+        // 1.Verify the preferred encodable media type
+        MediaType smile = MediaType.valueOf("application/x-jackson-smile");
+        assertEquals(MediaType.APPLICATION_JSON_UTF8, encodedResponseCache.negotiate(null));
+        assertEquals(MediaType.APPLICATION_JSON_UTF8, encodedResponseCache.negotiate("*/*"));
+        assertEquals(smile, encodedResponseCache.negotiate("application/json;q=0.9, application/x-jackson-smile"));
+        assertEquals(smile, encodedResponseCache.negotiate("application/*;q=0.5, application/json;q=0"));
+
+        // 2.Verify unsupported and malformed types
+        assertNull(encodedResponseCache.negotiate("application/xml"));
+        assertNull(encodedResponseCache.negotiate("not a type"));
+    }
+
+    /**
+     * Tests that each media type is encoded separately.
+     */
+    @Test
+    public void get_EncodesEachMediaType() throws Exception {
+        // 1.Get the response in JSON and Smile
+        MediaType smile = MediaType.valueOf("application/x-jackson-smile");
+        EncodedResponse json = encodedResponseCache.get("list", 1, MediaType.APPLICATION_JSON_UTF8, this::load);
+        EncodedResponse binary = encodedResponseCache.get("list", 1, smile, this::load);
+
+        // 2.Verify the encodings
+        assertEquals("[1,2,3]", new String(json.getBody(), StandardCharsets.UTF_8));
+        assertEquals(Arrays.asList(1, 2, 3), new ObjectMapper(new SmileFactory()).readValue(binary.getBody(), List.class));
+        assertEquals(2, loads.get());
+    }
+
+    private Object load() {
+        loads.incrementAndGet();
+        return Arrays.asList(1, 2, 3);
+    }
+}
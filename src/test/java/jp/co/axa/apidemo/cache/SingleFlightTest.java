@@ -0,0 +1,85 @@
+package jp.co.axa.apidemo.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+/**
+ * Unit Test Class for SingleFlight.
+ */
+public class SingleFlightTest {
+
+    /**
+     * Tests that concurrent loads of the same key run the loader only once.
+     */
+    @Test
+    public void load_ConcurrentSameKey() throws Exception {
+        // 1.Set up a loader which blocks until every caller has arrived
+        SingleFlight<Long, String> singleFlight = new SingleFlight<>("test");
+        AtomicInteger loaderCalls = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        int callers = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(callers);
+
+        // 2.Invoke the method from several threads
+        List<Future<String>> results = new ArrayList<>();
+        try {
+            for (int i = 0; i < callers; i++) {
+                results.add(executor.submit(() -> singleFlight.load(1L, () -> {
+                    loaderCalls.incrementAndGet();
+                    try {
+                        release.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return "Mark Perez";
+                })));
+            }
+            while (singleFlight.getLoadCount() + singleFlight.getCoalescedLoadCount() < callers) {
+                Thread.sleep(10);
+            }
+            release.countDown();
+
+            // 3.Verify every caller got the single loaded value
+            for (Future<String> result : results) {
+                assertEquals("Mark Perez", result.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, loaderCalls.get());
+        assertEquals(1, singleFlight.getLoadCount());
+        assertEquals(callers - 1, singleFlight.getCoalescedLoadCount());
+    }
+
+    /**
+     * Tests that a failed load is propagated and not remembered.
+     */
+    @Test
+    public void load_Exception() {
+        // 1.Invoke the method with a failing loader
+        SingleFlight<Long, String> singleFlight = new SingleFlight<>("test");
+        try {
+            singleFlight.load(1L, () -> {
+                throw new IllegalStateException("Database unavailable");
+            });
+            fail("Expected the loader exception");
+        } catch (IllegalStateException e) {
+            assertEquals("Database unavailable", e.getMessage());
+        }
+
+        // 2.Verify the next load runs the loader again
+        assertEquals("Mark Perez", singleFlight.load(1L, () -> "Mark Perez"));
+        assertEquals(2, singleFlight.getLoadCount());
+    }
+}
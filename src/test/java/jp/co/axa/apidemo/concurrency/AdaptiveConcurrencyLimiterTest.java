@@ -0,0 +1,91 @@
+package jp.co.axa.apidemo.concurrency;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Unit Test Class for AdaptiveConcurrencyLimiter.
+ */
+public class AdaptiveConcurrencyLimiterTest {
+
+    /**
+     * Tests that a caller with a smaller share is rejected first, leaving headroom to the others.
+     */
+    @Test
+    public void tryAcquire_RejectsBeyondShareOfLimit() {
+        // 1.Create a limiter of 10 requests
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("test", 10, 1, 100, 0.2);
+
+        // 2.Admit low-priority requests until they are rejected
+        List<AdaptiveConcurrencyLimiter.Permit> permits = new ArrayList<>();
+        AdaptiveConcurrencyLimiter.Permit permit;
+        while ((permit = limiter.tryAcquire(0.8)) != null) {
+            permits.add(permit);
+        }
+
+        // 3.Verify 8 were admitted, high-priority requests still get the remaining 2, and rejections are counted
+        assertEquals(8, permits.size());
+        assertNotNull(limiter.tryAcquire(1.0));
+        assertNotNull(limiter.tryAcquire(1.0));
+        assertNull(limiter.tryAcquire(1.0));
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        limiter.bindTo(registry);
+        FunctionCounter rejected = registry.find("concurrency.rejected").tag("name", "test").functionCounter();
+        assertNotNull(rejected);
+        assertEquals(2.0, rejected.count(), 0.0);
+
+        // 4.Verify a released permit is counted once
+        permits.get(0).release();
+        permits.get(0).release();
+        assertEquals(9, limiter.getInFlight());
+    }
+
+    /**
+     * Tests that the limit grows while the latency is steady and shrinks when it rises or requests are dropped.
+     */
+    @Test
+    public void release_AdaptsLimitToLatency() throws Exception {
+        // 1.Complete batches of concurrent requests with a steady latency
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("test", 10, 1, 100, 0.5);
+        for (int i = 0; i < 4; i++) {
+            completeAll(limiter, 10);
+        }
+        int grown = limiter.getLimit();
+        assertTrue("The limit should grow, got " + grown, grown > 10);
+
+        // 2.Complete batches with a latency 20 times higher
+        for (int i = 0; i < 4; i++) {
+            completeAll(limiter, 200);
+        }
+        int shrunk = limiter.getLimit();
+        assertTrue("The limit should shrink, got " + shrunk, shrunk < grown);
+
+        // 3.Verify a dropped request cuts the limit of a new limiter by 10%
+        AdaptiveConcurrencyLimiter dropping = new AdaptiveConcurrencyLimiter("test", 10, 1, 100, 0.5);
+        dropping.tryAcquire(1.0).releaseDropped();
+        assertEquals(9, dropping.getLimit());
+    }
+
+    /**
+     * Admits requests up to the limit and releases them all after a delay.
+     */
+    private static void completeAll(AdaptiveConcurrencyLimiter limiter, long delayMs) throws InterruptedException {
+        List<AdaptiveConcurrencyLimiter.Permit> permits = new ArrayList<>();
+        AdaptiveConcurrencyLimiter.Permit permit;
+        while ((permit = limiter.tryAcquire(1.0)) != null) {
+            permits.add(permit);
+        }
+        Thread.sleep(delayMs);
+        permits.forEach(AdaptiveConcurrencyLimiter.Permit::release);
+    }
+}
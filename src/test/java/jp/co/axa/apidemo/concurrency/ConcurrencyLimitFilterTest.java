@@ -0,0 +1,73 @@
+package jp.co.axa.apidemo.concurrency;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+/**
+ * Unit Test Class for ConcurrencyLimitFilter.
+ */
+public class ConcurrencyLimitFilterTest {
+
+    /**
+     * Clears the authentication of the test thread.
+     */
+    @After
+    public void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    /**
+     * Tests that a read beyond the share of a USER is rejected with Retry-After while an ADMIN write is admitted.
+     */
+    @Test
+    public void doFilter_ShedsReadsBeyondRoleShare() throws Exception {
+        // 1.Create a filter whose read limit is already used by one request
+        AdaptiveConcurrencyLimiter readLimiter = new AdaptiveConcurrencyLimiter("read", 2, 1, 10, 0.2);
+        AdaptiveConcurrencyLimiter writeLimiter = new AdaptiveConcurrencyLimiter("write", 2, 1, 10, 0.2);
+        Map<String, Double> shares = new HashMap<>();
+        shares.put("ADMIN", 1.0);
+        shares.put("USER", 0.5);
+        ConcurrencyLimitFilter filter = new ConcurrencyLimitFilter(readLimiter, writeLimiter, shares, 0.5,
+                Collections.singletonList("/api/v1/employees/retrieve"),
+                Arrays.asList("/api/v1/employees/changes"), 2);
+        assertNotNull(readLimiter.tryAcquire(1.0));
+
+        // 2.Send a read as a USER
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(
+                "user", null, AuthorityUtils.createAuthorityList("ROLE_USER")));
+        MockHttpServletResponse rejected = new MockHttpServletResponse();
+        filter.doFilter(new MockHttpServletRequest("GET", "/api/v1/employees/retrieve/1"), rejected, new MockFilterChain());
+
+        // 3.Send a write and a multi-get read by POST as an ADMIN
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(
+                "admin", null, AuthorityUtils.createAuthorityList("ROLE_ADMIN")));
+        MockHttpServletResponse written = new MockHttpServletResponse();
+        filter.doFilter(new MockHttpServletRequest("POST", "/api/v1/employees/save"), written, new MockFilterChain());
+        MockHttpServletResponse read = new MockHttpServletResponse();
+        filter.doFilter(new MockHttpServletRequest("POST", "/api/v1/employees/retrieve"), read, new MockFilterChain());
+
+        // 4.Verify the responses, and the permits of the admitted requests are released
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE.value(), rejected.getStatus());
+        assertEquals("2", rejected.getHeader(HttpHeaders.RETRY_AFTER));
+        assertEquals(HttpStatus.OK.value(), written.getStatus());
+        assertEquals(HttpStatus.OK.value(), read.getStatus());
+        assertEquals(0, writeLimiter.getInFlight());
+        assertEquals(1, readLimiter.getInFlight());
+    }
+}
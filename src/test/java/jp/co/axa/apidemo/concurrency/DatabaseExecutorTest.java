@@ -0,0 +1,113 @@
+package jp.co.axa.apidemo.concurrency;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Unit Test Class for DatabaseExecutor.
+ */
+public class DatabaseExecutorTest {
+
+    private DatabaseExecutor databaseExecutor;
+
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    /**
+     * Sets up the test environment.
+     */
+    @Before
+    public void setUp() {
+        databaseExecutor = new DatabaseExecutor(1, 1, null);
+    }
+
+    /**
+     * Stops the executor.
+     */
+    @After
+    public void tearDown() throws Exception {
+        release.countDown();
+        databaseExecutor.shutdown();
+    }
+
+    /**
+     * Tests that tasks are rejected at once and counted when the thread and the queue are full.
+     */
+    @Test
+    public void submit_RejectsWhenSaturated() throws Exception {
+        // 1.Occupy the thread and the queue
+        CountDownLatch started = new CountDownLatch(1);
+        Future<?> running = databaseExecutor.submit(() -> {
+            started.countDown();
+            awaitRelease();
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        Future<?> queued = databaseExecutor.submit(() -> { });
+
+        // 2.Submit one more task
+        try {
+            databaseExecutor.submit(() -> { });
+            fail("The task should have been rejected");
+        } catch (RejectedExecutionException e) {
+            // Expected
+        }
+
+        // 3.Verify the rejection is counted and the accepted tasks complete
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        databaseExecutor.bindTo(registry);
+        FunctionCounter rejected = registry.find("executor.rejected").tag("name", DatabaseExecutor.NAME).functionCounter();
+        assertNotNull(rejected);
+        assertEquals(1.0, rejected.count(), 0.0);
+        release.countDown();
+        running.get(5, TimeUnit.SECONDS);
+        queued.get(5, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Tests that tasks are decorated on the submitting thread.
+     */
+    @Test
+    public void submit_DecoratesTasks() throws Exception {
+        // 1.Use a decorator capturing the name of the submitting thread
+        databaseExecutor.shutdown();
+        String[] names = new String[2];
+        databaseExecutor = new DatabaseExecutor(1, 1, task -> {
+            String submitter = Thread.currentThread().getName();
+            return () -> {
+                names[0] = submitter;
+                task.run();
+            };
+        });
+
+        // 2.Submit a task
+        databaseExecutor.submit(() -> names[1] = Thread.currentThread().getName()).get(5, TimeUnit.SECONDS);
+
+        // 3.Verify the decorator ran on the submitting thread and the task on a database thread
+        assertEquals(Thread.currentThread().getName(), names[0]);
+        assertTrue(names[1].startsWith(DatabaseExecutor.NAME + "-"));
+    }
+
+    /**
+     * Blocks until the test releases the executor.
+     */
+    private void awaitRelease() {
+        try {
+            release.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
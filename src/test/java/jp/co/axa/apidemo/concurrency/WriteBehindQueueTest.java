@@ -0,0 +1,111 @@
+package jp.co.axa.apidemo.concurrency;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Unit Test Class for WriteBehindQueue.
+ */
+public class WriteBehindQueueTest {
+
+    private WriteBehindQueue<Integer, Integer> writeBehindQueue;
+
+    /**
+     * Stops the queue.
+     */
+    @After
+    public void tearDown() throws Exception {
+        if (writeBehindQueue != null) {
+            writeBehindQueue.shutdown();
+        }
+    }
+
+    /**
+     * Tests that writes queued while a batch is written are committed together in the next batch.
+     */
+    @Test
+    public void submit_GroupsWritesIntoBatches() throws Exception {
+        // 1.Start a queue whose writer blocks on its first batch
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<Integer> batchSizes = new ArrayList<>();
+        writeBehindQueue = new WriteBehindQueue<>("test", 100, 3, 1);
+        writeBehindQueue.start(batch -> {
+            batchSizes.add(batch.size());
+            writing.countDown();
+            await(release);
+            batch.forEach(write -> write.complete(write.getItem() * 10));
+        });
+
+        // 2.Queue one write, then four more while it is being written
+        CompletableFuture<Integer> first = writeBehindQueue.submit(1);
+        assertTrue(writing.await(5, TimeUnit.SECONDS));
+        List<CompletableFuture<Integer>> others = new ArrayList<>();
+        for (int i = 2; i <= 5; i++) {
+            others.add(writeBehindQueue.submit(i));
+        }
+        release.countDown();
+
+        // 3.Verify the results and the batches, limited to 3 writes
+        assertEquals(Integer.valueOf(10), first.get(5, TimeUnit.SECONDS));
+        for (int i = 0; i < others.size(); i++) {
+            assertEquals(Integer.valueOf((i + 2) * 10), others.get(i).get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(3, batchSizes.size());
+        assertEquals(Integer.valueOf(1), batchSizes.get(0));
+        assertEquals(Integer.valueOf(3), batchSizes.get(1));
+        assertEquals(Integer.valueOf(1), batchSizes.get(2));
+    }
+
+    /**
+     * Tests that a full queue rejects writes at once and a failing writer fails its writes.
+     */
+    @Test
+    public void submit_RejectsWhenFullAndFailsWithWriter() throws Exception {
+        // 1.Create a queue of one write which is not started yet
+        writeBehindQueue = new WriteBehindQueue<>("test", 1, 10, 1);
+        CompletableFuture<Integer> queued = writeBehindQueue.submit(1);
+
+        // 2.Submit one more write
+        try {
+            writeBehindQueue.submit(2);
+            fail("The write should have been rejected");
+        } catch (RejectedExecutionException e) {
+            // Expected
+        }
+
+        // 3.Start a failing writer and verify the queued write fails with its exception
+        writeBehindQueue.start(batch -> {
+            throw new IllegalStateException("Database unavailable");
+        });
+        try {
+            queued.get(5, TimeUnit.SECONDS);
+            fail("The write should have failed");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+    }
+
+    /**
+     * Blocks until a latch is released.
+     */
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package jp.co.axa.apidemo.configuration;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.security.authentication.AuthenticationProvider;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+/**
+ * Unit Test Class for CachingAuthenticationProvider.
+ */
+public class CachingAuthenticationProviderTest {
+
+    @Mock
+    private AuthenticationProvider delegate;
+
+    private CachingAuthenticationProvider cachingAuthenticationProvider;
+
+    /**
+     * Sets up the test environment.
+     */
+    @Before
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        cachingAuthenticationProvider = new CachingAuthenticationProvider(delegate, 60, 100);
+    }
+
+    /**
+     * Tests that repeated valid credentials are verified by the delegate only once.
+     */
+    @Test
+    public void authenticate_CachedVerification() {
+        // 1.Mock the delegate to accept the credentials
+        Authentication verified = new UsernamePasswordAuthenticationToken("admin", null,
+                Collections.singletonList(new SimpleGrantedAuthority("ROLE_ADMIN")));
+        when(delegate.authenticate(any())).thenReturn(verified);
+
+        // 2.Invoke the provider twice with the same credentials
+        cachingAuthenticationProvider.authenticate(new UsernamePasswordAuthenticationToken("admin", "password##"));
+        Authentication result = cachingAuthenticationProvider.authenticate(
+                new UsernamePasswordAuthenticationToken("admin", "password##"));
+
+        // 3.Verify the second result comes from the cache
+        assertTrue(result.isAuthenticated());
+        assertEquals("admin", result.getPrincipal());
+        assertEquals(verified.getAuthorities(), result.getAuthorities());
+        verify(delegate, times(1)).authenticate(any());
+    }
+
+    /**
+     * Tests that a different password is verified again and failures are not cached.
+     */
+    @Test
+    public void authenticate_WrongPassword() {
+        // 1.Mock the delegate to accept only the right password
+        Authentication verified = new UsernamePasswordAuthenticationToken("admin", null,
+                Collections.singletonList(new SimpleGrantedAuthority("ROLE_ADMIN")));
+        when(delegate.authenticate(any())).thenAnswer(invocation -> {
+            Authentication request = invocation.getArgument(0);
+            if (!"password##".equals(request.getCredentials())) {
+                throw new BadCredentialsException("Bad credentials");
+            }
+            return verified;
+        });
+        cachingAuthenticationProvider.authenticate(new UsernamePasswordAuthenticationToken("admin", "password##"));
+
+        // 2.Invoke the provider twice with a wrong password
+        for (int i = 0; i < 2; i++) {
+            try {
+                cachingAuthenticationProvider.authenticate(new UsernamePasswordAuthenticationToken("admin", "wrong"));
+                fail("Expected BadCredentialsException");
+            } catch (BadCredentialsException e) {
+                // expected
+            }
+        }
+
+        // 3.Verify every wrong attempt reached the delegate
+        verify(delegate, times(3)).authenticate(any());
+    }
+}
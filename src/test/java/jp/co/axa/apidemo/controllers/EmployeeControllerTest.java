@@ -1,24 +1,73 @@
 package jp.co.axa.apidemo.controllers;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doNothing;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
-
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.After;
 import org.junit.Test;
 import org.junit.Before;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
-
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.context.request.async.WebAsyncTask;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+
+import jp.co.axa.apidemo.cache.EncodedResponseCache;
+import jp.co.axa.apidemo.concurrency.DatabaseExecutor;
+import jp.co.axa.apidemo.configuration.AsyncProperties;
+import jp.co.axa.apidemo.dto.DepartmentStatistics;
+import jp.co.axa.apidemo.dto.EmployeePage;
+import jp.co.axa.apidemo.dto.EmployeePatch;
+import jp.co.axa.apidemo.dto.EmployeeSalary;
+import jp.co.axa.apidemo.dto.EmployeeSearchCriteria;
+import jp.co.axa.apidemo.dto.ImportReport;
 import jp.co.axa.apidemo.entities.Employee;
+import jp.co.axa.apidemo.events.EmployeeChangeEvent;
+import jp.co.axa.apidemo.events.EmployeeChangeFeed;
+import jp.co.axa.apidemo.events.EmployeeChangeTracker;
+import jp.co.axa.apidemo.services.DepartmentStatisticsService;
+import jp.co.axa.apidemo.services.EmployeeAnalyticsService;
+import jp.co.axa.apidemo.services.EmployeeImportService;
 import jp.co.axa.apidemo.services.EmployeeService;
 
 /**
@@ -29,6 +78,24 @@ public class EmployeeControllerTest {
     @Mock
     private EmployeeService employeeService;
 
+    @Mock
+    private EmployeeImportService employeeImportService;
+
+    @Mock
+    private DepartmentStatisticsService departmentStatisticsService;
+
+    @Mock
+    private EmployeeAnalyticsService employeeAnalyticsService;
+
+    @Mock
+    private EmployeeChangeFeed employeeChangeFeed;
+
+    private EmployeeChangeTracker employeeChangeTracker;
+
+    private EncodedResponseCache encodedResponseCache;
+
+    private DatabaseExecutor databaseExecutor;
+
     private EmployeeController employeeController;
 
     /**
@@ -39,6 +106,27 @@ public class EmployeeControllerTest {
         MockitoAnnotations.openMocks(this);
         employeeController = new EmployeeController();
         employeeController.setEmployeeService(employeeService);
+        employeeController.setEmployeeImportService(employeeImportService);
+        employeeController.setDepartmentStatisticsService(departmentStatisticsService);
+        employeeController.setEmployeeAnalyticsService(employeeAnalyticsService);
+        employeeChangeTracker = new EmployeeChangeTracker();
+        employeeController.setEmployeeChangeTracker(employeeChangeTracker);
+        employeeController.setEmployeeChangeFeed(employeeChangeFeed);
+        encodedResponseCache = new EncodedResponseCache();
+        encodedResponseCache.setObjectMapper(new ObjectMapper());
+        employeeController.setEncodedResponseCache(encodedResponseCache);
+        employeeController.setObjectMapper(new ObjectMapper());
+        databaseExecutor = new DatabaseExecutor(2, 4, null);
+        employeeController.setDatabaseExecutor(databaseExecutor);
+        employeeController.setAsyncProperties(new AsyncProperties());
+    }
+
+    /**
+     * Stops the database executor.
+     */
+    @After
+    public void tearDown() throws Exception {
+        databaseExecutor.shutdown();
     }
 
     /**
@@ -55,7 +143,7 @@ public class EmployeeControllerTest {
         when(employeeService.retrieveEmployees()).thenReturn(employees);
 
         // 3.Invoke the controller method
-        ResponseEntity<List<Employee>> response = employeeController.getEmployees();
+        ResponseEntity<?> response = await(employeeController.getEmployees(null, null, null));
 
         // 4.Verify the response
         assertEquals(HttpStatus.OK, response.getStatusCode());
@@ -65,6 +153,303 @@ public class EmployeeControllerTest {
         verify(employeeService, times(1)).retrieveEmployees();
     }
 
+    /**
+     * Tests getEmployees method with the ETag of the current and of an outdated list.
+     */
+    @Test
+    public void testGetEmployees_NotModified() {
+        // 1.Get the ETag of the current list
+        when(employeeService.retrieveEmployees()).thenReturn(Collections.emptyList());
+        String eTag = await(employeeController.getEmployees(null, null, null)).getHeaders().getETag();
+
+        // 2.Invoke the controller method with the current ETag, sent strong as some clients do
+        ResponseEntity<?> notModified = await(employeeController.getEmployees(eTag.substring(2), null, null));
+
+        // 3.Invoke the controller method after a change
+        employeeChangeTracker.onEmployeeChange(EmployeeChangeEvent.bulk());
+        ResponseEntity<?> modified = await(employeeController.getEmployees(eTag, null, null));
+
+        // 4.Verify the responses
+        assertTrue(eTag.startsWith("W/\""));
+        assertEquals(HttpStatus.NOT_MODIFIED, notModified.getStatusCode());
+        assertNull(notModified.getBody());
+        assertEquals(eTag, notModified.getHeaders().getETag());
+        assertEquals(HttpStatus.OK, modified.getStatusCode());
+        assertEquals(false, eTag.equals(modified.getHeaders().getETag()));
+
+        // 5.Verify the list is not read for the unchanged list
+        verify(employeeService, times(2)).retrieveEmployees();
+    }
+
+    /**
+     * Tests getEmployees method serving the encoded bytes of the list.
+     */
+    @Test
+    public void testGetEmployees_EncodedResponse() throws Exception {
+        // 1.Mock data
+        List<Employee> employees = Collections.nCopies(100, new Employee("Mark Perez", 10000000, "IT"));
+        encodedResponseCache.setEnabled(true);
+
+        // 2.Mock the service method
+        when(employeeService.retrieveEmployees()).thenReturn(employees);
+
+        // 3.Invoke the controller method with and without gzip
+        ResponseEntity<?> plain = await(employeeController.getEmployees(null, null, null));
+        ResponseEntity<?> gzipped = await(employeeController.getEmployees(null, null, "deflate, gzip;q=0.5"));
+        ResponseEntity<?> refused = await(employeeController.getEmployees(null, null, "gzip;q=0, *"));
+
+        // 4.Verify the responses
+        byte[] json = new ObjectMapper().writeValueAsBytes(employees);
+        assertEquals(new String(json, StandardCharsets.UTF_8), new String((byte[]) plain.getBody(), StandardCharsets.UTF_8));
+        assertEquals("gzip", gzipped.getHeaders().getFirst("Content-Encoding"));
+        assertEquals(new String(json, StandardCharsets.UTF_8), new String(StreamUtils.copyToByteArray(
+                new GZIPInputStream(new ByteArrayInputStream((byte[]) gzipped.getBody()))), StandardCharsets.UTF_8));
+        assertNull(refused.getHeaders().getFirst("Content-Encoding"));
+
+        // 5.Verify the list is serialized once
+        verify(employeeService, times(1)).retrieveEmployees();
+    }
+
+    /**
+     * Tests getEmployees method serving the encoded bytes of the list in a binary format.
+     */
+    @Test
+    public void testGetEmployees_BinaryEncoding() throws Exception {
+        // 1.Mock data
+        List<Employee> employees = Arrays.asList(new Employee("Mark Perez", 10000000, "IT"));
+        ObjectMapper cborMapper = new ObjectMapper(new CBORFactory());
+        encodedResponseCache.setConverters(Arrays.asList(new MappingJackson2CborHttpMessageConverter(cborMapper)));
+        encodedResponseCache.setEnabled(true);
+
+        // 2.Mock the service method
+        when(employeeService.retrieveEmployees()).thenReturn(employees);
+
+        // 3.Invoke the controller method
+        ResponseEntity<?> response = await(employeeController.getEmployees(null, "application/json;q=0.5, application/cbor", null));
+
+        // 4.Verify the response
+        assertEquals("application/cbor", response.getHeaders().getContentType().toString());
+        List<Employee> decoded = cborMapper.readValue((byte[]) response.getBody(),
+                cborMapper.getTypeFactory().constructCollectionType(List.class, Employee.class));
+        assertEquals("Mark Perez", decoded.get(0).getName());
+    }
+
+    /**
+     * Tests streamChanges method, resuming from the Last-Event-ID header or the since parameter.
+     */
+    @Test
+    public void testStreamChanges() {
+        // 1.Mock the feed
+        SseEmitter emitter = new SseEmitter();
+        when(employeeChangeFeed.subscribe(7L)).thenReturn(emitter);
+        when(employeeChangeFeed.subscribe(-1L)).thenReturn(emitter);
+        when(employeeChangeFeed.subscribe(null)).thenReturn(null);
+
+        // 2.Invoke the controller method
+        ResponseEntity<SseEmitter> resumed = employeeController.streamChanges("7", 3L);
+        ResponseEntity<SseEmitter> since = employeeController.streamChanges(null, 7L);
+        ResponseEntity<SseEmitter> malformed = employeeController.streamChanges("abc", null);
+        ResponseEntity<SseEmitter> full = employeeController.streamChanges(null, null);
+
+        // 3.Verify the responses
+        assertEquals(emitter, resumed.getBody());
+        assertEquals(emitter, since.getBody());
+        assertEquals(emitter, malformed.getBody());
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, full.getStatusCode());
+
+        // 4.Verify the feed calls
+        verify(employeeChangeFeed, times(2)).subscribe(7L);
+        verify(employeeChangeFeed, times(1)).subscribe(-1L);
+    }
+
+    /**
+     * Tests getEmployeePage method (SUCCESS Case).
+     */
+    @Test
+    public void testGetEmployeePage() {
+        // 1.Mock data
+        List<Employee> employees = new ArrayList<>();
+        employees.add(new Employee("Mark Perez", 10000000, "IT"));
+        EmployeePage page = new EmployeePage(employees, EmployeePage.encodeCursor(5L));
+
+        // 2.Mock the service method
+        when(employeeService.retrieveEmployeePage(3L, 1)).thenReturn(page);
+
+        // 3.Invoke the controller method
+        ResponseEntity<EmployeePage> response =
+                await(employeeController.getEmployeePage(1, EmployeePage.encodeCursor(3L)));
+
+        // 4.Verify the response
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(page, response.getBody());
+        assertEquals(Long.valueOf(5L), EmployeePage.decodeCursor(response.getBody().getNextCursor()));
+
+        // 5.Verify the service method call
+        verify(employeeService, times(1)).retrieveEmployeePage(3L, 1);
+    }
+
+    /**
+     * Tests getEmployeePage method (BAD REQUEST Case).
+     */
+    @Test
+    public void testGetEmployeePage_InvalidParameters() {
+        // 1.Invoke the controller method with an invalid size and an invalid cursor
+        ResponseEntity<EmployeePage> tooLarge =
+                await(employeeController.getEmployeePage(EmployeeController.MAX_PAGE_SIZE + 1, null));
+        ResponseEntity<EmployeePage> badCursor = await(employeeController.getEmployeePage(10, "not-a-cursor"));
+
+        // 2.Verify the responses
+        assertEquals(HttpStatus.BAD_REQUEST, tooLarge.getStatusCode());
+        assertEquals(HttpStatus.BAD_REQUEST, badCursor.getStatusCode());
+
+        // 3.Verify the service method is never called
+        verify(employeeService, never()).retrieveEmployeePage(anyLong(), anyInt());
+    }
+
+    /**
+     * Tests searchEmployees method (SUCCESS Case).
+     */
+    @Test
+    public void testSearchEmployees() {
+        // 1.Mock data
+        EmployeeSearchCriteria criteria = new EmployeeSearchCriteria();
+        criteria.setDepartment("IT");
+        criteria.setMinSalary(5000000);
+        Pageable pageable = PageRequest.of(0, 20, Sort.by(Sort.Direction.DESC, "salary"));
+        Page<Employee> page = new PageImpl<>(Collections.singletonList(new Employee("Mark Perez", 10000000, "IT")),
+                pageable, 1);
+
+        // 2.Mock the service method
+        when(employeeService.searchEmployees(criteria, pageable)).thenReturn(page);
+
+        // 3.Invoke the controller method
+        ResponseEntity<Page<Employee>> response = await(employeeController.searchEmployees(criteria, pageable));
+
+        // 4.Verify the response
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(page, response.getBody());
+
+        // 5.Verify the service method call
+        verify(employeeService, times(1)).searchEmployees(criteria, pageable);
+    }
+
+    /**
+     * Tests searchEmployees method (BAD REQUEST Case).
+     */
+    @Test
+    public void testSearchEmployees_InvalidParameters() {
+        // 1.Mock data with an inverted salary range, and a sort on an unknown property
+        EmployeeSearchCriteria invertedRange = new EmployeeSearchCriteria();
+        invertedRange.setMinSalary(2);
+        invertedRange.setMaxSalary(1);
+
+        // 2.Invoke the controller method
+        ResponseEntity<Page<Employee>> invertedResponse =
+                await(employeeController.searchEmployees(invertedRange, PageRequest.of(0, 20)));
+        ResponseEntity<Page<Employee>> unknownSortResponse = await(employeeController.searchEmployees(
+                new EmployeeSearchCriteria(), PageRequest.of(0, 20, Sort.by("password"))));
+
+        // 3.Verify the responses
+        assertEquals(HttpStatus.BAD_REQUEST, invertedResponse.getStatusCode());
+        assertEquals(HttpStatus.BAD_REQUEST, unknownSortResponse.getStatusCode());
+
+        // 4.Verify the service method is never called
+        verify(employeeService, never()).searchEmployees(any(), any());
+    }
+
+    /**
+     * Tests getDepartmentStatistics method.
+     */
+    @Test
+    public void testGetDepartmentStatistics() {
+        // 1.Mock data
+        List<DepartmentStatistics> statistics = Collections.singletonList(
+                new DepartmentStatistics("IT", 2, 15000000, 5000000, 10000000, 7500000.0));
+
+        // 2.Mock the service method
+        when(departmentStatisticsService.getDepartmentStatistics()).thenReturn(statistics);
+
+        // 3.Invoke the controller method
+        ResponseEntity<List<DepartmentStatistics>> response = employeeController.getDepartmentStatistics();
+
+        // 4.Verify the response
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(statistics, response.getBody());
+    }
+
+    /**
+     * Tests getTopSalaries method.
+     */
+    @Test
+    public void testGetTopSalaries() {
+        // 1.Mock data
+        List<EmployeeSalary> top = Collections.singletonList(new EmployeeSalary(1L, "IT", 10000000));
+
+        // 2.Mock the service method
+        when(employeeAnalyticsService.getTopSalaries(1, "IT")).thenReturn(top);
+
+        // 3.Invoke the controller method, also with an invalid size
+        ResponseEntity<List<EmployeeSalary>> response = employeeController.getTopSalaries(1, "IT");
+        ResponseEntity<List<EmployeeSalary>> invalidResponse = employeeController.getTopSalaries(0, "IT");
+
+        // 4.Verify the responses
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(top, response.getBody());
+        assertEquals(HttpStatus.BAD_REQUEST, invalidResponse.getStatusCode());
+    }
+
+    /**
+     * Tests getSalaryPercentiles method with percentiles out of range.
+     */
+    @Test
+    public void testGetSalaryPercentiles_InvalidPercentiles() {
+        // 1.Invoke the controller method
+        ResponseEntity<Map<Double, Integer>> zeroResponse =
+                employeeController.getSalaryPercentiles(Arrays.asList(0.0, 50.0), null);
+        ResponseEntity<Map<Double, Integer>> overResponse =
+                employeeController.getSalaryPercentiles(Collections.singletonList(100.5), null);
+
+        // 2.Verify the responses
+        assertEquals(HttpStatus.BAD_REQUEST, zeroResponse.getStatusCode());
+        assertEquals(HttpStatus.BAD_REQUEST, overResponse.getStatusCode());
+
+        // 3.Verify the service method is never called
+        verify(employeeAnalyticsService, never()).getSalaryPercentiles(any(), any());
+    }
+
+    /**
+     * Tests exportEmployees method (SUCCESS Case).
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testExportEmployees() throws Exception {
+        // 1.Mock the service method to stream two employees
+        doAnswer(invocation -> {
+            Consumer<Employee> consumer = invocation.getArgument(0);
+            consumer.accept(new Employee("Mark Perez", 10000000, "IT"));
+            consumer.accept(new Employee("Joaquin Matteo", 5000000, "Sales"));
+            return null;
+        }).when(employeeService).exportEmployees(any(Consumer.class));
+
+        // 2.Invoke the controller method with a one-hour export timeout and run the task
+        AsyncProperties asyncProperties = new AsyncProperties();
+        asyncProperties.getTimeouts().put("export", 3600000L);
+        employeeController.setAsyncProperties(asyncProperties);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        WebAsyncTask<Void> task = employeeController.exportEmployees(response);
+        task.getCallable().call();
+
+        // 3.Verify the response and that the timeout only applies to the export
+        assertEquals(Long.valueOf(3600000L), task.getTimeout());
+        assertEquals(EmployeeController.APPLICATION_NDJSON.toString(), response.getContentType());
+        String[] lines = response.getContentAsString().split("\n");
+        assertEquals(2, lines.length);
+        assertEquals("Joaquin Matteo", new ObjectMapper().readValue(lines[1], Employee.class).getName());
+
+        // 4.Verify the service method call
+        verify(employeeService, times(1)).exportEmployees(any(Consumer.class));
+    }
+
     /**
      * Tests getEmployee method (SUCCESS Case).
      */
@@ -77,7 +462,7 @@ public class EmployeeControllerTest {
         when(employeeService.getEmployee(1L)).thenReturn(employee);
 
         // 3.Invoke the controller method
-        ResponseEntity<Employee> response = employeeController.getEmployee(1L);
+        ResponseEntity<Employee> response = await(employeeController.getEmployee(1L, null));
 
         // 4.Verify the response
         assertEquals(HttpStatus.OK, response.getStatusCode());
@@ -87,6 +472,32 @@ public class EmployeeControllerTest {
         verify(employeeService, times(1)).getEmployee(1L);
     }
 
+    /**
+     * Tests getEmployee method with the ETag of the current and of an outdated version.
+     */
+    @Test
+    public void testGetEmployee_NotModified() {
+        // 1.Mock data
+        Employee employee = new Employee("Mark Perez", 10000000, "IT");
+        employee.setId(1L);
+        employee.setVersion(2L);
+
+        // 2.Mock the service method
+        when(employeeService.getEmployee(1L)).thenReturn(employee);
+
+        // 3.Invoke the controller method with the current and an outdated ETag
+        ResponseEntity<Employee> notModified = await(employeeController.getEmployee(1L, "\"1-1\", \"1-2\""));
+        ResponseEntity<Employee> modified = await(employeeController.getEmployee(1L, "\"1-1\""));
+
+        // 4.Verify the responses
+        assertEquals(HttpStatus.NOT_MODIFIED, notModified.getStatusCode());
+        assertNull(notModified.getBody());
+        assertEquals("\"1-2\"", notModified.getHeaders().getETag());
+        assertEquals(HttpStatus.OK, modified.getStatusCode());
+        assertEquals(employee, modified.getBody());
+        assertEquals("\"1-2\"", modified.getHeaders().getETag());
+    }
+
     /**
      * Tests getEmployee method (NOT FOUND Case).
      */
@@ -96,7 +507,7 @@ public class EmployeeControllerTest {
         when(employeeService.getEmployee(1L)).thenReturn(null);
 
         // 2.Invoke the controller method
-        ResponseEntity<Employee> response = employeeController.getEmployee(1L);
+        ResponseEntity<Employee> response = await(employeeController.getEmployee(1L, null));
 
         // 3.Verify the response
         assertEquals(HttpStatus.NOT_FOUND, response.getStatusCode());
@@ -105,6 +516,48 @@ public class EmployeeControllerTest {
         verify(employeeService, times(1)).getEmployee(1L);
     }
 
+    /**
+     * Tests getEmployeesByIds method (SUCCESS Case).
+     */
+    @Test
+    public void testGetEmployeesByIds() {
+        // 1.Mock data
+        List<Long> employeeIds = Arrays.asList(1L, 2L);
+        List<Employee> employees = new ArrayList<>();
+        employees.add(new Employee("Mark Perez", 10000000, "IT"));
+
+        // 2.Mock the service method
+        when(employeeService.getEmployees(employeeIds)).thenReturn(employees);
+
+        // 3.Invoke the controller method
+        ResponseEntity<List<Employee>> response = await(employeeController.getEmployeesByIds(employeeIds));
+
+        // 4.Verify the response
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(employees, response.getBody());
+
+        // 5.Verify the service method call
+        verify(employeeService, times(1)).getEmployees(employeeIds);
+    }
+
+    /**
+     * Tests postEmployeesByIds method (BAD REQUEST Case).
+     */
+    @Test
+    public void testPostEmployeesByIds_TooManyIds() {
+        // 1.Mock data
+        List<Long> employeeIds = Collections.nCopies(EmployeeController.MAX_RETRIEVE_IDS + 1, 1L);
+
+        // 2.Invoke the controller method
+        ResponseEntity<List<Employee>> response = await(employeeController.postEmployeesByIds(employeeIds));
+
+        // 3.Verify the response
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+
+        // 4.Verify the service method is never called
+        verify(employeeService, never()).getEmployees(employeeIds);
+    }
+
     /**
      * Tests saveEmployee method (SUCCESS Case).
      */
@@ -114,10 +567,10 @@ public class EmployeeControllerTest {
         Employee employee = new Employee("Mark Perez", 10000000, "IT");
 
         // 2.Mock the service method
-        doNothing().when(employeeService).saveEmployee(employee);
+        when(employeeService.saveEmployee(employee)).thenReturn(employee);
 
         // 3.Invoke the controller method
-        ResponseEntity<?> response = employeeController.saveEmployee(employee);
+        ResponseEntity<?> response = await(employeeController.saveEmployee(employee));
 
         // 4.Verify the response
         assertEquals(HttpStatus.OK, response.getStatusCode());
@@ -138,7 +591,7 @@ public class EmployeeControllerTest {
         doThrow(new RuntimeException("Failed to save employee")).when(employeeService).saveEmployee(employee);
 
         // 3.Invoke the controller method
-        ResponseEntity<?> response = employeeController.saveEmployee(employee);
+        ResponseEntity<?> response = await(employeeController.saveEmployee(employee));
 
         // 4.Verify the response
         assertEquals(HttpStatus.INTERNAL_SERVER_ERROR, response.getStatusCode());
@@ -147,6 +600,105 @@ public class EmployeeControllerTest {
         verify(employeeService, times(1)).saveEmployee(employee);
     }
 
+    /**
+     * Tests saveEmployees method (SUCCESS Case).
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    public void saveEmployees_Successful() {
+        // 1.Mock data
+        String body = "[{\"name\":\"Mark Perez\",\"salary\":10000000,\"department\":\"IT\"},"
+                + "{\"name\":\"Joaquin Matteo\",\"salary\":5000000,\"department\":\"Sales\"}]";
+
+        // 2.Mock the service method to consume the employees
+        when(employeeService.saveEmployees(any(Iterator.class))).thenAnswer(invocation -> {
+            Iterator<Employee> employees = invocation.getArgument(0);
+            int count = 0;
+            while (employees.hasNext()) {
+                employees.next();
+                count++;
+            }
+            return count;
+        });
+
+        // 3.Invoke the controller method
+        ResponseEntity<?> response = employeeController.saveEmployees(
+                new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)));
+
+        // 4.Verify the response
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(Collections.singletonMap("saved", 2), response.getBody());
+
+        // 5.Verify the service method call
+        verify(employeeService, times(1)).saveEmployees(any(Iterator.class));
+    }
+
+    /**
+     * Tests saveEmployees method (BAD REQUEST Case).
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    public void saveEmployees_MalformedBody() {
+        // 1.Mock the service method to consume the employees
+        when(employeeService.saveEmployees(any(Iterator.class))).thenAnswer(invocation -> {
+            Iterator<Employee> employees = invocation.getArgument(0);
+            while (employees.hasNext()) {
+                employees.next();
+            }
+            return 0;
+        });
+
+        // 2.Invoke the controller method with a truncated body
+        ResponseEntity<?> response = employeeController.saveEmployees(
+                new ByteArrayInputStream("[{\"name\":".getBytes(StandardCharsets.UTF_8)));
+
+        // 3.Verify the response
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+    }
+
+    /**
+     * Tests importEmployees method (SUCCESS Case).
+     */
+    @Test
+    public void importEmployees_Successful() throws Exception {
+        // 1.Mock data
+        ByteArrayInputStream body = new ByteArrayInputStream(
+                "name,salary,department\nMark Perez,10000000,IT\n".getBytes(StandardCharsets.UTF_8));
+        ImportReport report = new ImportReport();
+        report.imported(1);
+
+        // 2.Mock the service method
+        when(employeeImportService.importCsv(body)).thenReturn(report);
+
+        // 3.Invoke the controller method
+        ResponseEntity<ImportReport> response = employeeController.importEmployees(body);
+
+        // 4.Verify the response
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(1, response.getBody().getImported());
+
+        // 5.Verify the service method call
+        verify(employeeImportService, times(1)).importCsv(body);
+    }
+
+    /**
+     * Tests importEmployees method (BAD REQUEST Case).
+     */
+    @Test
+    public void importEmployees_InvalidHeader() throws Exception {
+        // 1.Mock data
+        ByteArrayInputStream body = new ByteArrayInputStream("id\n1\n".getBytes(StandardCharsets.UTF_8));
+
+        // 2.Mock the service method to reject the header
+        when(employeeImportService.importCsv(body)).thenThrow(new IllegalArgumentException("Invalid header"));
+
+        // 3.Invoke the controller method
+        ResponseEntity<ImportReport> response = employeeController.importEmployees(body);
+
+        // 4.Verify the response
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+    }
+
     /**
      * Tests deleteEmployee method (SUCCESS Case).
      */
@@ -159,7 +711,7 @@ public class EmployeeControllerTest {
         doNothing().when(employeeService).deleteEmployee(employeeId);
 
         // 3.Invoke the controller method
-        ResponseEntity<?> response = employeeController.deleteEmployee(employeeId);
+        ResponseEntity<?> response = await(employeeController.deleteEmployee(employeeId));
 
         // 4.Verify the response
         assertEquals(HttpStatus.OK, response.getStatusCode());
@@ -180,7 +732,7 @@ public class EmployeeControllerTest {
         doThrow(new RuntimeException("Failed to delete employee")).when(employeeService).deleteEmployee(employeeId);
 
         // 3.Invoke the controller method
-        ResponseEntity<?> response = employeeController.deleteEmployee(employeeId);
+        ResponseEntity<?> response = await(employeeController.deleteEmployee(employeeId));
 
         // 4.Verify the response
         assertEquals(HttpStatus.INTERNAL_SERVER_ERROR, response.getStatusCode());
@@ -189,6 +741,58 @@ public class EmployeeControllerTest {
         verify(employeeService, times(1)).deleteEmployee(employeeId);
     }
 
+    /**
+     * Tests patchEmployee method (SUCCESS Case).
+     */
+    @Test
+    public void patchEmployee_Successful() {
+        // 1.Mock data
+        EmployeePatch patch = new EmployeePatch();
+        patch.setSalary(12000000);
+        Employee patched = new Employee("Mark Perez", 12000000, "IT");
+        patched.setId(1L);
+        patched.setVersion(3L);
+
+        // 2.Mock the service method
+        when(employeeService.patchEmployee(1L, patch)).thenReturn(patched);
+
+        // 3.Invoke the controller method
+        ResponseEntity<?> response = await(employeeController.patchEmployee(patch, 1L));
+
+        // 4.Verify the response
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals("\"1-3\"", response.getHeaders().getETag());
+
+        // 5.Verify the employee is not read first
+        verify(employeeService, never()).getEmployee(anyLong());
+    }
+
+    /**
+     * Tests patchEmployee method (NOT FOUND, CONFLICT and BAD REQUEST Cases).
+     */
+    @Test
+    public void patchEmployee_Failures() {
+        // 1.Mock data
+        EmployeePatch patch = new EmployeePatch();
+        patch.setDepartment("Sales");
+        patch.setVersion(1L);
+
+        // 2.Mock the service method
+        when(employeeService.patchEmployee(1L, patch)).thenReturn(null);
+        when(employeeService.patchEmployee(2L, patch))
+            .thenThrow(new ObjectOptimisticLockingFailureException(Employee.class, 2L));
+
+        // 3.Invoke the controller method
+        ResponseEntity<?> notFound = await(employeeController.patchEmployee(patch, 1L));
+        ResponseEntity<?> conflict = await(employeeController.patchEmployee(patch, 2L));
+        ResponseEntity<?> empty = await(employeeController.patchEmployee(new EmployeePatch(), 1L));
+
+        // 4.Verify the responses
+        assertEquals(HttpStatus.NOT_FOUND, notFound.getStatusCode());
+        assertEquals(HttpStatus.CONFLICT, conflict.getStatusCode());
+        assertEquals(HttpStatus.BAD_REQUEST, empty.getStatusCode());
+    }
+
     /**
      * Tests updateEmployee method (SUCCESS Case).
      */
@@ -200,19 +804,43 @@ public class EmployeeControllerTest {
 
         // 2.Mock the service method
         when(employeeService.getEmployee(employeeId)).thenReturn(employee);
-        doNothing().when(employeeService).updateEmployee(employee);
+        when(employeeService.updateEmployee(employee)).thenReturn(employee);
 
         // 3.Invoke the controller method
-        ResponseEntity<?> response = employeeController.updateEmployee(employee, employeeId);
+        ResponseEntity<?> response = await(employeeController.updateEmployee(employee, employeeId));
 
-        // 4.Verify the response
+        // 4.Verify the response and the ID taken from the path
         assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(employeeId, employee.getId());
 
         // 5.Verify the service method calls
         verify(employeeService, times(1)).getEmployee(employeeId);
         verify(employeeService, times(1)).updateEmployee(employee);
     }
 
+    /**
+     * Tests updateEmployee method (CONFLICT Case).
+     */
+    @Test
+    public void updateEmployee_Conflict() {
+        // 1.Mock data
+        Long employeeId = 1L;
+        Employee employee = new Employee("Mark Perez", 10000000, "IT");
+        employee.setId(employeeId);
+        employee.setVersion(1L);
+
+        // 2.Mock the service method to fail on the outdated version
+        when(employeeService.getEmployee(employeeId)).thenReturn(employee);
+        when(employeeService.updateEmployee(employee))
+            .thenThrow(new ObjectOptimisticLockingFailureException(Employee.class, employeeId));
+
+        // 3.Invoke the controller method
+        ResponseEntity<?> response = await(employeeController.updateEmployee(employee, employeeId));
+
+        // 4.Verify the response
+        assertEquals(HttpStatus.CONFLICT, response.getStatusCode());
+    }
+
     /**
      * Tests updateEmployee method (NOT FOUND Case).
      */
@@ -226,7 +854,7 @@ public class EmployeeControllerTest {
         when(employeeService.getEmployee(employeeId)).thenReturn(null);
 
         // 3.Invoke the controller method
-        ResponseEntity<?> response = employeeController.updateEmployee(employee, employeeId);
+        ResponseEntity<?> response = await(employeeController.updateEmployee(employee, employeeId));
 
         // 4.Verify the response
         assertEquals(HttpStatus.NOT_FOUND, response.getStatusCode());
@@ -236,6 +864,26 @@ public class EmployeeControllerTest {
         verify(employeeService, never()).updateEmployee(employee);
     }
 
+    /**
+     * Tests updateEmployee method when the employee is deleted after it was checked (NOT FOUND Case).
+     */
+    @Test
+    public void updateEmployee_DeletedConcurrently() {
+        // 1.Mock data
+        Long employeeId = 1L;
+        Employee employee = new Employee("Mark Perez", 10000000, "IT");
+
+        // 2.Mock the service methods to find the employee, then not to update it
+        when(employeeService.getEmployee(employeeId)).thenReturn(employee);
+        when(employeeService.updateEmployee(employee)).thenReturn(null);
+
+        // 3.Invoke the controller method
+        ResponseEntity<?> response = await(employeeController.updateEmployee(employee, employeeId));
+
+        // 4.Verify the response
+        assertEquals(HttpStatus.NOT_FOUND, response.getStatusCode());
+    }
+
     /**
      * Tests updateEmployee method (ERROR Case).
      */
@@ -250,7 +898,7 @@ public class EmployeeControllerTest {
             thenThrow(new RuntimeException("Failed to get employee"));
 
         // 3.Invoke the controller method
-        ResponseEntity<?> response = employeeController.updateEmployee(employee, employeeId);
+        ResponseEntity<?> response = await(employeeController.updateEmployee(employee, employeeId));
 
         // 4.Verify the response
         assertEquals(HttpStatus.INTERNAL_SERVER_ERROR, response.getStatusCode());
@@ -260,4 +908,110 @@ public class EmployeeControllerTest {
         verify(employeeService, never()).updateEmployee(employee);
     }
 
-}
\ No newline at end of file
+    /**
+     * Tests saveEmployee method with write-behind (SUCCESS Case).
+     */
+    @Test
+    public void saveEmployee_WriteBehind() {
+        // 1.Mock data
+        Employee employee = new Employee("Mark Perez", 10000000, "IT");
+
+        // 2.Mock the service method to queue the write and commit it
+        when(employeeService.isWriteBehindEnabled()).thenReturn(true);
+        when(employeeService.saveEmployeeBehind(employee)).thenReturn(CompletableFuture.completedFuture(employee));
+
+        // 3.Invoke the controller method
+        ResponseEntity<?> response = await(employeeController.saveEmployee(employee));
+
+        // 4.Verify the response
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+
+        // 5.Verify the write went through the queue only
+        verify(employeeService, times(1)).saveEmployeeBehind(employee);
+        verify(employeeService, never()).saveEmployee(employee);
+    }
+
+    /**
+     * Tests updateEmployee method with write-behind (CONFLICT, NOT FOUND and SERVICE UNAVAILABLE Cases).
+     */
+    @Test
+    public void updateEmployee_WriteBehindFailures() {
+        // 1.Mock data
+        Long employeeId = 1L;
+        Employee employee = new Employee("Mark Perez", 10000000, "IT");
+        employee.setVersion(1L);
+        CompletableFuture<Employee> conflicting = new CompletableFuture<>();
+        conflicting.completeExceptionally(new ObjectOptimisticLockingFailureException(Employee.class, employeeId));
+
+        // 2.Mock the service method to fail the first write in its batch, find the employee deleted
+        // by the second one, and reject the third one
+        when(employeeService.isWriteBehindEnabled()).thenReturn(true);
+        when(employeeService.getEmployee(employeeId)).thenReturn(employee);
+        when(employeeService.updateEmployeeBehind(employee))
+            .thenReturn(conflicting)
+            .thenReturn(CompletableFuture.completedFuture(null))
+            .thenThrow(new RejectedExecutionException("The employee write-behind queue is full"));
+
+        // 3.Invoke the controller method three times
+        ResponseEntity<?> conflict = await(employeeController.updateEmployee(employee, employeeId));
+        ResponseEntity<?> notFound = await(employeeController.updateEmployee(employee, employeeId));
+        ResponseEntity<?> rejected = await(employeeController.updateEmployee(employee, employeeId));
+
+        // 4.Verify the responses
+        assertEquals(HttpStatus.CONFLICT, conflict.getStatusCode());
+        assertEquals(HttpStatus.NOT_FOUND, notFound.getStatusCode());
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, rejected.getStatusCode());
+        verify(employeeService, never()).updateEmployee(employee);
+        verify(employeeService, never()).saveEmployeeBehind(employee);
+    }
+
+    /**
+     * Tests that requests are answered with 503 while the database executor is saturated.
+     */
+    @Test
+    public void getEmployee_Saturated() throws Exception {
+        // 1.Use a single database thread without queue, and block it in the service
+        DatabaseExecutor saturated = new DatabaseExecutor(1, 0, null);
+        employeeController.setDatabaseExecutor(saturated);
+        Employee employee = new Employee("Mark Perez", 10000000, "IT");
+        employee.setId(1L);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(employeeService.getEmployee(1L)).thenAnswer(invocation -> {
+            started.countDown();
+            release.await();
+            return employee;
+        });
+
+        try {
+            // 2.Invoke the controller method twice while the first request holds the thread
+            DeferredResult<ResponseEntity<Employee>> first = employeeController.getEmployee(1L, null);
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            ResponseEntity<Employee> second = await(employeeController.getEmployee(1L, null));
+
+            // 3.Verify the second request is rejected at once and the first one completes
+            assertEquals(HttpStatus.SERVICE_UNAVAILABLE, second.getStatusCode());
+            release.countDown();
+            assertEquals(HttpStatus.OK, await(first).getStatusCode());
+            verify(employeeService, times(1)).getEmployee(1L);
+        } finally {
+            release.countDown();
+            saturated.shutdown();
+        }
+    }
+
+    /**
+     * Waits for the result of an asynchronous request.
+     */
+    @SuppressWarnings("unchecked")
+    private static <R> R await(DeferredResult<R> result) {
+        CountDownLatch done = new CountDownLatch(1);
+        result.setResultHandler(value -> done.countDown());
+        try {
+            assertTrue("The request did not complete", done.await(5, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+        return (R) result.getResult();
+    }
+}
@@ -0,0 +1,193 @@
+package jp.co.axa.apidemo.datasource;
+
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.datasource.ConnectionProxy;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Unit Test Class for ReadWriteRoutingDataSource.
+ */
+public class ReadWriteRoutingDataSourceTest {
+
+    private DataSource primary;
+
+    private Connection primaryConnection;
+
+    private Map<String, DataSource> replicas;
+
+    /**
+     * Sets up a primary and two replicas, each returning a distinct connection.
+     */
+    @Before
+    public void setUp() throws Exception {
+        primaryConnection = mock(Connection.class);
+        primary = dataSource(primaryConnection);
+        replicas = new LinkedHashMap<>();
+        replicas.put("replica-1", dataSource(mock(Connection.class)));
+        replicas.put("replica-2", dataSource(mock(Connection.class)));
+    }
+
+    /**
+     * Clears the read-only flag of the current thread.
+     */
+    @After
+    public void tearDown() {
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+        TransactionSynchronizationManager.setActualTransactionActive(false);
+    }
+
+    /**
+     * Tests that read-only transactions go to each replica in turn and other connections to the primary.
+     */
+    @Test
+    public void getConnection_RoutesReadOnlyTransactionsToReplicas() throws Exception {
+        // 1.Create a round-robin routing DataSource
+        ReadWriteRoutingDataSource routing = new ReadWriteRoutingDataSource(primary, replicas,
+                ReadWriteRoutingDataSource.Selection.ROUND_ROBIN, 1000, null);
+
+        // 2.Verify a read-write connection is opened on the primary
+        assertSame(primaryConnection, open(routing));
+
+        // 3.Verify read-only connections alternate between the replicas
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        open(routing).close();
+        open(routing).close();
+        open(routing).close();
+        verify(replicas.get("replica-1").getConnection(), times(2)).close();
+        verify(replicas.get("replica-2").getConnection(), times(1)).close();
+    }
+
+    /**
+     * Tests that reads go to the replica with the fewest connections in use.
+     */
+    @Test
+    public void getConnection_SelectsLeastLoadedReplica() throws Exception {
+        // 1.Create a least-loaded routing DataSource and keep a connection to a replica open
+        ReadWriteRoutingDataSource routing = new ReadWriteRoutingDataSource(primary, replicas,
+                ReadWriteRoutingDataSource.Selection.LEAST_LOADED, 1000, null);
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        Connection first = open(routing);
+
+        // 2.Open and close connections while the first one is in use
+        open(routing).close();
+        open(routing).close();
+
+        // 3.Verify they all went to the other replica
+        first.close();
+        Connection busy = replicas.get("replica-1").getConnection();
+        Connection idle = replicas.get("replica-2").getConnection();
+        verify(busy, times(1)).close();
+        verify(idle, times(2)).close();
+    }
+
+    /**
+     * Tests that reads fall back to the primary when every replica lags too far behind.
+     */
+    @Test
+    public void checkReplicas_FallsBackToPrimaryWhenLagging() throws Exception {
+        // 1.Make the lag query report 5 seconds on both replicas
+        for (DataSource replica : replicas.values()) {
+            Connection connection = replica.getConnection();
+            Statement statement = mock(Statement.class);
+            ResultSet resultSet = mock(ResultSet.class);
+            when(connection.createStatement()).thenReturn(statement);
+            when(statement.executeQuery(anyString())).thenReturn(resultSet);
+            when(resultSet.next()).thenReturn(true);
+            when(resultSet.getLong(1)).thenReturn(5000L);
+        }
+        ReadWriteRoutingDataSource routing = new ReadWriteRoutingDataSource(primary, replicas,
+                ReadWriteRoutingDataSource.Selection.ROUND_ROBIN, 1000, "SELECT LAG");
+
+        // 2.Check the replicas
+        routing.checkReplicas();
+
+        // 3.Verify a read-only connection is opened on the primary
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        assertSame(primaryConnection, open(routing));
+    }
+
+    /**
+     * Tests that reads go to the primary while a write transaction is open and during the lag window after it.
+     */
+    @Test
+    public void getConnection_ReadsPrimaryAfterWrite() throws Exception {
+        // 1.Create a routing DataSource with a lag window of 50 ms
+        ReadWriteRoutingDataSource routing = new ReadWriteRoutingDataSource(primary, replicas,
+                ReadWriteRoutingDataSource.Selection.ROUND_ROBIN, 50, null);
+        routing.setLagCheckIntervalMs(0);
+
+        // 2.Open the connection of a write transaction
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+        Connection write = open(routing);
+
+        // 3.Verify reads go to the primary while it is open and right after it is closed
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        assertSame(primaryConnection, open(routing));
+        write.close();
+        assertSame(primaryConnection, open(routing));
+
+        // 4.Verify reads go to a replica again once the window has passed
+        Thread.sleep(200);
+        assertNotSame(primaryConnection, open(routing));
+    }
+
+    /**
+     * Tests that reads pinned to the primary do not go to a replica in a read-only transaction.
+     */
+    @Test
+    public void readFromPrimary_RoutesReadsToPrimary() throws Exception {
+        // 1.Create a routing DataSource
+        ReadWriteRoutingDataSource routing = new ReadWriteRoutingDataSource(primary, replicas,
+                ReadWriteRoutingDataSource.Selection.ROUND_ROBIN, 1000, null);
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+
+        // 2.Open a connection pinned to the primary, then an unpinned one
+        Connection pinned = ReadWriteRoutingDataSource.readFromPrimary(() -> {
+            try {
+                return open(routing);
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        Connection unpinned = open(routing);
+
+        // 3.Verify only the pinned connection is opened on the primary
+        assertSame(primaryConnection, pinned);
+        assertNotSame(primaryConnection, unpinned);
+    }
+
+    /**
+     * Gets a connection and fetches the physical connection behind it.
+     */
+    private static Connection open(ReadWriteRoutingDataSource routing) throws SQLException {
+        return ((ConnectionProxy) routing.getConnection()).getTargetConnection();
+    }
+
+    /**
+     * Creates a DataSource always returning the same connection.
+     */
+    private static DataSource dataSource(Connection connection) throws SQLException {
+        DataSource dataSource = mock(DataSource.class);
+        when(dataSource.getConnection()).thenReturn(connection);
+        return dataSource;
+    }
+}
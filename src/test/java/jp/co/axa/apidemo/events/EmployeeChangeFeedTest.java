@@ -0,0 +1,222 @@
+package jp.co.axa.apidemo.events;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jp.co.axa.apidemo.entities.Employee;
+
+/**
+ * Unit Test Class for EmployeeChangeFeed.
+ */
+public class EmployeeChangeFeedTest {
+
+    private EmployeeChangeFeed employeeChangeFeed;
+
+    /**
+     * Sets up the test environment.
+     */
+    @Before
+    public void setUp() {
+        employeeChangeFeed = new EmployeeChangeFeed() {
+            @Override
+            SseEmitter newEmitter(long timeout) {
+                return new RecordingEmitter();
+            }
+        };
+        employeeChangeFeed.setObjectMapper(new ObjectMapper());
+        employeeChangeFeed.setReplaySize(2);
+    }
+
+    /**
+     * Stops the dispatcher.
+     */
+    @After
+    public void tearDown() {
+        employeeChangeFeed.shutdown();
+    }
+
+    /**
+     * Tests that a new subscriber only receives the changes committed after it subscribed.
+     */
+    @Test
+    public void subscribe_ReceivesNewChanges() throws Exception {
+        // 1.Publish a change before subscribing
+        employeeChangeFeed.onEmployeeChange(EmployeeChangeEvent.of(null, employee(1L, "IT")));
+        long start = employeeChangeFeed.getSequence();
+
+        // 2.Subscribe and publish an update and a deletion
+        RecordingEmitter emitter = (RecordingEmitter) employeeChangeFeed.subscribe(null);
+        employeeChangeFeed.awaitDispatch();
+        employeeChangeFeed.onEmployeeChange(EmployeeChangeEvent.of(employee(1L, "IT"), employee(1L, "HR")));
+        employeeChangeFeed.onEmployeeChange(EmployeeChangeEvent.of(employee(1L, "HR"), null));
+        employeeChangeFeed.awaitDispatch();
+
+        // 3.Verify the events, by sequence
+        assertEquals(2, emitter.events.size());
+        assertTrue(emitter.events.get(0).startsWith("id:" + (start + 1) + "\nevent:updated\n"));
+        assertTrue(emitter.events.get(0).contains("\"department\":\"HR\""));
+        assertEquals("id:" + (start + 2) + "\nevent:deleted\ndata:{\"sequence\":" + (start + 2)
+                + ",\"type\":\"DELETED\",\"id\":1}\n\n", emitter.events.get(1));
+    }
+
+    /**
+     * Tests that a reconnecting subscriber receives the buffered changes it missed.
+     */
+    @Test
+    public void subscribe_ReplaysMissedChanges() throws Exception {
+        // 1.Publish three changes, the last two being kept in the buffer
+        long start = employeeChangeFeed.getSequence();
+        employeeChangeFeed.onEmployeeChange(EmployeeChangeEvent.of(null, employee(1L, "IT")));
+        employeeChangeFeed.onEmployeeChange(EmployeeChangeEvent.of(null, employee(2L, "IT")));
+        employeeChangeFeed.onEmployeeChange(EmployeeChangeEvent.bulk());
+
+        // 2.Resume after the first change
+        RecordingEmitter emitter = (RecordingEmitter) employeeChangeFeed.subscribe(start + 1);
+        employeeChangeFeed.awaitDispatch();
+
+        // 3.Verify the replayed events
+        assertEquals(2, emitter.events.size());
+        assertTrue(emitter.events.get(0).startsWith("id:" + (start + 2) + "\nevent:created\n"));
+        assertTrue(emitter.events.get(1).startsWith("id:" + (start + 3) + "\nevent:bulk\n"));
+    }
+
+    /**
+     * Tests that a subscriber behind the buffer, or at an unknown sequence, is told to reset.
+     */
+    @Test
+    public void subscribe_ResetsUnresumableSubscribers() throws Exception {
+        // 1.Publish three changes, the first one being dropped from the buffer
+        long start = employeeChangeFeed.getSequence();
+        for (long id = 1; id <= 3; id++) {
+            employeeChangeFeed.onEmployeeChange(EmployeeChangeEvent.of(null, employee(id, "IT")));
+        }
+
+        // 2.Resume from before the buffer and from a sequence of a later run
+        RecordingEmitter behind = (RecordingEmitter) employeeChangeFeed.subscribe(start);
+        RecordingEmitter unknown = (RecordingEmitter) employeeChangeFeed.subscribe(start + 10);
+        employeeChangeFeed.awaitDispatch();
+
+        // 3.Verify the reset events carry the current sequence
+        String reset = "id:" + (start + 3) + "\nevent:" + EmployeeChangeFeed.RESET_EVENT + "\ndata:\n\n";
+        assertEquals(1, behind.events.size());
+        assertEquals(reset, behind.events.get(0));
+        assertEquals(1, unknown.events.size());
+        assertEquals(reset, unknown.events.get(0));
+    }
+
+    /**
+     * Tests that a subscriber whose connection blocks does not delay the others, and is reset once its buffer is full.
+     */
+    @Test
+    public void publish_ResetsSlowSubscribers() throws Exception {
+        // 1.Subscribe a client whose first send blocks, then a fast one
+        CountDownLatch blocked = new CountDownLatch(1);
+        employeeChangeFeed = new EmployeeChangeFeed() {
+            private boolean first = true;
+
+            @Override
+            SseEmitter newEmitter(long timeout) {
+                RecordingEmitter emitter = first ? new RecordingEmitter(blocked) : new RecordingEmitter();
+                first = false;
+                return emitter;
+            }
+        };
+        employeeChangeFeed.setObjectMapper(new ObjectMapper());
+        employeeChangeFeed.setSubscriberBufferSize(2);
+        long start = employeeChangeFeed.getSequence();
+        RecordingEmitter slow = (RecordingEmitter) employeeChangeFeed.subscribe(null);
+        RecordingEmitter fast = (RecordingEmitter) employeeChangeFeed.subscribe(null);
+        employeeChangeFeed.awaitDispatch();
+
+        // 2.Publish four changes, each once the fast client received the previous one:
+        //   the slow client blocks on the first, buffers two and overflows on the last
+        for (int id = 1; id <= 4; id++) {
+            employeeChangeFeed.onEmployeeChange(EmployeeChangeEvent.of(null, employee((long) id, "IT")));
+            awaitEvents(fast, id);
+        }
+
+        // 3.Verify the fast client received every change while the slow one was blocked
+        assertEquals(4, fast.events.size());
+        assertFalse(fast.completed);
+
+        // 4.Unblock the slow client and verify it got a reset instead of its pending changes, then was closed
+        blocked.countDown();
+        employeeChangeFeed.awaitDispatch();
+        assertEquals(2, slow.events.size());
+        assertTrue(slow.events.get(0).startsWith("id:" + (start + 1) + "\nevent:created\n"));
+        assertEquals("id:" + (start + 4) + "\nevent:" + EmployeeChangeFeed.RESET_EVENT + "\ndata:\n\n",
+                slow.events.get(1));
+        assertTrue(slow.completed);
+    }
+
+    /**
+     * Waits until an emitter has received a number of events, or 10 seconds have passed.
+     */
+    private static void awaitEvents(RecordingEmitter emitter, int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (emitter.events.size() < count && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+    }
+
+    /**
+     * Creates an employee with an ID.
+     */
+    private static Employee employee(Long id, String department) {
+        Employee employee = new Employee("Mark Perez", 10000000, department);
+        employee.setId(id);
+        return employee;
+    }
+
+    /**
+     * The emitter which records the events sent to it as text, and whether it was completed.
+     */
+    private static class RecordingEmitter extends SseEmitter {
+
+        private final List<String> events = new CopyOnWriteArrayList<>();
+
+        private final CountDownLatch released;
+
+        private volatile boolean completed;
+
+        private RecordingEmitter() {
+            this(new CountDownLatch(0));
+        }
+
+        /**
+         * @param released The latch the sends wait for.
+         */
+        private RecordingEmitter(CountDownLatch released) {
+            this.released = released;
+        }
+
+        @Override
+        public void send(SseEventBuilder builder) {
+            try {
+                released.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            events.add(builder.build().stream().map(data -> data.getData().toString()).collect(Collectors.joining()));
+        }
+
+        @Override
+        public synchronized void complete() {
+            completed = true;
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package jp.co.axa.apidemo.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.servlet.HandlerMapping;
+
+/**
+ * Unit Test Class for RequestStatisticsInterceptor.
+ */
+public class RequestStatisticsInterceptorTest {
+
+    private HibernateRequestStatistics statistics;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private RequestStatisticsInterceptor interceptor;
+
+    @Before
+    public void setUp() {
+        statistics = new HibernateRequestStatistics();
+        meterRegistry = new SimpleMeterRegistry();
+        interceptor = new RequestStatisticsInterceptor(statistics, meterRegistry);
+    }
+
+    /**
+     * Tests that only the statements and loads of the current request are recorded, tagged with the URI template.
+     */
+    @Test
+    public void afterCompletion_RecordsRequestCounts() {
+        // 1.Leave counts from a previous request on the thread
+        statistics.inspect("select 1");
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/v1/employees/retrieve/1");
+        request.setAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, "/api/v1/employees/retrieve/{employeeId}");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        // 2.Invoke the interceptor around two statements and one entity load
+        interceptor.preHandle(request, response, null);
+        statistics.inspect("select e from employee e where id=?");
+        statistics.inspect("select e from employee e where id=?");
+        statistics.onLoad(new Object(), 1L, null, null, null);
+        interceptor.afterCompletion(request, response, null, null);
+
+        // 3.Verify the recorded summaries
+        DistributionSummary statements = meterRegistry.find("hibernate.request.statements")
+                .tags("method", "GET", "uri", "/api/v1/employees/retrieve/{employeeId}").summary();
+        DistributionSummary loads = meterRegistry.find("hibernate.request.entity.loads")
+                .tags("method", "GET", "uri", "/api/v1/employees/retrieve/{employeeId}").summary();
+        assertNotNull(statements);
+        assertNotNull(loads);
+        assertEquals(1, statements.count());
+        assertEquals(2.0, statements.totalAmount(), 0.0);
+        assertEquals(1.0, loads.totalAmount(), 0.0);
+    }
+
+    /**
+     * Tests that the statements of a task run on another thread count towards the asynchronous request which
+     * submitted it, once the request is resumed on a third thread.
+     */
+    @Test
+    public void afterCompletion_RecordsAsyncRequestCounts() throws Exception {
+        // 1.Start the request and submit a decorated task issuing a statement
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/v1/employees/retrieveAll");
+        request.setAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, "/api/v1/employees/retrieveAll");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        interceptor.preHandle(request, response, null);
+        Runnable task = statistics.decorate(() -> statistics.inspect("select e from employee e"));
+
+        // 2.Run the task, then resume the request, each on its own thread
+        Thread worker = new Thread(task);
+        worker.start();
+        worker.join();
+        Thread resumed = new Thread(() -> {
+            interceptor.preHandle(request, response, null);
+            interceptor.afterCompletion(request, response, null, null);
+        });
+        resumed.start();
+        resumed.join();
+
+        // 3.Verify the statement is recorded for the request
+        DistributionSummary statements = meterRegistry.find("hibernate.request.statements")
+                .tags("method", "GET", "uri", "/api/v1/employees/retrieveAll").summary();
+        assertNotNull(statements);
+        assertEquals(1, statements.count());
+        assertEquals(1.0, statements.totalAmount(), 0.0);
+    }
+}
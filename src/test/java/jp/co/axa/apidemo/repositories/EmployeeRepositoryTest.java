@@ -0,0 +1,189 @@
+package jp.co.axa.apidemo.repositories;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+import javax.persistence.Cache;
+import javax.persistence.EntityManagerFactory;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import jp.co.axa.apidemo.dto.EmployeeSearchCriteria;
+import jp.co.axa.apidemo.entities.Employee;
+
+/**
+ * Test Class for EmployeeRepository against the embedded database and the second-level cache.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class EmployeeRepositoryTest {
+
+    @Autowired
+    private EmployeeRepository employeeRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate transactionTemplate;
+
+    private Cache entityCache;
+
+    private Employee first;
+
+    private Employee second;
+
+    /**
+     * Stores two employees and empties the entity cache.
+     */
+    @Before
+    public void setUp() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        entityCache = entityManagerFactory.getCache();
+        first = employeeRepository.save(new Employee("Mark Perez", 100, "IT"));
+        second = employeeRepository.save(new Employee("Anna Cruz", 200, "HR"));
+        entityCache.evictAll();
+    }
+
+    /**
+     * Deletes the stored employees.
+     */
+    @After
+    public void tearDown() {
+        employeeRepository.deleteAllInBatch();
+        entityCache.evictAll();
+    }
+
+    /**
+     * Tests that the full-table reads do not fill the entity cache, unlike a load by ID.
+     */
+    @Test
+    public void fullTableReads_BypassEntityCache() {
+        // 1.Read the whole table as a list and as a stream
+        List<Employee> employees = employeeRepository.findAll();
+        long streamed = transactionTemplate.execute(status -> {
+            try (Stream<Employee> stream = employeeRepository.streamAll()) {
+                return stream.count();
+            }
+        });
+
+        // 2.Verify the employees were read but not cached
+        assertEquals(2, employees.size());
+        assertEquals(2, streamed);
+        assertFalse(entityCache.contains(Employee.class, first.getId()));
+        assertFalse(entityCache.contains(Employee.class, second.getId()));
+
+        // 3.Verify a load by ID still fills the cache
+        employeeRepository.findById(first.getId());
+        assertTrue(entityCache.contains(Employee.class, first.getId()));
+    }
+
+    /**
+     * Tests that a patch updates only the given columns, bumps the version and evicts only the patched employee.
+     */
+    @Test
+    public void patch_EvictsOnlyPatchedEmployee() {
+        // 1.Load both employees into the entity cache
+        employeeRepository.findById(first.getId());
+        employeeRepository.findById(second.getId());
+
+        // 2.Patch the name of the first employee
+        int updated = transactionTemplate.execute(status ->
+                employeeRepository.patch(first.getId(), first.getVersion(), "Mark Lopez", null, null));
+
+        // 3.Verify only the patched employee left the cache
+        assertEquals(1, updated);
+        assertFalse(entityCache.contains(Employee.class, first.getId()));
+        assertTrue(entityCache.contains(Employee.class, second.getId()));
+
+        // 4.Verify the stored row
+        Employee patched = employeeRepository.findById(first.getId()).get();
+        assertEquals("Mark Lopez", patched.getName());
+        assertEquals(Integer.valueOf(100), patched.getSalary());
+        assertEquals("IT", patched.getDepartment());
+        assertEquals(Long.valueOf(first.getVersion() + 1), patched.getVersion());
+    }
+
+    /**
+     * Tests that a patch based on a stale version updates nothing.
+     */
+    @Test
+    public void patch_StaleVersion() {
+        // 1.Patch with a version that is not the stored one
+        int updated = transactionTemplate.execute(status ->
+                employeeRepository.patch(first.getId(), first.getVersion() + 1, "Mark Lopez", null, null));
+
+        // 2.Verify the row is unchanged
+        assertEquals(0, updated);
+        Employee stored = employeeRepository.findById(first.getId()).get();
+        assertEquals("Mark Perez", stored.getName());
+        assertEquals(first.getVersion(), stored.getVersion());
+    }
+
+    /**
+     * Tests that a patch of an unknown employee updates nothing.
+     */
+    @Test
+    public void patch_UnknownId() {
+        // 1.Patch an employee which does not exist
+        int updated = transactionTemplate.execute(status ->
+                employeeRepository.patch(second.getId() + 1, null, "Mark Lopez", null, null));
+
+        // 2.Verify nothing was updated
+        assertEquals(0, updated);
+        assertFalse(employeeRepository.findById(second.getId() + 1).isPresent());
+    }
+
+    /**
+     * Tests that a patch invalidates the cached search results.
+     */
+    @Test
+    public void patch_InvalidatesQueryCache() {
+        // 1.Cache a search which only matches the second employee
+        EmployeeSearchCriteria criteria = new EmployeeSearchCriteria();
+        criteria.setMinSalary(150);
+        assertEquals(1, employeeRepository.findAll(EmployeeSpecifications.matching(criteria),
+                PageRequest.of(0, 10)).getTotalElements());
+
+        // 2.Raise the salary of the first employee
+        transactionTemplate.execute(status ->
+                employeeRepository.patch(first.getId(), null, null, 300, null));
+
+        // 3.Verify the search sees the new salary
+        assertEquals(2, employeeRepository.findAll(EmployeeSpecifications.matching(criteria),
+                PageRequest.of(0, 10)).getTotalElements());
+    }
+
+    /**
+     * Tests that an employee loaded earlier in the transaction is read again after a patch.
+     */
+    @Test
+    public void patch_ClearsPersistenceContext() {
+        // 1.Load, patch and load again within one transaction
+        Employee reloaded = transactionTemplate.execute(status -> {
+            employeeRepository.findById(first.getId());
+            employeeRepository.patch(first.getId(), null, null, 150, "Sales");
+            return employeeRepository.findById(first.getId()).get();
+        });
+
+        // 2.Verify the second load returned the patched state
+        assertEquals(Integer.valueOf(150), reloaded.getSalary());
+        assertEquals("Sales", reloaded.getDepartment());
+        assertEquals(Long.valueOf(first.getVersion() + 1), reloaded.getVersion());
+    }
+}
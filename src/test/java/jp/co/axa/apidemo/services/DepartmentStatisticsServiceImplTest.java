@@ -0,0 +1,140 @@
+package jp.co.axa.apidemo.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import jp.co.axa.apidemo.dto.DepartmentStatistics;
+import jp.co.axa.apidemo.entities.Employee;
+import jp.co.axa.apidemo.events.EmployeeChangeEvent;
+import jp.co.axa.apidemo.repositories.EmployeeRepository;
+
+/**
+ * Unit Test Class for DepartmentStatisticsServiceImpl.
+ */
+public class DepartmentStatisticsServiceImplTest {
+
+    @Mock
+    private EmployeeRepository employeeRepository;
+
+    private DepartmentStatisticsServiceImpl departmentStatisticsService;
+
+    /**
+     * Sets up the test environment.
+     */
+    @Before
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        departmentStatisticsService = new DepartmentStatisticsServiceImpl();
+        departmentStatisticsService.setEmployeeRepository(employeeRepository);
+    }
+
+    /**
+     * Tests that the statistics are rebuilt from the per-department summaries.
+     */
+    @Test
+    public void rebuild() {
+        // 1.Mock the summaries (Sales has one employee without a salary)
+        when(employeeRepository.summarizeByDepartment()).thenReturn(Arrays.asList(
+                summary("IT", 3, 3, 600L, 100, 400), summary("Sales", 2, 1, 50L, 50, 50)));
+
+        // 2.Invoke the service method
+        assertTrue(departmentStatisticsService.rebuild());
+
+        // 3.Verify the statistics
+        List<DepartmentStatistics> statistics = departmentStatisticsService.getDepartmentStatistics();
+        assertEquals(2, statistics.size());
+        DepartmentStatistics it = statistics.get(0);
+        assertEquals("IT", it.getDepartment());
+        assertEquals(3, it.getHeadcount());
+        assertEquals(600, it.getTotalSalary());
+        assertEquals(Integer.valueOf(100), it.getMinSalary());
+        assertEquals(Integer.valueOf(400), it.getMaxSalary());
+        assertEquals(200.0, it.getAverageSalary(), 0.0);
+        DepartmentStatistics sales = statistics.get(1);
+        assertEquals(2, sales.getHeadcount());
+        assertEquals(50.0, sales.getAverageSalary(), 0.0);
+
+        // 4.Verify an unchanged rebuild reports no drift
+        assertFalse(departmentStatisticsService.rebuild());
+    }
+
+    /**
+     * Tests that single employee changes are applied incrementally.
+     */
+    @Test
+    public void onEmployeeChange() {
+        // 1.Mock data
+        Employee low = employee(1L, "IT", 100);
+        Employee high = employee(2L, "IT", 400);
+
+        // 2.Apply creations, an update moving the highest salary to another department, and a deletion
+        when(employeeRepository.findSalaryRangeByDepartment("IT")).thenReturn(
+                Collections.singletonList(new Object[] {100, 100}));
+        departmentStatisticsService.onEmployeeChange(EmployeeChangeEvent.of(null, low));
+        departmentStatisticsService.onEmployeeChange(EmployeeChangeEvent.of(null, high));
+        departmentStatisticsService.onEmployeeChange(EmployeeChangeEvent.of(high, employee(2L, "HR", 500)));
+
+        // 3.Verify the maximum follows the removal, by querying the range of that department only
+        List<DepartmentStatistics> statistics = departmentStatisticsService.getDepartmentStatistics();
+        assertEquals(Arrays.asList("HR", "IT"),
+                Arrays.asList(statistics.get(0).getDepartment(), statistics.get(1).getDepartment()));
+        assertEquals(Integer.valueOf(100), statistics.get(1).getMaxSalary());
+        assertEquals(1, statistics.get(1).getHeadcount());
+        verify(employeeRepository, times(1)).findSalaryRangeByDepartment(anyString());
+
+        // 4.Verify an emptied department disappears
+        departmentStatisticsService.onEmployeeChange(EmployeeChangeEvent.of(low, null));
+        statistics = departmentStatisticsService.getDepartmentStatistics();
+        assertEquals(1, statistics.size());
+        assertEquals("HR", statistics.get(0).getDepartment());
+    }
+
+    /**
+     * Tests that changes whose previous state is unknown are coalesced into one rebuild on the next read.
+     */
+    @Test
+    public void onEmployeeChange_UnknownPrevious() {
+        // 1.Mock the summary after the changes
+        when(employeeRepository.summarizeByDepartment()).thenReturn(
+                Collections.singletonList(summary("IT", 1, 1, 300L, 300, 300)));
+
+        // 2.Apply updates without their previous state and a bulk write
+        departmentStatisticsService.onEmployeeChange(EmployeeChangeEvent.updated(employee(1L, "IT", 300)));
+        departmentStatisticsService.onEmployeeChange(EmployeeChangeEvent.updated(employee(2L, "IT", 200)));
+        departmentStatisticsService.onEmployeeChange(EmployeeChangeEvent.bulk());
+
+        // 3.Verify nothing is queried until the statistics are read
+        verify(employeeRepository, never()).summarizeByDepartment();
+
+        // 4.Verify two reads share a single rebuild
+        assertEquals(Integer.valueOf(300), departmentStatisticsService.getDepartmentStatistics().get(0).getMaxSalary());
+        departmentStatisticsService.getDepartmentStatistics();
+        verify(employeeRepository, times(1)).summarizeByDepartment();
+    }
+
+    private static Employee employee(Long id, String department, Integer salary) {
+        Employee employee = new Employee("Employee " + id, salary, department);
+        employee.setId(id);
+        return employee;
+    }
+
+    private static Object[] summary(String department, long headcount, long salaried, Long totalSalary,
+                                    Integer minSalary, Integer maxSalary) {
+        return new Object[] {department, headcount, salaried, totalSalary, minSalary, maxSalary};
+    }
+}
@@ -0,0 +1,164 @@
+package jp.co.axa.apidemo.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+
+import jp.co.axa.apidemo.dto.ImportReport;
+import jp.co.axa.apidemo.entities.Employee;
+import jp.co.axa.apidemo.events.EmployeeChangeEvent;
+import jp.co.axa.apidemo.repositories.EmployeeRepository;
+
+/**
+ * Unit Test Class for EmployeeImportServiceImpl.
+ */
+public class EmployeeImportServiceImplTest {
+
+    @Mock
+    private EmployeeRepository employeeRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    private final List<Employee> saved = new ArrayList<>();
+
+    private ConcurrentMapCacheManager cacheManager;
+
+    private EmployeeImportServiceImpl employeeImportService;
+
+    /**
+     * Sets up the test environment.
+     */
+    @Before
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        when(transactionManager.getTransaction(any())).thenReturn(mock(TransactionStatus.class));
+        when(employeeRepository.saveAll(anyList())).thenAnswer(invocation -> {
+            saved.addAll(invocation.getArgument(0));
+            return invocation.getArgument(0);
+        });
+        cacheManager = new ConcurrentMapCacheManager("employees", "employeePages", "employee");
+        employeeImportService = new EmployeeImportServiceImpl();
+        employeeImportService.setEmployeeRepository(employeeRepository);
+        employeeImportService.setTransactionManager(transactionManager);
+        employeeImportService.setCacheManager(cacheManager);
+        employeeImportService.setEventPublisher(eventPublisher);
+        employeeImportService.setBatchSize(2);
+    }
+
+    /**
+     * Tests importCsv method with valid and invalid rows.
+     */
+    @Test
+    public void importCsv() throws Exception {
+        // 1.Mock data: reordered columns, a quoted name, a bad salary and a short row
+        String csv = "department,name,salary\n"
+                + "IT,Mark Perez,10000000\n"
+                + "Sales,\"Matteo, Joaquin\",5000000\n"
+                + "IT,Bad Salary,abc\n"
+                + "\n"
+                + "HR,Short Row\n"
+                + "HR,Jane Doe,7000000\n";
+        cacheManager.getCache("employee").put(1L, new Employee("Cached", 1, "IT"));
+
+        // 2.Invoke the service method
+        ImportReport report = employeeImportService.importCsv(
+                new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)));
+
+        // 3.Verify the report
+        assertEquals(5, report.getRowsRead());
+        assertEquals(3, report.getImported());
+        assertEquals(2, report.getFailed());
+        assertEquals(2, report.getErrors().size());
+
+        // 4.Verify the saved employees and the batches
+        assertEquals(Arrays.asList("Mark Perez", "Matteo, Joaquin", "Jane Doe"),
+                Arrays.asList(saved.get(0).getName(), saved.get(1).getName(), saved.get(2).getName()));
+        assertEquals(Integer.valueOf(5000000), saved.get(1).getSalary());
+        verify(employeeRepository, times(2)).saveAll(anyList());
+
+        // 5.Verify the caches are invalidated and a bulk change is published for each batch
+        assertEquals(null, cacheManager.getCache("employee").get(1L));
+        verify(eventPublisher, times(2)).publishEvent(any(EmployeeChangeEvent.class));
+    }
+
+    /**
+     * Tests that importCsv invalidates the caches after each committed batch, and not after a failed one.
+     */
+    @Test
+    public void importCsv_InvalidatesAfterEachBatch() throws Exception {
+        // 1.Mock data: three batches, the second one failing; each write records and refills the cache
+        String csv = "name,salary,department\n"
+                + "Mark Perez,1,IT\nJane Doe,2,IT\n"
+                + "Anna Cruz,3,HR\nJohn Roe,4,HR\n"
+                + "Matteo Joaquin,5,Sales\n";
+        List<Boolean> cachedAtWrite = new ArrayList<>();
+        List<Integer> publishedAtWrite = new ArrayList<>();
+        List<EmployeeChangeEvent> published = new ArrayList<>();
+        doAnswer(invocation -> published.add(invocation.getArgument(0)))
+                .when(eventPublisher).publishEvent(any(EmployeeChangeEvent.class));
+        when(employeeRepository.saveAll(anyList())).thenAnswer(invocation -> {
+            cachedAtWrite.add(cacheManager.getCache("employee").get(1L) != null);
+            publishedAtWrite.add(published.size());
+            cacheManager.getCache("employee").put(1L, new Employee("Cached", 1, "IT"));
+            if (cachedAtWrite.size() == 2) {
+                throw new IllegalStateException("Connection lost");
+            }
+            return invocation.getArgument(0);
+        });
+        cacheManager.getCache("employee").put(1L, new Employee("Cached", 1, "IT"));
+
+        // 2.Invoke the service method
+        ImportReport report = employeeImportService.importCsv(
+                new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)));
+
+        // 3.Verify the cache was invalidated and the change published after the first batch only,
+        //   then after the last one
+        assertEquals(3, report.getImported());
+        assertEquals(Arrays.asList(true, false, true), cachedAtWrite);
+        assertEquals(Arrays.asList(0, 1, 1), publishedAtWrite);
+        assertEquals(2, published.size());
+        assertEquals(EmployeeChangeEvent.Type.BULK, published.get(0).getType());
+        assertEquals(null, cacheManager.getCache("employee").get(1L));
+    }
+
+    /**
+     * Tests importCsv method with a header missing a column.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void importCsv_InvalidHeader() throws Exception {
+        employeeImportService.importCsv(
+                new ByteArrayInputStream("name,salary\nMark Perez,1\n".getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Tests parseCsvLine method with quoted fields.
+     */
+    @Test
+    public void parseCsvLine() {
+        assertEquals(Arrays.asList("a", "b \"c\"", ""), EmployeeImportServiceImpl.parseCsvLine("a,\"b \"\"c\"\"\","));
+    }
+}
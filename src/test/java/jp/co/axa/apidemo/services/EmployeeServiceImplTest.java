@@ -0,0 +1,441 @@
+package jp.co.axa.apidemo.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import jp.co.axa.apidemo.concurrency.WriteBehindQueue;
+import jp.co.axa.apidemo.dto.EmployeePatch;
+import jp.co.axa.apidemo.dto.EmployeeWrite;
+import jp.co.axa.apidemo.entities.Employee;
+import jp.co.axa.apidemo.repositories.EmployeeRepository;
+
+/**
+ * Test Class for EmployeeServiceImpl against the embedded database and the caches.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class EmployeeServiceImplTest {
+
+    /** The time a test waits for a write-behind write. */
+    private static final long WRITE_TIMEOUT_SECONDS = 10;
+
+    @Autowired
+    private EmployeeServiceImpl employeeService;
+
+    @Autowired
+    private EmployeeRepository employeeRepository;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate transactionTemplate;
+
+    private Statistics statistics;
+
+    private Employee employee;
+
+    private WriteBehindQueue<EmployeeWrite, Employee> writeBehindQueue;
+
+    /**
+     * Stores an employee and empties the caches.
+     */
+    @Before
+    public void setUp() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        employee = employeeRepository.save(new Employee("Mark Perez", 100, "IT"));
+        clearCaches();
+    }
+
+    /**
+     * Stops the write-behind queue of the test, if any, deletes the stored employees and empties the caches.
+     */
+    @After
+    public void tearDown() throws InterruptedException {
+        if (writeBehindQueue != null) {
+            employeeService.stopWriteBehind();
+            employeeService.setEmployeeWriteBehindQueue(null);
+        }
+        employeeRepository.deleteAllInBatch();
+        clearCaches();
+    }
+
+    /**
+     * Tests that a patch of a cached employee derives the new state from the cache, without reading the row.
+     */
+    @Test
+    public void patchEmployee_Cached() {
+        // 1.Cache the employee
+        employeeService.getEmployee(employee.getId());
+        long loads = statistics.getEntityLoadCount();
+
+        // 2.Patch its name
+        Employee patched = employeeService.patchEmployee(employee.getId(), patch("Mark Lopez", null, null));
+
+        // 3.Verify the result was derived from the cached state
+        assertEquals(loads, statistics.getEntityLoadCount());
+        assertState(patched, "Mark Lopez", 100, employee.getVersion() + 1);
+        assertState(cached(), "Mark Lopez", 100, employee.getVersion() + 1);
+
+        // 4.Verify the stored row
+        assertState(employeeRepository.findById(employee.getId()).get(), "Mark Lopez", 100, employee.getVersion() + 1);
+    }
+
+    /**
+     * Tests that an unversioned patch of an employee changed behind the cache is applied to the stored row.
+     */
+    @Test
+    public void patchEmployee_CachedOutdated() {
+        // 1.Cache the employee, then change its salary behind the cache
+        employeeService.getEmployee(employee.getId());
+        changeBehindCache();
+
+        // 2.Patch its name
+        Employee patched = employeeService.patchEmployee(employee.getId(), patch("Mark Lopez", null, null));
+
+        // 3.Verify both changes were kept and cached
+        assertState(patched, "Mark Lopez", 300, employee.getVersion() + 2);
+        assertState(cached(), "Mark Lopez", 300, employee.getVersion() + 2);
+        assertState(employeeRepository.findById(employee.getId()).get(), "Mark Lopez", 300, employee.getVersion() + 2);
+    }
+
+    /**
+     * Tests that a patch based on the cached version fails when the employee was changed behind the cache.
+     */
+    @Test
+    public void patchEmployee_CachedOutdatedVersioned() {
+        // 1.Cache the employee, then change its salary behind the cache
+        employeeService.getEmployee(employee.getId());
+        changeBehindCache();
+
+        // 2.Patch its name based on the cached version
+        try {
+            employeeService.patchEmployee(employee.getId(), patch("Mark Lopez", null, employee.getVersion()));
+            fail("A patch based on an outdated version must fail");
+        } catch (ObjectOptimisticLockingFailureException e) {
+            // expected
+        }
+
+        // 3.Verify the stored row kept the other change only
+        assertState(employeeRepository.findById(employee.getId()).get(), "Mark Perez", 300, employee.getVersion() + 1);
+    }
+
+    /**
+     * Tests that a patch based on a version newer than the cached one is applied to the stored row.
+     */
+    @Test
+    public void patchEmployee_CacheBehindClient() {
+        // 1.Cache the employee, then change its salary behind the cache
+        employeeService.getEmployee(employee.getId());
+        changeBehindCache();
+
+        // 2.Patch its name based on the stored version
+        Employee patched = employeeService.patchEmployee(employee.getId(),
+                patch("Mark Lopez", null, employee.getVersion() + 1));
+
+        // 3.Verify the patch was applied and cached
+        assertState(patched, "Mark Lopez", 300, employee.getVersion() + 2);
+        assertState(cached(), "Mark Lopez", 300, employee.getVersion() + 2);
+    }
+
+    /**
+     * Tests that a patch of an employee which is not cached reads the row back once and caches it.
+     */
+    @Test
+    public void patchEmployee_NotCached() {
+        // 1.Patch the salary of the employee
+        long loads = statistics.getEntityLoadCount();
+        Employee patched = employeeService.patchEmployee(employee.getId(), patch(null, 150, employee.getVersion()));
+
+        // 2.Verify the row was read back and cached
+        assertEquals(loads + 1, statistics.getEntityLoadCount());
+        assertState(patched, "Mark Perez", 150, employee.getVersion() + 1);
+        assertState(cached(), "Mark Perez", 150, employee.getVersion() + 1);
+    }
+
+    /**
+     * Tests that a patch of an employee which is not cached fails on a version mismatch.
+     */
+    @Test
+    public void patchEmployee_NotCachedVersionMismatch() {
+        // 1.Patch the salary of the employee based on another version
+        try {
+            employeeService.patchEmployee(employee.getId(), patch(null, 150, employee.getVersion() + 1));
+            fail("A patch based on another version must fail");
+        } catch (ObjectOptimisticLockingFailureException e) {
+            // expected
+        }
+
+        // 2.Verify nothing was changed or cached
+        assertNull(cacheManager.getCache("employee").get(employee.getId()));
+        assertState(employeeRepository.findById(employee.getId()).get(), "Mark Perez", 100, employee.getVersion());
+    }
+
+    /**
+     * Tests that a patch of an unknown employee returns null, with or without a version.
+     */
+    @Test
+    public void patchEmployee_NotFound() {
+        // 1.Patch an employee which does not exist
+        Long unknownId = employee.getId() + 1;
+        Employee unversioned = employeeService.patchEmployee(unknownId, patch("Mark Lopez", null, null));
+        Employee versioned = employeeService.patchEmployee(unknownId, patch("Mark Lopez", null, 0L));
+
+        // 2.Verify nothing was found, stored or cached
+        assertNull(unversioned);
+        assertNull(versioned);
+        assertNull(cacheManager.getCache("employee").get(unknownId));
+        assertFalse(employeeRepository.existsById(unknownId));
+    }
+
+    /**
+     * Tests that the unversioned updates of an employee in one write-behind batch are coalesced, the last one winning.
+     */
+    @Test
+    public void writeBehind_Coalesced() throws Exception {
+        // 1.Queue three updates of the employee as one batch
+        startWriteBehind(3);
+        CompletableFuture<Employee> firstWrite = employeeService.updateEmployeeBehind(update("Mark Lopez", null));
+        CompletableFuture<Employee> secondWrite = employeeService.updateEmployeeBehind(update("Mark Diaz", null));
+        CompletableFuture<Employee> thirdWrite = employeeService.updateEmployeeBehind(update("Mark Cruz", null));
+
+        // 2.Verify all of them completed with the state of a single UPDATE
+        Employee written = resultOf(thirdWrite);
+        assertSame(written, resultOf(firstWrite));
+        assertSame(written, resultOf(secondWrite));
+        assertState(written, "Mark Cruz", 100, employee.getVersion() + 1);
+        assertState(cached(), "Mark Cruz", 100, employee.getVersion() + 1);
+        assertState(employeeRepository.findById(employee.getId()).get(), "Mark Cruz", 100, employee.getVersion() + 1);
+    }
+
+    /**
+     * Tests that a write-behind update based on an outdated version fails once the rest of its batch is committed.
+     */
+    @Test
+    public void writeBehind_Conflict() throws Exception {
+        // 1.Queue a stale update of the employee and the save of a new one as one batch
+        startWriteBehind(2);
+        CompletableFuture<Employee> stale = employeeService.updateEmployeeBehind(
+                update("Mark Lopez", employee.getVersion() + 1));
+        CompletableFuture<Employee> saved = employeeService.saveEmployeeBehind(new Employee("Anna Cruz", 200, "HR"));
+
+        // 2.Verify only the stale update failed
+        assertTrue(failureOf(stale) instanceof ObjectOptimisticLockingFailureException);
+        assertTrue(employeeRepository.existsById(resultOf(saved).getId()));
+        assertState(employeeRepository.findById(employee.getId()).get(), "Mark Perez", 100, employee.getVersion());
+    }
+
+    /**
+     * Tests that a versioned write-behind update following an unchanging update of the batch is applied.
+     */
+    @Test
+    public void writeBehind_DeferredAfterUnchangedWrite() throws Exception {
+        // 1.Queue an update which changes nothing, then a versioned update, as one batch
+        startWriteBehind(2);
+        CompletableFuture<Employee> unchanged = employeeService.updateEmployeeBehind(update("Mark Perez", null));
+        CompletableFuture<Employee> versioned = employeeService.updateEmployeeBehind(
+                update("Mark Lopez", employee.getVersion()));
+
+        // 2.Verify the versioned update was applied after the batch
+        assertState(resultOf(unchanged), "Mark Perez", 100, employee.getVersion());
+        assertState(resultOf(versioned), "Mark Lopez", 100, employee.getVersion() + 1);
+        assertState(employeeRepository.findById(employee.getId()).get(), "Mark Lopez", 100, employee.getVersion() + 1);
+    }
+
+    /**
+     * Tests that a versioned write-behind update following a changing update of the batch fails.
+     */
+    @Test
+    public void writeBehind_DeferredAfterChangingWrite() throws Exception {
+        // 1.Queue a changing update, then an update based on the version it replaced, as one batch
+        startWriteBehind(2);
+        CompletableFuture<Employee> changing = employeeService.updateEmployeeBehind(update("Mark Lopez", null));
+        CompletableFuture<Employee> versioned = employeeService.updateEmployeeBehind(
+                update("Mark Diaz", employee.getVersion()));
+
+        // 2.Verify the versioned update failed after the batch
+        assertState(resultOf(changing), "Mark Lopez", 100, employee.getVersion() + 1);
+        assertTrue(failureOf(versioned) instanceof ObjectOptimisticLockingFailureException);
+        assertState(employeeRepository.findById(employee.getId()).get(), "Mark Lopez", 100, employee.getVersion() + 1);
+    }
+
+    /**
+     * Tests that the writes of a rolled back write-behind batch are retried one by one, failing only the faulty one.
+     */
+    @Test
+    public void writeBehind_RetriedAfterRollback() throws Exception {
+        // 1.Queue a valid save, a save whose name exceeds the column, and an update, as one batch
+        startWriteBehind(3);
+        char[] longName = new char[300];
+        Arrays.fill(longName, 'a');
+        CompletableFuture<Employee> saved = employeeService.saveEmployeeBehind(new Employee("Anna Cruz", 200, "HR"));
+        CompletableFuture<Employee> invalid = employeeService.saveEmployeeBehind(
+                new Employee(new String(longName), 200, "HR"));
+        CompletableFuture<Employee> updated = employeeService.updateEmployeeBehind(update("Mark Lopez", null));
+
+        // 2.Verify only the faulty save failed
+        assertTrue(failureOf(invalid) instanceof DataIntegrityViolationException);
+        assertTrue(employeeRepository.existsById(resultOf(saved).getId()));
+        assertState(resultOf(updated), "Mark Lopez", 100, employee.getVersion() + 1);
+        assertEquals(2, employeeRepository.count());
+    }
+
+    /**
+     * Tests that a write-behind update of a deleted employee does not insert it.
+     */
+    @Test
+    public void writeBehind_UpdateOfDeletedEmployee() throws Exception {
+        // 1.Delete the employee, then queue an unversioned and a versioned update of it as one batch
+        startWriteBehind(2);
+        employeeRepository.deleteById(employee.getId());
+        CompletableFuture<Employee> unversioned = employeeService.updateEmployeeBehind(update("Mark Lopez", null));
+        CompletableFuture<Employee> versioned = employeeService.updateEmployeeBehind(
+                update("Mark Lopez", employee.getVersion()));
+
+        // 2.Verify neither update inserted the employee
+        assertNull(resultOf(unversioned));
+        assertTrue(failureOf(versioned) instanceof ObjectOptimisticLockingFailureException);
+        assertEquals(0, employeeRepository.count());
+    }
+
+    /**
+     * Starts a write-behind queue whose batches close only once full, so each test controls its batch.
+     *
+     * @param batchSize The number of writes in a batch.
+     */
+    private void startWriteBehind(int batchSize) {
+        writeBehindQueue = new WriteBehindQueue<>("employee-test", 100, batchSize, TimeUnit.MINUTES.toMillis(1));
+        employeeService.setEmployeeWriteBehindQueue(writeBehindQueue);
+        employeeService.startWriteBehind();
+    }
+
+    /**
+     * Creates an update of the test employee, keeping its salary and department.
+     *
+     * @param name The new name.
+     * @param version The version the update is based on, or null.
+     * @return The update.
+     */
+    private Employee update(String name, Long version) {
+        Employee update = new Employee(name, 100, "IT");
+        update.setId(employee.getId());
+        update.setVersion(version);
+        return update;
+    }
+
+    /**
+     * Waits for the result of a write-behind write.
+     *
+     * @param write The future of the write.
+     * @return The result of the write.
+     * @throws Exception If the write failed or did not complete in time.
+     */
+    private static Employee resultOf(CompletableFuture<Employee> write) throws Exception {
+        return write.get(WRITE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Waits for the failure of a write-behind write.
+     *
+     * @param write The future of the write.
+     * @return The failure of the write.
+     * @throws Exception If the write did not complete in time.
+     */
+    private static Throwable failureOf(CompletableFuture<Employee> write) throws Exception {
+        try {
+            write.get(WRITE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            return e.getCause();
+        }
+        fail("The write must fail");
+        return null;
+    }
+
+    /**
+     * Changes the salary of the stored employee without going through the service caches.
+     */
+    private void changeBehindCache() {
+        transactionTemplate.execute(status -> employeeRepository.patch(employee.getId(), null, null, 300, null));
+    }
+
+    /**
+     * Gets the employee held by the "employee" cache.
+     *
+     * @return The cached employee.
+     */
+    private Employee cached() {
+        return cacheManager.getCache("employee").get(employee.getId(), Employee.class);
+    }
+
+    /**
+     * Creates a patch.
+     *
+     * @param name The new name, or null to keep it.
+     * @param salary The new salary, or null to keep it.
+     * @param version The version the patch is based on, or null.
+     * @return The patch.
+     */
+    private static EmployeePatch patch(String name, Integer salary, Long version) {
+        EmployeePatch patch = new EmployeePatch();
+        patch.setName(name);
+        patch.setSalary(salary);
+        patch.setVersion(version);
+        return patch;
+    }
+
+    /**
+     * Verifies the state of the test employee.
+     *
+     * @param actual The employee to verify.
+     * @param name The expected name.
+     * @param salary The expected salary.
+     * @param version The expected version.
+     */
+    private void assertState(Employee actual, String name, int salary, long version) {
+        assertEquals(employee.getId(), actual.getId());
+        assertEquals(name, actual.getName());
+        assertEquals(Integer.valueOf(salary), actual.getSalary());
+        assertEquals("IT", actual.getDepartment());
+        assertEquals(Long.valueOf(version), actual.getVersion());
+    }
+
+    /**
+     * Empties the service caches and the entity cache.
+     */
+    private void clearCaches() {
+        cacheManager.getCacheNames().forEach(name -> cacheManager.getCache(name).clear());
+        entityManagerFactory.getCache().evictAll();
+    }
+}